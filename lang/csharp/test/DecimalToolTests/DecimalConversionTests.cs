@@ -1,4 +1,6 @@
 using System;
+using System.Globalization;
+using System.IO;
 using Xunit;
 
 using DecimalTools;
@@ -64,12 +66,38 @@ namespace DecimalToolTests
                 decimal decimalValue = decimalValues[i]; 
                 string expectedValue = bufferValues[i];
               
-                byte[] outputValue = DecimalConversion.ConvertDecimalToBytes(decimalValue);
+                byte[] outputValue = DecimalConversion.ConvertDecimalToBytes(decimalValue, scales[i]);
                 Assert.Equal(expectedValue, BitConverter.ToString(outputValue).Replace("-", ""));
             }
 
         }
 
+        /// <summary>
+        /// Golden vectors shared with the Java DotNetDecimalCodecTests: hex bytes, scale and decimal value per line.
+        /// </summary>
+        [Fact]
+        public void GoldenVectorsTest()
+        {
+            string path = Path.Combine(AppContext.BaseDirectory, "decimal-vectors.csv");
+            foreach (string line in File.ReadAllLines(path))
+            {
+                if (line.Length == 0 || line.StartsWith("#"))
+                {
+                    continue;
+                }
+
+                string[] vector = line.Split(',');
+                byte scale = byte.Parse(vector[1], CultureInfo.InvariantCulture);
+                decimal expectedValue = decimal.Parse(vector[2], CultureInfo.InvariantCulture);
+
+                byte[] outputBytes = DecimalConversion.ConvertDecimalToBytes(expectedValue, scale);
+                Assert.Equal(vector[0], BitConverter.ToString(outputBytes).Replace("-", ""));
+
+                decimal outputValue = DecimalConversion.ConvertToLogicalValue(FromHexString(vector[0]), scale);
+                Assert.Equal(decimal.GetBits(expectedValue), decimal.GetBits(outputValue));
+            }
+        }
+
         [Fact]
         public void AssertMaxDecimalValueTest()
         {
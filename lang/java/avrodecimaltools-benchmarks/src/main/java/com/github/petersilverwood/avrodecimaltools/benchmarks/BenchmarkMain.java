@@ -0,0 +1,28 @@
+package com.github.petersilverwood.avrodecimaltools.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar: takes the usual JMH command line and always adds the gc profiler, so every run
+ * reports the allocation rate next to ops/s.
+ *
+ *     java -jar target/benchmarks.jar                          all benchmarks
+ *     java -jar target/benchmarks.jar CastDecimal -p width=200 one benchmark, one shape
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+
+}
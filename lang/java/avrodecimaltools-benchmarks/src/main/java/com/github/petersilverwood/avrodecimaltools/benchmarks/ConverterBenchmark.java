@@ -0,0 +1,74 @@
+package com.github.petersilverwood.avrodecimaltools.benchmarks;
+
+import com.github.petersilverwood.kafka.connect.CastFields;
+import com.github.petersilverwood.kafka.connect.CastingJsonConverter;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.json.JsonConverter;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a record through the JsonConverter followed by the CastFields transform, which builds the Struct twice,
+ * against a CastingJsonConverter building the cast Struct straight from the JSON
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConverterBenchmark {
+
+    private static final String TOPIC = "bench";
+
+    @Param({"10", "200"})
+    public int width;
+
+    private JsonConverter json;
+    private CastFields<SourceRecord> transform;
+    private CastingJsonConverter casting;
+    private byte[] serialized;
+
+
+    @Setup
+    public void setup() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("decimal.fields", Records.DECIMAL_FIELD_LIST);
+        props.put("decimal.scale", "4");
+        props.put("timestamp.fields", Records.TIMESTAMP_FIELD);
+        props.put("schemas.enable", "true");
+
+        json = new JsonConverter();
+        json.configure(props, false);
+        transform = new CastFields<>();
+        transform.configure(props);
+        casting = new CastingJsonConverter();
+        casting.configure(props, false);
+
+        final SourceRecord record = Records.records(width, 1, 8)[0];
+        serialized = json.fromConnectData(TOPIC, record.valueSchema(), record.value());
+    }
+
+    @TearDown
+    public void tearDown() {
+        transform.close();
+        casting.close();
+    }
+
+
+    @Benchmark
+    public SourceRecord converterThenTransform() {
+        final SchemaAndValue data = json.toConnectData(TOPIC, serialized);
+        return transform.apply(new SourceRecord(null, null, TOPIC, 0, data.schema(), data.value()));
+    }
+
+    @Benchmark
+    public SchemaAndValue castingConverter() {
+        return casting.toConnectData(TOPIC, serialized);
+    }
+
+}
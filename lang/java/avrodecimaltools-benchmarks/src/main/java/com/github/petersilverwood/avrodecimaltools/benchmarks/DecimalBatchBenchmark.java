@@ -0,0 +1,77 @@
+package com.github.petersilverwood.avrodecimaltools.benchmarks;
+
+import com.github.petersilverwood.avrodecimaltools.DecimalBatch;
+import com.github.petersilverwood.avrodecimaltools.DecimalCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch decoding of a column of values, reported per value
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DecimalBatchBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({"4", "8", "12"})
+    public int byteLength;
+
+    private ByteBuffer[] values;
+    private ByteBuffer contiguous;
+    private int[] offsets;
+
+    private long[] unscaled;
+    private long[] overflow;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        values = new ByteBuffer[BATCH];
+        offsets = new int[BATCH + 1];
+        contiguous = ByteBuffer.allocate(BATCH * byteLength);
+        for (int i = 0; i < BATCH; i++) {
+            values[i] = Records.unscaledBytes(byteLength, random);
+            offsets[i + 1] = offsets[i] + values[i].remaining();
+            contiguous.put(values[i].duplicate());
+        }
+        ((Buffer) contiguous).flip();
+
+        unscaled = new long[BATCH];
+        overflow = new long[DecimalBatch.bitmapLength(BATCH)];
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int decodeUnscaled() {
+        return DecimalBatch.decodeUnscaled(values, unscaled, overflow);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int decodeUnscaledContiguous() {
+        return DecimalBatch.decodeUnscaled(contiguous, offsets, unscaled, overflow);
+    }
+
+    /**
+     * One BigDecimal per value, as decoding through DecimalCodec one at a time does
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void decodePerValue(Blackhole blackhole) {
+        for (ByteBuffer value : values) {
+            blackhole.consume(DecimalCodec.decode(value, 4));
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.github.petersilverwood.avrodecimaltools.benchmarks;
+
+import com.github.petersilverwood.avrodecimaltools.DecimalCodec;
+import com.github.petersilverwood.avrodecimaltools.DecimalTarget;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and encoding of single values, by length of the unscaled bytes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DecimalCodecBenchmark {
+
+    @Param({"1", "4", "8", "12", "16", "24"})
+    public int byteLength;
+
+    private static final DecimalTarget TARGET = new DecimalTarget(2, 38, RoundingMode.HALF_UP);
+
+    private ByteBuffer bytes;
+    private BigDecimal decimal;
+
+    @Setup
+    public void setup() {
+        bytes = Records.unscaledBytes(byteLength, new Random(42));
+        decimal = DecimalCodec.decode(bytes, 4);
+    }
+
+
+    @Benchmark
+    public BigDecimal decode() {
+        return DecimalCodec.decode(bytes, 4);
+    }
+
+    /**
+     * The decoding CastDecimal.fromBytes used before DecimalCodec, kept as a reference point
+     */
+    @Benchmark
+    public BigDecimal decodeViaBigInteger() {
+        final ByteBuffer value = bytes.duplicate();
+        final byte[] copy = new byte[value.remaining()];
+        value.get(copy);
+        return new BigDecimal(new BigInteger(copy), 4);
+    }
+
+    /**
+     * Rescaled from 4 to 2 and checked against a precision of 38
+     */
+    @Benchmark
+    public BigDecimal decodeRescaled() {
+        return TARGET.decode(bytes, 4);
+    }
+
+    @Benchmark
+    public BigDecimal decodeRescaledViaBigDecimal() {
+        final BigDecimal rescaled = DecimalCodec.decode(bytes, 4).setScale(2, RoundingMode.HALF_UP);
+        if (rescaled.precision() > 38) {
+            throw new ArithmeticException("precision");
+        }
+        return rescaled;
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return DecimalCodec.encode(decimal);
+    }
+
+    /**
+     * The encoding CastDecimal.toBytes used before DecimalCodec.encode, kept as a reference point
+     */
+    @Benchmark
+    public byte[] encodeViaBigInteger() {
+        return decimal.unscaledValue().toByteArray();
+    }
+
+}
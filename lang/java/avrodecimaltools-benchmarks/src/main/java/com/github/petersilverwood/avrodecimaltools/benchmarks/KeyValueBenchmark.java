@@ -0,0 +1,88 @@
+package com.github.petersilverwood.avrodecimaltools.benchmarks;
+
+import com.github.petersilverwood.avrodecimaltools.CastDecimal;
+import com.github.petersilverwood.kafka.connect.RecordPart;
+import com.github.petersilverwood.kafka.connect.SchemaCache;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Casting the decimals of both key and value: one CastDecimal with target=both against a target=key instance
+ * followed by a target=value one, as two chained transforms would run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyValueBenchmark {
+
+    @Param({"10", "200"})
+    public int width;
+
+    @Param({"1", "64"})
+    public int schemas;
+
+    private Transformation<SourceRecord> both;
+    private Transformation<SourceRecord> keyOnly;
+    private Transformation<SourceRecord> valueOnly;
+    private SourceRecord[] records;
+
+
+    @Setup
+    public void setup() {
+        both = newTransform("both");
+        keyOnly = newTransform("key");
+        valueOnly = newTransform("value");
+        records = Records.keyedRecords(width, schemas, 8);
+    }
+
+    private static Transformation<SourceRecord> newTransform(String target) {
+        final Map<String, String> props = new HashMap<>();
+        props.put("fields", Records.DECIMAL_FIELD_LIST);
+        props.put("scale", "4");
+        props.put(RecordPart.CONFIG, target);
+        // Key and value schemas together, so every lookup of both hits the cache:
+        props.put(SchemaCache.CAPACITY_CONFIG, "256");
+        final Transformation<SourceRecord> transform = new CastDecimal<>();
+        transform.configure(props);
+        return transform;
+    }
+
+    @TearDown
+    public void tearDown() {
+        both.close();
+        keyOnly.close();
+        valueOnly.close();
+    }
+
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        SourceRecord next(SourceRecord[] records) {
+            final SourceRecord record = records[next];
+            next = next + 1 == records.length ? 0 : next + 1;
+            return record;
+        }
+    }
+
+
+    @Benchmark
+    public SourceRecord both(Cursor cursor) {
+        return both.apply(cursor.next(records));
+    }
+
+    @Benchmark
+    public SourceRecord keyThenValue(Cursor cursor) {
+        return valueOnly.apply(keyOnly.apply(cursor.next(records)));
+    }
+
+}
@@ -0,0 +1,361 @@
+package com.github.petersilverwood.avrodecimaltools.benchmarks;
+
+import com.github.petersilverwood.kafka.connect.CastFields;
+import com.github.petersilverwood.kafka.connect.SchemaCache;
+import org.apache.kafka.connect.source.SourceRecord;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process load harness: drives CastFields.apply from a growing number of threads and reports how throughput
+ * scales, how much the threads blocked on locks, and whether every output was still correct.
+ *
+ *     java -cp target/benchmarks.jar com.github.petersilverwood.avrodecimaltools.benchmarks.LoadHarness \
+ *          --threads 1,2,4,8 --width 50 --schemas 200 --cache-size 128 --instances shared
+ *
+ * Options:
+ *
+ *     --threads N,...          thread counts to run, in turn (1,2,4,8)
+ *     --virtual                run on virtual threads, on Java 21 and later; blocking is then not reported
+ *     --instances MODE         shared: one transform for all threads, as an embedding consumer does;
+ *                              per-thread: one each, as the tasks of a Connect worker have (shared)
+ *     --width N                fields per record, see Records (50)
+ *     --schemas N              distinct schemas the records cycle through; above --cache-size every lookup
+ *                              eventually misses and evicts (16)
+ *     --cache-size N           schema.cache.size of the transforms (128)
+ *     --byte-length N          length of the decimal values (8)
+ *     --seconds N              measured seconds per thread count, after as many again of warmup (5)
+ *
+ * Every output is compared with the output of a single threaded reference run; the process exits with 1 on any
+ * mismatch or failure. Blocking is read from ThreadMXBean with contention monitoring on, and covers every
+ * monitor the workers blocked on, whether in the transforms or the JDK.
+ */
+public final class LoadHarness {
+
+    private LoadHarness() {
+    }
+
+
+    public static void main(String[] args) throws InterruptedException {
+        final Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        final SourceRecord[] records = Records.records(options.width, options.schemas, options.byteLength);
+        final Object[] expected = new Object[records.length];
+        final CastFields<SourceRecord> reference = newTransform(options);
+        for (int i = 0; i < records.length; i++) {
+            expected[i] = reference.apply(records[i]).value();
+        }
+        reference.close();
+
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!options.virtual && threadBean.isThreadContentionMonitoringSupported()) {
+            threadBean.setThreadContentionMonitoringEnabled(true);
+        }
+
+        System.out.printf(Locale.ROOT, "width=%d schemas=%d cache-size=%d byte-length=%d instances=%s threads=%s%n",
+                options.width, options.schemas, options.cacheSize, options.byteLength,
+                options.shared ? "shared" : "per-thread", options.virtual ? "virtual" : "platform");
+        System.out.printf(Locale.ROOT, "%8s %14s %10s %10s %12s %12s %10s%n",
+                "threads", "records/s", "scaling", "per-thread", "blocked", "blocked ms", "errors");
+
+        double single = 0;
+        boolean failed = false;
+        for (int threads : options.threads) {
+            final Result result = run(options, threads, records, expected, threadBean);
+            final double throughput = result.records / (double) options.seconds;
+            if (single == 0) {
+                single = throughput / threads;
+            }
+            System.out.printf(Locale.ROOT, "%8d %14.0f %9.2fx %9.0f%% %12s %12s %10d%n",
+                    threads, throughput, throughput / single, 100 * throughput / single / threads,
+                    result.blockedCount < 0 ? "n/a" : Long.toString(result.blockedCount),
+                    result.blockedMillis < 0 ? "n/a" : Long.toString(result.blockedMillis),
+                    result.mismatches + result.failures);
+            if (result.firstFailure != null) {
+                System.out.println("    " + result.firstFailure);
+            }
+            failed |= result.mismatches + result.failures > 0;
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+
+    static CastFields<SourceRecord> newTransform(Options options) {
+        final Map<String, Object> props = new HashMap<>();
+        final StringBuilder decimalFields = new StringBuilder();
+        for (int i = 0; i < Records.DECIMAL_FIELDS; i++) {
+            decimalFields.append(i == 0 ? "" : ",").append("dec").append(i).append(":4");
+        }
+        props.put("decimal.fields", decimalFields.toString());
+        props.put("timestamp.fields", Records.TIMESTAMP_FIELD);
+        props.put(SchemaCache.CAPACITY_CONFIG, options.cacheSize);
+
+        final CastFields<SourceRecord> transform = new CastFields<>();
+        transform.configure(props);
+        return transform;
+    }
+
+
+    private static Result run(Options options, int threads, SourceRecord[] records, Object[] expected,
+                              ThreadMXBean threadBean) throws InterruptedException {
+        final Phase phase = new Phase();
+        final CastFields<SourceRecord> shared = options.shared ? newTransform(options) : null;
+
+        final Worker[] workers = new Worker[threads];
+        final Thread[] started = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            // Each worker starts at its own offset, so the threads do not walk the schemas in lockstep:
+            workers[i] = new Worker(shared != null ? shared : newTransform(options), records, expected,
+                    i * records.length / threads, phase, options.virtual ? null : threadBean);
+            started[i] = newThread(workers[i], options.virtual, "load-" + i);
+            started[i].start();
+        }
+
+        TimeUnit.SECONDS.sleep(options.seconds);
+        phase.value = Phase.MEASURE;
+        TimeUnit.SECONDS.sleep(options.seconds);
+        phase.value = Phase.STOP;
+
+        final Result result = new Result();
+        for (int i = 0; i < threads; i++) {
+            started[i].join();
+            result.add(workers[i]);
+            if (shared == null) {
+                workers[i].transform.close();
+            }
+        }
+        if (shared != null) {
+            shared.close();
+        }
+        return result;
+    }
+
+
+    private static final class Phase {
+
+        static final int WARMUP = 0;
+        static final int MEASURE = 1;
+        static final int STOP = 2;
+
+        volatile int value = WARMUP;
+    }
+
+
+    private static final class Worker implements Runnable {
+
+        final CastFields<SourceRecord> transform;
+        private final SourceRecord[] records;
+        private final Object[] expected;
+        private final int offset;
+        private final Phase phase;
+        private final ThreadMXBean threadBean;
+
+        // Written by the worker only, read once it has been joined:
+        long measured;
+        long mismatches;
+        long failures;
+        String firstFailure;
+        long blockedCount = -1;
+        long blockedMillis = -1;
+
+
+        Worker(CastFields<SourceRecord> transform, SourceRecord[] records, Object[] expected, int offset, Phase phase,
+               ThreadMXBean threadBean) {
+            this.transform = transform;
+            this.records = records;
+            this.expected = expected;
+            this.offset = offset;
+            this.phase = phase;
+            this.threadBean = threadBean;
+        }
+
+
+        @Override
+        public void run() {
+            int index = offset;
+            boolean measuring = false;
+            ThreadInfo before = null;
+
+            int current;
+            while ((current = phase.value) != Phase.STOP) {
+                if (!measuring && current == Phase.MEASURE) {
+                    measuring = true;
+                    before = threadInfo();
+                }
+
+                try {
+                    final Object output = transform.apply(records[index]).value();
+                    if (!expected[index].equals(output)) {
+                        mismatches++;
+                        failure("Record " + index + " differs from the reference output: " + output);
+                    }
+                } catch (RuntimeException e) {
+                    failures++;
+                    failure("Record " + index + " failed: " + e);
+                }
+                if (measuring) {
+                    measured++;
+                }
+                index = index + 1 == records.length ? 0 : index + 1;
+            }
+
+            final ThreadInfo after = threadInfo();
+            if (before != null && after != null) {
+                blockedCount = after.getBlockedCount() - before.getBlockedCount();
+                blockedMillis = after.getBlockedTime() < 0 ? -1 : after.getBlockedTime() - before.getBlockedTime();
+            }
+        }
+
+        private ThreadInfo threadInfo() {
+            return threadBean == null ? null : threadBean.getThreadInfo(Thread.currentThread().getId());
+        }
+
+        private void failure(String message) {
+            if (firstFailure == null) {
+                firstFailure = message;
+            }
+        }
+    }
+
+
+    private static final class Result {
+
+        long records;
+        long mismatches;
+        long failures;
+        long blockedCount;
+        long blockedMillis;
+        String firstFailure;
+
+        void add(Worker worker) {
+            records += worker.measured;
+            mismatches += worker.mismatches;
+            failures += worker.failures;
+            blockedCount = worker.blockedCount < 0 || blockedCount < 0 ? -1 : blockedCount + worker.blockedCount;
+            blockedMillis = worker.blockedMillis < 0 || blockedMillis < 0 ? -1 : blockedMillis + worker.blockedMillis;
+            if (firstFailure == null) {
+                firstFailure = worker.firstFailure;
+            }
+        }
+    }
+
+
+    /*
+    * Thread.ofVirtual() is looked up reflectively, the benchmarks are built for Java 8
+     */
+    private static Thread newThread(Runnable task, boolean virtual, String name) {
+        if (!virtual) {
+            return new Thread(task, name);
+        }
+        try {
+            final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            final MethodHandle ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+            final MethodHandle unstarted = lookup.findVirtual(builderType, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+            final Thread thread = (Thread) unstarted.invoke(ofVirtual.invoke(), task);
+            thread.setName(name);
+            return thread;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later", e);
+        }
+    }
+
+
+    static final class Options {
+
+        int[] threads = {1, 2, 4, 8};
+        boolean virtual;
+        boolean shared = true;
+        int width = 50;
+        int schemas = 16;
+        int cacheSize = SchemaCache.DEFAULT_CAPACITY;
+        int byteLength = 8;
+        int seconds = 5;
+
+
+        static Options parse(String[] args) {
+            final Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                if (arg.equals("--virtual")) {
+                    options.virtual = true;
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value of " + arg);
+                }
+                final String value = args[++i];
+                switch (arg) {
+                    case "--threads": {
+                        final String[] counts = value.split(",");
+                        options.threads = new int[counts.length];
+                        for (int j = 0; j < counts.length; j++) {
+                            options.threads[j] = parsePositive(arg, counts[j].trim());
+                        }
+                        break;
+                    }
+                    case "--instances":
+                        if (!value.equals("shared") && !value.equals("per-thread")) {
+                            throw new IllegalArgumentException("--instances is shared or per-thread");
+                        }
+                        options.shared = value.equals("shared");
+                        break;
+                    case "--width":
+                        options.width = Math.max(parsePositive(arg, value), Records.DECIMAL_FIELDS + 1);
+                        break;
+                    case "--schemas":
+                        options.schemas = parsePositive(arg, value);
+                        break;
+                    case "--cache-size":
+                        options.cacheSize = parsePositive(arg, value);
+                        break;
+                    case "--byte-length":
+                        options.byteLength = parsePositive(arg, value);
+                        break;
+                    case "--seconds":
+                        options.seconds = parsePositive(arg, value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (options.virtual) {
+                try {
+                    newThread(() -> { }, true, "probe");
+                } catch (IllegalStateException e) {
+                    throw new IllegalArgumentException(e.getMessage(), e);
+                }
+            }
+            return options;
+        }
+
+        private static int parsePositive(String option, String value) {
+            try {
+                final int parsed = Integer.parseInt(value);
+                if (parsed > 0) {
+                    return parsed;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Invalid value of " + option + ": " + value);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.github.petersilverwood.avrodecimaltools.benchmarks;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.source.SourceRecord;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Synthetic record shapes shared by the benchmarks.
+ *
+ * A record of width N has DECIMAL_FIELDS bytes fields (dec0, dec1, ...), one optional int64 epoch field (ts)
+ * and string columns (col0, col1, ...) making up the rest.
+ */
+final class Records {
+
+    static final int DECIMAL_FIELDS = 6;
+    static final String DECIMAL_FIELD_LIST = "dec0,dec1,dec2,dec3,dec4,dec5";
+    static final String TIMESTAMP_FIELD = "ts";
+
+    private Records() {
+    }
+
+
+    /**
+     * Distinct variants produce schemas that are not equal to each other, to exercise cache misses
+     */
+    static Schema schema(int width, int variant) {
+        final SchemaBuilder builder = SchemaBuilder.struct().name("bench.Row").version(variant + 1);
+        for (int i = 0; i < DECIMAL_FIELDS; i++) {
+            builder.field("dec" + i, Schema.BYTES_SCHEMA);
+        }
+        builder.field(TIMESTAMP_FIELD, Schema.OPTIONAL_INT64_SCHEMA);
+        for (int i = DECIMAL_FIELDS + 1; i < width; i++) {
+            builder.field("col" + i, Schema.OPTIONAL_STRING_SCHEMA);
+        }
+        return builder.build();
+    }
+
+
+    static Struct value(Schema schema, int byteLength, Random random) {
+        final Struct value = new Struct(schema);
+        for (int i = 0; i < DECIMAL_FIELDS; i++) {
+            value.put("dec" + i, unscaledBytes(byteLength, random));
+        }
+        value.put(TIMESTAMP_FIELD, 1546300800000L + random.nextInt(1000000));
+        for (int i = DECIMAL_FIELDS + 1; i < schema.fields().size(); i++) {
+            value.put("col" + i, "value-" + i);
+        }
+        return value;
+    }
+
+
+    static SourceRecord[] records(int width, int variants, int byteLength) {
+        final Random random = new Random(42);
+        final SourceRecord[] records = new SourceRecord[variants];
+        for (int i = 0; i < variants; i++) {
+            final Schema schema = schema(width, i);
+            records[i] = new SourceRecord(null, null, "bench", 0, schema, value(schema, byteLength, random));
+        }
+        return records;
+    }
+
+
+    /**
+     * Records whose keys are structs of the decimal fields alone, as composite keys holding balances are
+     */
+    static SourceRecord[] keyedRecords(int width, int variants, int byteLength) {
+        final Random random = new Random(42);
+        final SourceRecord[] records = new SourceRecord[variants];
+        for (int i = 0; i < variants; i++) {
+            final SchemaBuilder keyBuilder = SchemaBuilder.struct().name("bench.Key").version(i + 1);
+            for (int j = 0; j < DECIMAL_FIELDS; j++) {
+                keyBuilder.field("dec" + j, Schema.BYTES_SCHEMA);
+            }
+            final Schema keySchema = keyBuilder.build();
+            final Struct key = new Struct(keySchema);
+            for (int j = 0; j < DECIMAL_FIELDS; j++) {
+                key.put("dec" + j, unscaledBytes(byteLength, random));
+            }
+            final Schema schema = schema(width, i);
+            records[i] = new SourceRecord(null, null, "bench", 0, keySchema, key, schema, value(schema, byteLength, random));
+        }
+        return records;
+    }
+
+
+    /**
+     * Minimal two's-complement encoding of exactly byteLength bytes, as BigInteger.toByteArray() would produce
+     */
+    static ByteBuffer unscaledBytes(int byteLength, Random random) {
+        final byte[] bytes = new byte[byteLength];
+        random.nextBytes(bytes);
+        bytes[0] = (byte) (0x10 | (bytes[0] & 0x0F) | (random.nextBoolean() ? 0x80 : 0x00));
+        return ByteBuffer.wrap(bytes);
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.github.petersilverwood.avrodecimaltools.benchmarks;
+
+import com.github.petersilverwood.kafka.connect.TimestampParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a column of ISO-8601 timestamps a second apart, as a CDC stream writes them, reported per value
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TimestampParserBenchmark {
+
+    private static final int BATCH = 1024;
+
+    private String[] texts;
+    private final TimestampParser parser = new TimestampParser();
+
+    @Setup
+    public void setup() {
+        texts = new String[BATCH];
+        final OffsetDateTime start = OffsetDateTime.parse("2021-06-01T08:00:00.123Z");
+        for (int i = 0; i < BATCH; i++) {
+            texts[i] = start.plusSeconds(i).toString();
+        }
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long parser() {
+        long sum = 0;
+        for (String text : texts) {
+            sum += parser.parseEpochMillis(text);
+        }
+        return sum;
+    }
+
+    /**
+     * The java.time parse the transform used to need per value
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long offsetDateTime() {
+        long sum = 0;
+        for (String text : texts) {
+            sum += OffsetDateTime.parse(text).toInstant().toEpochMilli();
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.github.petersilverwood.avrodecimaltools.benchmarks;
+
+import com.github.petersilverwood.avrodecimaltools.CastDecimal;
+import com.github.petersilverwood.kafka.connect.CastFields;
+import com.github.petersilverwood.kafka.connect.NullableTimestampTransform;
+import com.github.petersilverwood.kafka.connect.SchemaCache;
+import com.github.petersilverwood.kafka.connect.StructPlan;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of apply() for the transforms; CastFields does the work of the other two in a single pass.
+ *
+ * One transform instance is shared by all benchmark threads, as when embedded in a multi-threaded consumer.
+ * With schemas=1 every lookup hits the schema cache; with schemas=64 the records rotate through more schemas
+ * than the cache holds (capacity 16), so every lookup misses and rebuilds. copyMode compares putting every field
+ * into the output struct against sharing the untouched values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformBenchmark {
+
+    @Param({"CastDecimal", "NullableTimestampTransform", "CastFields"})
+    public String transform;
+
+    @Param({"10", "200"})
+    public int width;
+
+    @Param({"8", "13"})
+    public int byteLength;
+
+    @Param({"1", "64"})
+    public int schemas;
+
+    @Param({"validated", "shared"})
+    public String copyMode;
+
+    private Transformation<SourceRecord> transformation;
+    private SourceRecord[] records;
+
+
+    @Setup
+    public void setup() {
+        final Map<String, String> props = new HashMap<>();
+        props.put(SchemaCache.CAPACITY_CONFIG, "16");
+        props.put(StructPlan.COPY_MODE_CONFIG, copyMode);
+
+        if (transform.equals("CastDecimal")) {
+            props.put("fields", Records.DECIMAL_FIELD_LIST);
+            props.put("scale", "4");
+            transformation = new CastDecimal<>();
+        } else if (transform.equals("NullableTimestampTransform")) {
+            props.put("field", Records.TIMESTAMP_FIELD);
+            transformation = new NullableTimestampTransform<>();
+        } else {
+            props.put("decimal.fields", Records.DECIMAL_FIELD_LIST);
+            props.put("decimal.scale", "4");
+            props.put("timestamp.fields", Records.TIMESTAMP_FIELD);
+            transformation = new CastFields<>();
+        }
+        transformation.configure(props);
+
+        records = Records.records(width, schemas, byteLength);
+    }
+
+    @TearDown
+    public void tearDown() {
+        transformation.close();
+    }
+
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+
+    @Benchmark
+    @Threads(1)
+    public SourceRecord singleThread(Cursor cursor) {
+        return apply(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public SourceRecord fourThreads(Cursor cursor) {
+        return apply(cursor);
+    }
+
+
+    private SourceRecord apply(Cursor cursor) {
+        final SourceRecord record = records[cursor.next];
+        cursor.next = cursor.next + 1 == records.length ? 0 : cursor.next + 1;
+        return transformation.apply(record);
+    }
+
+}
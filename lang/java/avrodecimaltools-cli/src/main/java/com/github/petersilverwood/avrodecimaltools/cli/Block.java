@@ -0,0 +1,18 @@
+package com.github.petersilverwood.avrodecimaltools.cli;
+
+/**
+ * A block of a container file: a number of records, encoded and compressed with the codec of the file
+ */
+final class Block {
+
+    final long count;
+    final byte[] data;
+    final int length;
+
+    Block(long count, byte[] data, int length) {
+        this.count = count;
+        this.data = data;
+        this.length = length;
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.github.petersilverwood.avrodecimaltools.cli;
+
+import org.apache.avro.file.BZip2Codec;
+import org.apache.avro.file.Codec;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DeflateCodec;
+import org.apache.avro.file.XZCodec;
+import org.apache.avro.file.ZstandardCodec;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Block codecs by name, one instance per caller: codecs keep their buffers, so every worker needs its own.
+ *
+ * Avro's deflate, bzip2, xz and zstandard codecs have public constructors, at the default levels of CodecFactory.
+ * The null and snappy codecs do not, and are implemented here after the container file specification: snappy
+ * blocks are the compressed data followed by the big-endian CRC32 of the uncompressed data.
+ */
+final class Codecs {
+
+    private Codecs() {
+    }
+
+
+    /**
+     * @throws IllegalArgumentException if the codec is not one of the container file specification
+     */
+    static Codec create(String name) {
+        switch (name == null ? DataFileConstants.NULL_CODEC : name) {
+            case DataFileConstants.NULL_CODEC:
+                return new NullCodec();
+            case DataFileConstants.DEFLATE_CODEC:
+                return new DeflateCodec(CodecFactory.DEFAULT_DEFLATE_LEVEL);
+            case DataFileConstants.SNAPPY_CODEC:
+                return new SnappyCodec();
+            case DataFileConstants.BZIP2_CODEC:
+                return new BZip2Codec();
+            case DataFileConstants.XZ_CODEC:
+                return new XZCodec(CodecFactory.DEFAULT_XZ_LEVEL);
+            case DataFileConstants.ZSTANDARD_CODEC:
+                return new ZstandardCodec(CodecFactory.DEFAULT_ZSTANDARD_LEVEL, false);
+            default:
+                throw new IllegalArgumentException("Unknown codec " + name);
+        }
+    }
+
+
+    /*
+    * Hands the buffer on as it is, which ContainerRewriter relies on to write the encoded bytes without a copy
+     */
+    private static final class NullCodec extends Codec {
+
+        @Override
+        public String getName() {
+            return DataFileConstants.NULL_CODEC;
+        }
+
+        @Override
+        public ByteBuffer compress(ByteBuffer uncompressed) {
+            return uncompressed;
+        }
+
+        @Override
+        public ByteBuffer decompress(ByteBuffer compressed) {
+            return compressed;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof NullCodec;
+        }
+
+        @Override
+        public int hashCode() {
+            return 2;
+        }
+    }
+
+
+    private static final class SnappyCodec extends Codec {
+
+        private final CRC32 crc32 = new CRC32();
+
+        @Override
+        public String getName() {
+            return DataFileConstants.SNAPPY_CODEC;
+        }
+
+        @Override
+        public ByteBuffer compress(ByteBuffer uncompressed) throws IOException {
+            final int offset = computeOffset(uncompressed);
+            final int length = uncompressed.remaining();
+            final ByteBuffer compressed = ByteBuffer.allocate(Snappy.maxCompressedLength(length) + 4);
+            final int size = Snappy.compress(uncompressed.array(), offset, length, compressed.array(), 0);
+
+            crc32.reset();
+            crc32.update(uncompressed.array(), offset, length);
+            compressed.putInt(size, (int) crc32.getValue());
+            ((Buffer) compressed).limit(size + 4);
+            return compressed;
+        }
+
+        @Override
+        public ByteBuffer decompress(ByteBuffer compressed) throws IOException {
+            final int offset = computeOffset(compressed);
+            final int length = compressed.remaining() - 4;
+            final ByteBuffer uncompressed = ByteBuffer.allocate(Snappy.uncompressedLength(compressed.array(), offset, length));
+            final int size = Snappy.uncompress(compressed.array(), offset, length, uncompressed.array(), 0);
+            ((Buffer) uncompressed).limit(size);
+
+            crc32.reset();
+            crc32.update(uncompressed.array(), 0, size);
+            if (compressed.getInt(compressed.limit() - 4) != (int) crc32.getValue()) {
+                throw new IOException("Snappy block checksum mismatch");
+            }
+            return uncompressed;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof SnappyCodec;
+        }
+
+        @Override
+        public int hashCode() {
+            return 3;
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.github.petersilverwood.avrodecimaltools.cli;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileConstants;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The header of an Avro object container file: its metadata, among which the schema and codec, and the sync
+ * marker ending every block
+ */
+final class ContainerHeader {
+
+    static final byte[] MAGIC = DataFileConstants.MAGIC;
+    static final int SYNC_SIZE = DataFileConstants.SYNC_SIZE;
+
+    private final Map<String, byte[]> metadata;
+    private final byte[] sync;
+
+
+    ContainerHeader(Map<String, byte[]> metadata, byte[] sync) {
+        this.metadata = metadata;
+        this.sync = sync;
+    }
+
+
+    Map<String, byte[]> metadata() {
+        return metadata;
+    }
+
+    byte[] sync() {
+        return sync;
+    }
+
+    Schema schema() {
+        return new Schema.Parser().parse(new String(metadata.get(DataFileConstants.SCHEMA), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The codec name, "null" for uncompressed blocks
+     */
+    String codec() {
+        final byte[] codec = metadata.get(DataFileConstants.CODEC);
+        return codec == null ? DataFileConstants.NULL_CODEC : new String(codec, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * The same metadata with another schema and codec, and a sync marker of its own
+     */
+    ContainerHeader rewritten(Schema schema, String codec, byte[] sync) {
+        final Map<String, byte[]> rewritten = new LinkedHashMap<>(metadata);
+        rewritten.put(DataFileConstants.SCHEMA, schema.toString().getBytes(StandardCharsets.UTF_8));
+        rewritten.put(DataFileConstants.CODEC, codec.getBytes(StandardCharsets.UTF_8));
+        return new ContainerHeader(rewritten, sync);
+    }
+
+}
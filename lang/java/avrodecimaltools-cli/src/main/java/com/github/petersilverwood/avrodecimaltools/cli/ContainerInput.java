@@ -0,0 +1,147 @@
+package com.github.petersilverwood.avrodecimaltools.cli;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the header and the raw blocks of a container file, without decompressing or decoding them.
+ *
+ * The file is read through one large buffer; blocks larger than the buffer are read from the channel straight into
+ * their own array.
+ */
+final class ContainerInput implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private ContainerHeader header;
+
+
+    ContainerInput(Path path, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        ((Buffer) buffer).flip();
+    }
+
+
+    ContainerHeader readHeader() throws IOException {
+        final byte[] magic = readFully(new byte[ContainerHeader.MAGIC.length]);
+        if (!Arrays.equals(magic, ContainerHeader.MAGIC)) {
+            throw new IOException("Not an Avro data file");
+        }
+
+        final Map<String, byte[]> metadata = new LinkedHashMap<>();
+        for (long count = readLong(); count != 0; count = readLong()) {
+            if (count < 0) {
+                count = -count;
+                readLong();
+            }
+            for (long i = 0; i < count; i++) {
+                final String key = new String(readFully(new byte[readLength()]), StandardCharsets.UTF_8);
+                metadata.put(key, readFully(new byte[readLength()]));
+            }
+        }
+
+        header = new ContainerHeader(metadata, readFully(new byte[ContainerHeader.SYNC_SIZE]));
+        return header;
+    }
+
+
+    /**
+     * The next block, or null at the end of the file
+     */
+    Block nextBlock() throws IOException {
+        if (!fill(1)) {
+            return null;
+        }
+
+        final long count = readLong();
+        final int length = readLength();
+        final byte[] data = readFully(new byte[length]);
+
+        final byte[] sync = readFully(new byte[ContainerHeader.SYNC_SIZE]);
+        if (!Arrays.equals(sync, header.sync())) {
+            throw new IOException("Invalid sync marker after block at " + (channel.position() - buffer.remaining()));
+        }
+        return new Block(count, data, length);
+    }
+
+
+    /*
+    * Avro's zig-zag varint longs, of at most 10 bytes
+     */
+    private long readLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!fill(1)) {
+                throw new EOFException();
+            }
+            final int b = buffer.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        throw new IOException("Invalid long encoding");
+    }
+
+    private int readLength() throws IOException {
+        final long length = readLong();
+        if (length < 0 || length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Invalid length " + length);
+        }
+        return (int) length;
+    }
+
+
+    private byte[] readFully(byte[] bytes) throws IOException {
+        final int buffered = Math.min(buffer.remaining(), bytes.length);
+        buffer.get(bytes, 0, buffered);
+
+        // Anything not in the buffer any more goes straight from the channel into the array:
+        final ByteBuffer rest = ByteBuffer.wrap(bytes, buffered, bytes.length - buffered);
+        while (rest.hasRemaining()) {
+            if (channel.read(rest) < 0) {
+                throw new EOFException();
+            }
+        }
+        return bytes;
+    }
+
+
+    /*
+    * True once at least the given number of bytes is buffered, false at the end of the file
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            ((Buffer) buffer).flip();
+        }
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
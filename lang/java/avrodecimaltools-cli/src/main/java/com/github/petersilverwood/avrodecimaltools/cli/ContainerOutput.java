@@ -0,0 +1,60 @@
+package com.github.petersilverwood.avrodecimaltools.cli;
+
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Writes a container file from a header and blocks that are already encoded and compressed
+ */
+final class ContainerOutput implements Closeable {
+
+    private final OutputStream out;
+    private final BinaryEncoder encoder;
+    private byte[] sync;
+
+
+    ContainerOutput(Path path, int bufferSize) throws IOException {
+        this.out = new BufferedOutputStream(Files.newOutputStream(path), bufferSize);
+        this.encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+    }
+
+
+    void writeHeader(ContainerHeader header) throws IOException {
+        encoder.writeFixed(ContainerHeader.MAGIC);
+
+        encoder.writeMapStart();
+        encoder.setItemCount(header.metadata().size());
+        for (Map.Entry<String, byte[]> entry : header.metadata().entrySet()) {
+            encoder.startItem();
+            encoder.writeString(entry.getKey());
+            encoder.writeBytes(entry.getValue());
+        }
+        encoder.writeMapEnd();
+
+        sync = header.sync();
+        encoder.writeFixed(sync);
+    }
+
+
+    void writeBlock(Block block) throws IOException {
+        encoder.writeLong(block.count);
+        encoder.writeLong(block.length);
+        out.write(block.data, 0, block.length);
+        encoder.writeFixed(sync);
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.github.petersilverwood.avrodecimaltools.cli;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.Codec;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Rewrites Avro container files block by block on a pool of workers.
+ *
+ * The reading thread only splits the file into its raw blocks. Each block is then decompressed, decoded, rewritten,
+ * encoded and compressed again on a worker, with a codec, decoder and encoder of its own, and the writing thread
+ * writes the finished blocks in their original order. At most two blocks per worker are in flight, which bounds
+ * the memory used, and records keep their blocks, so the output has the same layout as the input.
+ */
+public final class ContainerRewriter {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Function<Schema, DecimalFieldRewriter> rewriters;
+    private final ExecutorService workers;
+    private final int inFlight;
+    private final String outputCodec;
+    private final int bufferSize;
+
+
+    /**
+     * @param rewriters     the rewriter for the schema of a file
+     * @param workers       the pool blocks are rewritten on
+     * @param threads       the number of threads of the pool
+     * @param outputCodec   the codec of the output, or null for that of the input
+     * @param bufferSize    the size of the read and write buffers
+     */
+    public ContainerRewriter(Function<Schema, DecimalFieldRewriter> rewriters, ExecutorService workers, int threads,
+                             String outputCodec, int bufferSize) {
+        this.rewriters = rewriters;
+        this.workers = workers;
+        this.inFlight = 2 * threads;
+        this.outputCodec = outputCodec;
+        this.bufferSize = bufferSize;
+    }
+
+
+    /**
+     * Writes the output to a temporary file next to it, and moves that into place once every block is written.
+     * On failure the temporary file is deleted, and an existing output is left as it was.
+     *
+     * @return the number of records rewritten
+     * @throws IOException if the file cannot be read or written, or a value cannot be rewritten
+     */
+    public long rewrite(Path input, Path output) throws IOException {
+        final Path target = output.toAbsolutePath();
+        final Path partial = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".partial");
+        try {
+            final long records = rewriteTo(input, partial);
+            moveIntoPlace(partial, target);
+            return records;
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+
+    private static void moveIntoPlace(Path partial, Path target) throws IOException {
+        try {
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+    private long rewriteTo(Path input, Path output) throws IOException {
+        try (ContainerInput in = new ContainerInput(input, bufferSize);
+             ContainerOutput out = new ContainerOutput(output, bufferSize)) {
+
+            final ContainerHeader header = in.readHeader();
+            final DecimalFieldRewriter rewriter = rewriters.apply(header.schema());
+            final String codec = outputCodec == null ? header.codec() : outputCodec;
+
+            final byte[] sync = new byte[ContainerHeader.SYNC_SIZE];
+            RANDOM.nextBytes(sync);
+            out.writeHeader(header.rewritten(rewriter.outputSchema(), codec, sync));
+
+            // Codecs, readers and writers keep state, every worker thread has its own:
+            final ThreadLocal<BlockWorker> blockWorkers = ThreadLocal.withInitial(() -> new BlockWorker(rewriter, header.codec(), codec));
+
+            final ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+            long records = 0;
+            long blockIndex = 0;
+            try {
+                for (Block block = in.nextBlock(); block != null; block = in.nextBlock()) {
+                    final Block raw = block;
+                    pending.add(workers.submit(() -> blockWorkers.get().rewrite(raw)));
+                    records += block.count;
+                    if (pending.size() >= inFlight) {
+                        out.writeBlock(await(pending.poll(), input, blockIndex++));
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    out.writeBlock(await(pending.poll(), input, blockIndex++));
+                }
+            } finally {
+                for (Future<Block> future : pending) {
+                    future.cancel(true);
+                }
+            }
+            return records;
+        }
+    }
+
+
+    private static Block await(Future<Block> future, Path input, long blockIndex) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted rewriting " + input, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to rewrite block " + blockIndex + " of " + input + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+
+    private static final class BlockWorker {
+
+        private final DecimalFieldRewriter rewriter;
+        private final Codec inputCodec;
+        private final Codec outputCodec;
+
+        private final GenericDatumReader<Object> reader;
+        private final GenericDatumWriter<Object> writer;
+        private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        private BinaryDecoder decoder;
+        private BinaryEncoder encoder;
+        private Object datum;
+
+        BlockWorker(DecimalFieldRewriter rewriter, String inputCodec, String outputCodec) {
+            this.rewriter = rewriter;
+            this.inputCodec = Codecs.create(inputCodec);
+            this.outputCodec = Codecs.create(outputCodec);
+            this.reader = new GenericDatumReader<>(rewriter.inputSchema());
+            this.writer = new GenericDatumWriter<>(rewriter.outputSchema());
+        }
+
+        Block rewrite(Block block) throws IOException {
+            final ByteBuffer raw = inputCodec.decompress(ByteBuffer.wrap(block.data, 0, block.length));
+            decoder = DecoderFactory.get().binaryDecoder(raw.array(), raw.arrayOffset() + raw.position(), raw.remaining(), decoder);
+
+            encoded.reset();
+            encoder = EncoderFactory.get().binaryEncoder(encoded, encoder);
+            for (long i = 0; i < block.count; i++) {
+                // The datum is reused, the rewrite replaces only the values it converts:
+                datum = reader.read(datum, decoder);
+                writer.write(rewriter.rewrite(datum), encoder);
+            }
+            encoder.flush();
+
+            final byte[] bytes = encoded.toByteArray();
+            final ByteBuffer compressed = outputCodec.compress(ByteBuffer.wrap(bytes));
+            if (compressed.array() == bytes) {
+                return new Block(block.count, bytes, compressed.limit());
+            }
+
+            // Other codecs reuse their output buffer, the block needs a copy of its own:
+            final byte[] data = Arrays.copyOfRange(compressed.array(), compressed.arrayOffset() + compressed.position(),
+                    compressed.arrayOffset() + compressed.limit());
+            return new Block(block.count, data, data.length);
+        }
+    }
+
+}
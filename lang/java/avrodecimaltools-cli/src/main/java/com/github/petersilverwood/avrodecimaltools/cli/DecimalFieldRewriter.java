@@ -0,0 +1,227 @@
+package com.github.petersilverwood.avrodecimaltools.cli;
+
+import com.github.petersilverwood.avrodecimaltools.DecimalCodec;
+import com.github.petersilverwood.avrodecimaltools.DecimalTarget;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.IndexedRecord;
+
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites bytes fields of Avro records into the decimal logical type.
+ *
+ * Fields are given as dotted paths with their scale, as for CastDecimal; records, unions, arrays and maps along a
+ * path are descended into. A decimal is written as the same bytes as its unscaled value, so values are only
+ * decoded (with DecimalTarget, as CastDecimal decodes them) when they are rescaled, or when they are long enough
+ * to possibly have more digits than the precision. Anything else is passed on untouched.
+ *
+ * Instances are immutable once built and may be shared by any number of threads.
+ */
+public final class DecimalFieldRewriter {
+
+    private final Schema inputSchema;
+    private final Schema outputSchema;
+    private final Node root = new Node("");
+
+    private final Integer targetScale;
+    private final int precision;
+    private final DecimalTarget target;
+    private final int checkedLength;
+
+
+    /**
+     * @param fieldScales   the scale of each field path
+     * @param targetScale   the scale to rescale to, or null to keep the scale of each field
+     * @param precision     the precision declared on the decimal schemas, and checked against
+     */
+    public DecimalFieldRewriter(Schema inputSchema, Map<String, Integer> fieldScales, Integer targetScale, int precision,
+                                RoundingMode roundingMode) {
+        this.inputSchema = inputSchema;
+        this.targetScale = targetScale;
+        this.precision = precision;
+        this.target = new DecimalTarget(targetScale, precision, roundingMode);
+        this.checkedLength = DecimalTarget.uncheckedLength(precision) + 1;
+
+        for (Map.Entry<String, Integer> field : fieldScales.entrySet()) {
+            root.add(field.getKey(), field.getValue());
+        }
+        this.outputSchema = rewrite(inputSchema, root);
+
+        final List<String> unmatched = new ArrayList<>();
+        root.collectUnmatched(unmatched);
+        if (!unmatched.isEmpty()) {
+            throw new IllegalArgumentException("No bytes fields at " + unmatched + " in " + inputSchema.getFullName());
+        }
+    }
+
+
+    public Schema inputSchema() {
+        return inputSchema;
+    }
+
+    public Schema outputSchema() {
+        return outputSchema;
+    }
+
+
+    /**
+     * Rewrites a datum of the input schema into one of the output schema, in place where it can
+     *
+     * @throws ArithmeticException if a value exceeds the precision, or needs rounding under UNNECESSARY
+     */
+    public Object rewrite(Object datum) {
+        return rewrite(datum, inputSchema, root);
+    }
+
+
+    private Schema rewrite(Schema schema, Node node) {
+        switch (schema.getType()) {
+            case BYTES:
+                if (node.scale == null) {
+                    return schema;
+                }
+                node.matched = true;
+                return LogicalTypes.decimal(precision, targetScale == null ? node.scale : targetScale).addToSchema(Schema.create(Schema.Type.BYTES));
+            case RECORD: {
+                if (node.scale != null) {
+                    throw new IllegalArgumentException("Field '" + node.path + "' is a record, not bytes");
+                }
+                final List<Schema.Field> fields = new ArrayList<>();
+                for (Schema.Field field : schema.getFields()) {
+                    final Node child = node.children.get(field.name());
+                    fields.add(new Schema.Field(field, child == null ? field.schema() : rewrite(field.schema(), child)));
+                }
+                final Schema record = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError(), fields);
+                record.addAllProps(schema);
+                for (String alias : schema.getAliases()) {
+                    record.addAlias(alias);
+                }
+                return record;
+            }
+            case UNION: {
+                final List<Schema> types = new ArrayList<>();
+                for (Schema type : schema.getTypes()) {
+                    types.add(rewrite(type, node));
+                }
+                return Schema.createUnion(types);
+            }
+            case ARRAY: {
+                final Schema array = Schema.createArray(rewrite(schema.getElementType(), node));
+                array.addAllProps(schema);
+                return array;
+            }
+            case MAP: {
+                final Schema map = Schema.createMap(rewrite(schema.getValueType(), node));
+                map.addAllProps(schema);
+                return map;
+            }
+            case NULL:
+                return schema;
+            default:
+                if (node.scale != null) {
+                    throw new IllegalArgumentException("Field '" + node.path + "' is " + schema.getType() + ", not bytes");
+                }
+                return schema;
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private Object rewrite(Object value, Schema schema, Node node) {
+        if (value == null) {
+            return null;
+        }
+        switch (schema.getType()) {
+            case BYTES:
+                return node.scale == null ? value : rewrite((ByteBuffer) value, node);
+            case RECORD: {
+                final IndexedRecord record = (IndexedRecord) value;
+                for (Map.Entry<String, Node> child : node.children.entrySet()) {
+                    final Schema.Field field = schema.getField(child.getKey());
+                    if (field != null) {
+                        record.put(field.pos(), rewrite(record.get(field.pos()), field.schema(), child.getValue()));
+                    }
+                }
+                return record;
+            }
+            case UNION:
+                return rewrite(value, schema.getTypes().get(GenericData.get().resolveUnion(schema, value)), node);
+            case ARRAY: {
+                final List<Object> list = (List<Object>) value;
+                for (int i = 0; i < list.size(); i++) {
+                    list.set(i, rewrite(list.get(i), schema.getElementType(), node));
+                }
+                return list;
+            }
+            case MAP: {
+                for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
+                    entry.setValue(rewrite(entry.getValue(), schema.getValueType(), node));
+                }
+                return value;
+            }
+            default:
+                return value;
+        }
+    }
+
+
+    private ByteBuffer rewrite(ByteBuffer value, Node node) {
+        try {
+            if (targetScale == null || targetScale.equals(node.scale)) {
+                // The bytes stay as they are, only long ones can have too many digits:
+                if (value.remaining() >= checkedLength) {
+                    target.decode(value, node.scale);
+                }
+                return value;
+            }
+            return ByteBuffer.wrap(DecimalCodec.encode(target.decode(value, node.scale)));
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Field '" + node.path + "': " + e.getMessage());
+        }
+    }
+
+
+    private static final class Node {
+
+        final String path;
+        final Map<String, Node> children = new HashMap<>();
+        Integer scale;
+        boolean matched;
+
+        Node(String path) {
+            this.path = path;
+        }
+
+        void add(String fieldPath, int fieldScale) {
+            Node node = this;
+            for (String name : fieldPath.split("\\.")) {
+                if (node.scale != null) {
+                    throw new IllegalArgumentException("Field '" + fieldPath + "' is inside decimal field '" + node.path + "'");
+                }
+                final String childPath = node.path.isEmpty() ? name : node.path + "." + name;
+                node = node.children.computeIfAbsent(name, key -> new Node(childPath));
+            }
+            if (!node.children.isEmpty() || node.scale != null) {
+                throw new IllegalArgumentException("Field '" + fieldPath + "' is given twice, or has fields given inside it");
+            }
+            node.scale = fieldScale;
+        }
+
+        void collectUnmatched(List<String> unmatched) {
+            if (scale != null && !matched) {
+                unmatched.add(path);
+            }
+            for (Node child : children.values()) {
+                child.collectUnmatched(unmatched);
+            }
+        }
+    }
+
+}
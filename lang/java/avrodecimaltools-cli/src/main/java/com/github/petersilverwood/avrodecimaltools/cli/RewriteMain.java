@@ -0,0 +1,218 @@
+package com.github.petersilverwood.avrodecimaltools.cli;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewrites bytes fields of local Avro container files into decimals:
+ *
+ *     java -jar avro-decimal-rewrite.jar --fields amount:4,after.fee:2 --output rewritten/ archive/*.avro
+ *
+ * Options, with the settings of CastDecimal they mirror:
+ *
+ *     --fields path[:scale],...    fields, as 'fields'
+ *     --scale N                    the scale of fields given without one, as 'scale'
+ *     --target-scale N             as 'target.scale'
+ *     --precision N                as 'target.precision', declared on the decimal schemas; 38 by default
+ *     --rounding-mode MODE         as 'rounding.mode', HALF_UP by default
+ *     --codec NAME                 codec of the output files, that of each input file by default
+ *     --threads N                  worker threads, one per core by default
+ *     --output DIR                 directory the files are written to, under their own names
+ *
+ * Directories given as input are rewritten file by file (*.avro). Inputs must have distinct file names, which is
+ * checked before anything is written. Blocks are rewritten in parallel, see ContainerRewriter. An output file only
+ * appears once it is complete, so a failed file can simply be run again.
+ */
+public final class RewriteMain {
+
+    static final int DEFAULT_PRECISION = 38;
+    static final int BUFFER_SIZE = 8 << 20;
+
+    private RewriteMain() {
+    }
+
+
+    public static void main(String[] args) {
+        final Options options;
+        final List<Path> inputFiles;
+        try {
+            options = Options.parse(args);
+            inputFiles = options.inputFiles();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: --fields path[:scale],... [--scale N] [--target-scale N] [--precision N] "
+                    + "[--rounding-mode MODE] [--codec NAME] [--threads N] --output DIR input...");
+            System.exit(2);
+            return;
+        }
+
+        final ExecutorService workers = Executors.newFixedThreadPool(options.threads);
+        try {
+            System.exit(run(options, inputFiles, workers));
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+
+    static int run(Options options, List<Path> inputFiles, ExecutorService workers) {
+        final ContainerRewriter rewriter = new ContainerRewriter(
+                schema -> new DecimalFieldRewriter(schema, options.fields, options.targetScale, options.precision, options.roundingMode),
+                workers, options.threads, options.codec, BUFFER_SIZE);
+
+        int failed = 0;
+        for (Path input : inputFiles) {
+            final Path output = options.output.resolve(input.getFileName());
+            final long start = System.nanoTime();
+            try {
+                if (Files.exists(output) && Files.isSameFile(input, output)) {
+                    throw new IOException("Output is the input file");
+                }
+                final long records = rewriter.rewrite(input, output);
+                final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                System.out.printf(Locale.ROOT, "%s: %d records in %d ms (%.1f MB/s)%n", input, records, millis,
+                        Files.size(input) / 1e3 / Math.max(millis, 1));
+            } catch (IOException | RuntimeException e) {
+                System.err.println(input + ": " + e.getMessage());
+                failed++;
+            }
+        }
+        return failed == 0 ? 0 : 1;
+    }
+
+
+    static final class Options {
+
+        final Map<String, Integer> fields = new LinkedHashMap<>();
+        final List<Path> inputs = new ArrayList<>();
+        Integer targetScale;
+        int precision = DEFAULT_PRECISION;
+        RoundingMode roundingMode = RoundingMode.HALF_UP;
+        String codec;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path output;
+
+
+        static Options parse(String[] args) {
+            final Options options = new Options();
+            String fieldSpecs = null;
+            Integer scale = null;
+
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    options.inputs.add(Paths.get(arg));
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value of " + arg);
+                }
+                final String value = args[++i];
+                switch (arg) {
+                    case "--fields":
+                        fieldSpecs = value;
+                        break;
+                    case "--scale":
+                        scale = parseInt(arg, value);
+                        break;
+                    case "--target-scale":
+                        options.targetScale = parseInt(arg, value);
+                        break;
+                    case "--precision":
+                        options.precision = parseInt(arg, value);
+                        break;
+                    case "--rounding-mode":
+                        options.roundingMode = RoundingMode.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--codec":
+                        options.codec = value;
+                        break;
+                    case "--threads":
+                        options.threads = parseInt(arg, value);
+                        break;
+                    case "--output":
+                        options.output = Paths.get(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+
+            if (fieldSpecs == null || options.output == null || options.inputs.isEmpty()) {
+                throw new IllegalArgumentException("--fields, --output and at least one input are required");
+            }
+            if (options.precision < 1 || options.threads < 1) {
+                throw new IllegalArgumentException("--precision and --threads must be at least 1");
+            }
+            for (String spec : fieldSpecs.split(",")) {
+                final int separator = spec.lastIndexOf(':');
+                if (separator >= 0) {
+                    options.fields.put(spec.substring(0, separator).trim(), parseInt("--fields", spec.substring(separator + 1).trim()));
+                } else if (scale != null) {
+                    options.fields.put(spec.trim(), scale);
+                } else {
+                    throw new IllegalArgumentException("--scale must be set when using --fields without explicit scales");
+                }
+            }
+            return options;
+        }
+
+
+        /**
+         * The input files, directories listed
+         *
+         * @throws IllegalArgumentException if a directory cannot be listed, or two files would be written to the
+         *                                  same output
+         */
+        List<Path> inputFiles() {
+            final List<Path> files = new ArrayList<>();
+            for (Path input : inputs) {
+                if (!Files.isDirectory(input)) {
+                    files.add(input);
+                    continue;
+                }
+                try (DirectoryStream<Path> directory = Files.newDirectoryStream(input, "*.avro")) {
+                    for (Path file : directory) {
+                        files.add(file);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Cannot list " + input + ": " + e.getMessage(), e);
+                }
+            }
+            files.sort(null);
+
+            final Map<Path, Path> byName = new HashMap<>();
+            for (Path file : files) {
+                final Path other = byName.put(file.getFileName(), file);
+                if (other != null) {
+                    throw new IllegalArgumentException("Inputs " + other + " and " + file + " would both be written to "
+                            + output.resolve(file.getFileName()));
+                }
+            }
+            return files;
+        }
+
+
+        private static int parseInt(String option, String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of " + option + ": " + value);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.github.petersilverwood.avrodecimaltools.cli;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+public class ContainerRewriterTests {
+
+    private static final Schema FEE = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"Fee\", \"fields\": ["
+            + "{\"name\": \"fee\", \"type\": [\"null\", \"bytes\"]}"
+            + "]}");
+
+    private static final Schema PAYMENT = Schema.createRecord("Payment", null, "com.example", false, java.util.Arrays.asList(
+            new Schema.Field("id", Schema.create(Schema.Type.LONG), null, (Object) null),
+            new Schema.Field("amount", Schema.create(Schema.Type.BYTES), null, (Object) null),
+            new Schema.Field("after", FEE, null, (Object) null)));
+
+    private static final int RECORDS = 5000;
+    private static final int THREADS = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+
+
+    @After
+    public void tearDown() {
+        workers.shutdownNow();
+    }
+
+
+    @Test
+    public void rewritesBlocksInOrder() throws IOException {
+        final File input = write(CodecFactory.deflateCodec(6));
+        final File output = new File(folder.getRoot(), "out.avro");
+
+        final long records = rewriter(null, "null").rewrite(input.toPath(), output.toPath());
+        assertEquals(RECORDS, records);
+
+        int i = 0;
+        for (GenericRecord record : read(output)) {
+            assertEquals((long) i, record.get("id"));
+            assertEquals(new BigDecimal(BigInteger.valueOf(i * 7919L - 100_000), 4), record.get("amount"));
+            final Object fee = ((GenericRecord) record.get("after")).get("fee");
+            if (i % 3 == 0) {
+                assertNull(fee);
+            } else {
+                assertEquals(new BigDecimal(BigInteger.valueOf(i), 2), fee);
+            }
+            i++;
+        }
+        assertEquals(RECORDS, i);
+    }
+
+
+    @Test
+    public void rescalesValues() throws IOException {
+        final File input = write(CodecFactory.nullCodec());
+        final File output = new File(folder.getRoot(), "out.avro");
+
+        rewriter(2, "deflate").rewrite(input.toPath(), output.toPath());
+
+        int i = 0;
+        for (GenericRecord record : read(output)) {
+            assertEquals(new BigDecimal(BigInteger.valueOf(i * 7919L - 100_000), 4).setScale(2, RoundingMode.HALF_UP), record.get("amount"));
+            i++;
+        }
+        assertEquals(RECORDS, i);
+    }
+
+
+    @Test
+    public void precisionOverflowFails() throws IOException {
+        final File input = write(CodecFactory.deflateCodec(1));
+        final File output = new File(folder.getRoot(), "out.avro");
+
+        final Map<String, Integer> fields = new HashMap<>();
+        fields.put("amount", 4);
+        final ContainerRewriter rewriter = new ContainerRewriter(
+                schema -> new DecimalFieldRewriter(schema, fields, null, 5, RoundingMode.HALF_UP), workers, THREADS, null, 1 << 16);
+
+        try {
+            rewriter.rewrite(input.toPath(), output.toPath());
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("amount"));
+        }
+    }
+
+
+    @Test
+    public void failedRewriteLeavesNoOutput() throws IOException {
+        final File input = write(CodecFactory.deflateCodec(1));
+        final File output = new File(folder.getRoot(), "out.avro");
+
+        final Map<String, Integer> fields = new HashMap<>();
+        fields.put("amount", 4);
+        final ContainerRewriter rewriter = new ContainerRewriter(
+                schema -> new DecimalFieldRewriter(schema, fields, null, 5, RoundingMode.HALF_UP), workers, THREADS, null, 1 << 16);
+
+        try {
+            rewriter.rewrite(input.toPath(), output.toPath());
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // Neither a truncated output nor the temporary file it was written to is left behind:
+            assertFalse(output.exists());
+            assertArrayEquals(new String[]{"in.avro"}, folder.getRoot().list());
+        }
+    }
+
+
+    @Test
+    public void writesSnappyBlocks() throws IOException {
+        final File input = write(CodecFactory.snappyCodec());
+        final File output = new File(folder.getRoot(), "out.avro");
+
+        rewriter(null, "snappy").rewrite(input.toPath(), output.toPath());
+
+        int i = 0;
+        try (DataFileReader<GenericRecord> reader = read(output)) {
+            assertEquals("snappy", reader.getMetaString("avro.codec"));
+            for (GenericRecord record : reader) {
+                assertEquals(new BigDecimal(BigInteger.valueOf(i * 7919L - 100_000), 4), record.get("amount"));
+                i++;
+            }
+        }
+        assertEquals(RECORDS, i);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFieldIsRejected() {
+        final Map<String, Integer> fields = new HashMap<>();
+        fields.put("after.missing", 2);
+        new DecimalFieldRewriter(PAYMENT, fields, null, 38, RoundingMode.HALF_UP);
+    }
+
+
+    private ContainerRewriter rewriter(Integer targetScale, String codec) {
+        final Map<String, Integer> fields = new HashMap<>();
+        fields.put("amount", 4);
+        fields.put("after.fee", 2);
+        return new ContainerRewriter(schema -> new DecimalFieldRewriter(schema, fields, targetScale, 38, RoundingMode.HALF_UP),
+                workers, THREADS, codec, 1 << 16);
+    }
+
+
+    /*
+    * A small sync interval, so the file has a few hundred blocks
+     */
+    private File write(CodecFactory codec) throws IOException {
+        final File file = folder.newFile("in.avro");
+        try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(PAYMENT))) {
+            writer.setCodec(codec);
+            writer.setSyncInterval(512);
+            writer.create(PAYMENT, file);
+            for (int i = 0; i < RECORDS; i++) {
+                final GenericRecord fee = new GenericData.Record(FEE);
+                fee.put("fee", i % 3 == 0 ? null : ByteBuffer.wrap(BigInteger.valueOf(i).toByteArray()));
+
+                final GenericRecord payment = new GenericData.Record(PAYMENT);
+                payment.put("id", (long) i);
+                payment.put("amount", ByteBuffer.wrap(BigInteger.valueOf(i * 7919L - 100_000).toByteArray()));
+                payment.put("after", fee);
+                writer.append(payment);
+            }
+        }
+        return file;
+    }
+
+
+    private static DataFileReader<GenericRecord> read(File file) throws IOException {
+        final GenericData data = new GenericData();
+        data.addLogicalTypeConversion(new Conversions.DecimalConversion());
+        final DataFileReader<GenericRecord> reader = new DataFileReader<>(file, new GenericDatumReader<>(null, null, data));
+        assertTrue(LogicalTypes.fromSchema(reader.getSchema().getField("amount").schema()) instanceof LogicalTypes.Decimal);
+        return reader;
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.github.petersilverwood.avrodecimaltools.cli;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+
+public class RewriteMainTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void listsDirectoriesInOrder() throws IOException {
+        final File archive = folder.newFolder("archive");
+        new File(archive, "b.avro").createNewFile();
+        new File(archive, "a.avro").createNewFile();
+        new File(archive, "notes.txt").createNewFile();
+
+        final List<Path> files = options(archive.getPath()).inputFiles();
+
+        assertEquals(2, files.size());
+        assertEquals("a.avro", files.get(0).getFileName().toString());
+        assertEquals("b.avro", files.get(1).getFileName().toString());
+    }
+
+
+    @Test
+    public void inputsOfTheSameNameAreRejected() throws IOException {
+        final File january = folder.newFolder("2024-01");
+        final File february = folder.newFolder("2024-02");
+        new File(january, "orders.avro").createNewFile();
+        new File(february, "orders.avro").createNewFile();
+
+        try {
+            options(january.getPath(), february.getPath()).inputFiles();
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("orders.avro"));
+        }
+    }
+
+
+    private RewriteMain.Options options(String... inputs) {
+        final String[] args = new String[4 + inputs.length];
+        args[0] = "--fields";
+        args[1] = "amount:2";
+        args[2] = "--output";
+        args[3] = new File(folder.getRoot(), "out").getPath();
+        System.arraycopy(inputs, 0, args, 4, inputs.length);
+        return RewriteMain.Options.parse(args);
+    }
+
+}
@@ -1,74 +1,122 @@
 package com.github.petersilverwood.avrodecimaltools;
 
-import org.apache.kafka.common.cache.Cache;
-import org.apache.kafka.common.cache.LRUCache;
-import org.apache.kafka.common.cache.SynchronizedCache;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.connector.ConnectRecord;
-import org.apache.kafka.connect.data.Decimal;
-import org.apache.kafka.connect.data.Field;
-import org.apache.kafka.connect.data.Schema;
-import org.apache.kafka.connect.data.SchemaBuilder;
-import org.apache.kafka.connect.data.Struct;
-import org.apache.kafka.connect.transforms.util.SchemaUtil;
 import org.apache.kafka.connect.transforms.util.SimpleConfig;
-import org.apache.kafka.connect.transforms.Transformation;
-
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.github.petersilverwood.kafka.connect.CastFields;
+import com.github.petersilverwood.kafka.connect.DecimalScale;
+import com.github.petersilverwood.kafka.connect.ErrorPolicy;
+import com.github.petersilverwood.kafka.connect.RecordPart;
+import com.github.petersilverwood.kafka.connect.FieldPaths;
+import com.github.petersilverwood.kafka.connect.PathConversion;
+import com.github.petersilverwood.kafka.connect.SchemaCache;
+import com.github.petersilverwood.kafka.connect.SchemaWarmup;
+import com.github.petersilverwood.kafka.connect.StructPlan;
+import com.github.petersilverwood.kafka.connect.TransformMetrics;
 
 import java.util.Map;
+import java.util.regex.Pattern;
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 
 
-import static org.apache.kafka.connect.transforms.util.Requirements.requireStruct;
-
 /**
- * Connect transform to convert a bytes type into a Decimal logical type
+ * Connect transform to convert bytes types into Decimal logical types.
+ *
+ * Any number of fields can be cast by one instance, each with its own scale, in a single copy of the struct:
+ *
+ *     field=amount, scale=4                 a single field
+ *     fields=amount:4,fee:2,total           several fields, 'total' using the default 'scale'
+ *     field.pattern=.*_amt, scale=2         every top-level plain bytes field whose name matches
+ *
+ * Fields without an explicit scale can take theirs per record from a header (scale.header), or from a parameter
+ * of the field's schema (scale.parameter), so one instance serves topics mixing several scales. 'scale' is then
+ * the fallback when neither is present.
+ *
+ * target.scale and target.precision rescale the decoded values (rounding with rounding.mode, HALF_UP by default)
+ * and reject values with too many digits, judged on their byte length where possible. output.type writes the
+ * fields as int64 unscaled values (with a scale schema parameter), float64 or plain strings instead of Decimals,
+ * straight from the bytes.
+ *
+ * Values that cannot be cast fail the record with a DataException, unless on.error says to null the field or pass
+ * the record through; see ErrorPolicy.
+ *
+ * target=key casts fields of record keys instead, and target=both of keys and values at once, into a single new
+ * record; see RecordPart.
+ *
+ * Fields may be given as dotted paths into nested structs, e.g. after.amount. Arrays and maps along a path are
+ * descended into, so lines.amount casts the amount of every element of lines. Only the structs along a path are
+ * rebuilt; sibling values, including sub-structs, are passed on by reference.
+ *
+ * This is the decimal only configuration of CastFields.
  */
-public class CastDecimal<R extends ConnectRecord<R>> implements Transformation<R>  {
-
-    private static final Logger log = LoggerFactory.getLogger(CastDecimal.class);
+public class CastDecimal<R extends ConnectRecord<R>> extends CastFields<R> {
 
     protected interface ConfigNames {
         String FIELD = "field";
         String SCALE = "scale";
+        String FIELDS = "fields";
+        String FIELD_PATTERN = "field.pattern";
+        String TARGET_SCALE = "target.scale";
+        String TARGET_PRECISION = "target.precision";
+        String ROUNDING_MODE = "rounding.mode";
+        String OUTPUT_TYPE = "output.type";
+        String SCALE_HEADER = "scale.header";
+        String SCALE_PARAMETER = "scale.parameter";
     }
 
-    private static final String PURPOSE = "cast decimal field";
-
-    public static final ConfigDef CONFIG_DEF = new ConfigDef()
+    public static final ConfigDef CONFIG_DEF = RecordPart.define(ErrorPolicy.define(SchemaWarmup.define(StructPlan.define(TransformMetrics.define(SchemaCache.define(new ConfigDef()
             .define(ConfigNames.FIELD,
                     ConfigDef.Type.STRING,
-                    ConfigDef.NO_DEFAULT_VALUE,
+                    null,
                     (name, valueObject) -> {
-                        if(valueObject == null || valueObject.equals("")){
+                        if(valueObject != null && valueObject.equals("")){
                             throw new ConfigException("Must specify a field to cast.");
                         };
                     },
                     ConfigDef.Importance.HIGH,
                     "The field containing the decimal logicalType")
-            .define(ConfigNames.SCALE, ConfigDef.Type.INT, ConfigDef.NO_DEFAULT_VALUE, ConfigDef.Importance.HIGH,
-                    "The desired scale for the decimal");
+            .define(ConfigNames.SCALE, ConfigDef.Type.INT, null, ConfigDef.Importance.HIGH,
+                    "The desired scale for the decimal")
+            .define(ConfigNames.SCALE_HEADER, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+                    "Record header holding the scale, overriding '" + ConfigNames.SCALE + "' for records that have it")
+            .define(ConfigNames.SCALE_PARAMETER, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+                    "Schema parameter holding the scale of a field, overriding the header and '" + ConfigNames.SCALE + "'")
+            .define(ConfigNames.FIELDS, ConfigDef.Type.LIST, "", ConfigDef.Importance.HIGH,
+                    "List of fields to cast, as field:scale pairs. Fields may be dotted paths into nested structs. Fields given without a scale use '" + ConfigNames.SCALE + "'")
+            .define(ConfigNames.FIELD_PATTERN, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+                    "Regular expression; every bytes field whose name matches is cast using '" + ConfigNames.SCALE + "'")
+            .define(ConfigNames.TARGET_SCALE, ConfigDef.Type.INT, null, atLeastOrNull(0), ConfigDef.Importance.MEDIUM,
+                    "Scale to rescale the decimals to, rounding with '" + ConfigNames.ROUNDING_MODE + "'")
+            .define(ConfigNames.TARGET_PRECISION, ConfigDef.Type.INT, null, atLeastOrNull(1), ConfigDef.Importance.MEDIUM,
+                    "Maximum number of digits of the decimals; larger values fail the record")
+            .define(ConfigNames.ROUNDING_MODE, ConfigDef.Type.STRING, DEFAULT_ROUNDING_MODE, ROUNDING_MODES, ConfigDef.Importance.LOW,
+                    "java.math.RoundingMode used when rescaling, e.g. HALF_UP, HALF_EVEN or UNNECESSARY")
+            .define(ConfigNames.OUTPUT_TYPE, ConfigDef.Type.STRING, DEFAULT_OUTPUT_TYPE, OUTPUT_TYPES, ConfigDef.Importance.MEDIUM,
+                    "Type to write the fields as: decimal, int64 (the unscaled value), float64 or string")))))));
 
 
-    private String field;
-    private int scale;
-
-    private Cache<Schema, Schema> schemaUpdateCache;
-
     @Override
     public void configure(Map<String, ?> props) {
         final SimpleConfig config = new SimpleConfig(CONFIG_DEF, props);
-        field = config.getString(ConfigNames.FIELD);
-        scale = config.getInt(ConfigNames.SCALE);
+        final DecimalScale scale = new DecimalScale(config.getInt(ConfigNames.SCALE),
+                config.getString(ConfigNames.SCALE_HEADER), config.getString(ConfigNames.SCALE_PARAMETER));
+        final DecimalTarget target = decimalTarget(config, ConfigNames.TARGET_SCALE, ConfigNames.TARGET_PRECISION,
+                ConfigNames.ROUNDING_MODE, ConfigNames.OUTPUT_TYPE);
+
+        final FieldPaths<PathConversion> fieldScales = new FieldPaths<>();
+        final String field = config.getString(ConfigNames.FIELD);
+        if (field != null) {
+            addField(fieldScales, ConfigNames.FIELD, field, defaultScaleConversion(scale, target, ConfigNames.SCALE, ConfigNames.FIELD));
+        }
+        addDecimalFields(fieldScales, ConfigNames.FIELDS, config.getList(ConfigNames.FIELDS), scale, target, ConfigNames.SCALE);
 
-        schemaUpdateCache = new SynchronizedCache<>(new LRUCache<Schema, Schema>(16));
+        final Pattern fieldPattern = compilePattern(ConfigNames.FIELD_PATTERN, config.getString(ConfigNames.FIELD_PATTERN));
+        final PathConversion patternConversion = fieldPattern == null ? null
+                : defaultScaleConversion(scale, target, ConfigNames.SCALE, ConfigNames.FIELD_PATTERN);
 
+        configure(fieldScales, fieldPattern, patternConversion, scale, config);
     }
 
     @Override
@@ -76,95 +124,26 @@ public class CastDecimal<R extends ConnectRecord<R>> implements Transformation<R
         return CONFIG_DEF;
     }
 
-    @Override
-    public void close() {
-
-    }
-
-    @Override
-    public R apply(R record) {
-
-        // Check that the SMT is applied to a field in the record value only.
-        if (null == record.valueSchema() || Schema.Type.STRUCT != record.valueSchema().type()) {
-            log.trace("record.valueSchema() is null or record.valueSchema() is not a struct.");
-            return record;
-        }
-
-        // Build new schema
-        Schema updatedSchema = getOrBuildSchema(record.valueSchema());
-
-
-        // The record value must contain a Struct type, which we can clone to a new Struct with the updated schema.
-        Struct value = requireStruct(record.value(), PURPOSE);
-
-        final Struct updatedValue = new Struct(updatedSchema);
-        for (Field field : value.schema().fields()) {
-
-            final Object origFieldValue = value.get(field);
-            if(field.name().equals(this.field)){
-
-                // Do cast:
-                Object newFieldValue = fromBytes((ByteBuffer)origFieldValue, this.scale);
-
-                updatedValue.put(updatedSchema.field(field.name()), newFieldValue);
-                log.trace("Cast field '{}' from '{}' to '{}'", field.name(), origFieldValue, newFieldValue);
-            }else{
-                updatedValue.put(updatedSchema.field(field.name()), origFieldValue);
-            }
-
-        }
-
-        // Return a new record:
-        return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(), updatedSchema, updatedValue, record.timestamp());
-
-    }
-
 
     protected byte[] toBytes(BigDecimal value) {
-        return value.unscaledValue().toByteArray();
+        return DecimalCodec.encode(value);
     }
 
     protected ByteBuffer toByteBuffer(BigDecimal value) {
-        return ByteBuffer.wrap(value.unscaledValue().toByteArray());
+        return ByteBuffer.wrap(DecimalCodec.encode(value));
     }
 
 
     protected BigDecimal fromBytes(byte[] value, int scale) {
-        return new BigDecimal(new BigInteger(value), scale);
+        return DecimalCodec.decode(value, scale);
     }
 
 
+    /*
+    * Decodes without copying the buffer or moving its position, see DecimalCodec
+     */
     protected BigDecimal fromBytes(ByteBuffer value, int scale) {
-        byte[] bytes = new byte[value.remaining()];
-        value.get(bytes);
-        return new BigDecimal(new BigInteger(bytes), scale);
-    }
-
-
-    private Schema getOrBuildSchema(Schema valueSchema) {
-
-        // Lookup from cache:
-        Schema updatedSchema = schemaUpdateCache.get(valueSchema);
-        if (updatedSchema != null)
-            return updatedSchema;
-
-        final SchemaBuilder builder = SchemaUtil.copySchemaBasics(valueSchema, SchemaBuilder.struct());
-
-        for (Field field : valueSchema.fields()) {
-            if (this.field.equals(field.name())) {
-
-                builder.field(field.name(), Decimal.schema(this.scale));
-
-            } else {
-                builder.field(field.name(), field.schema());
-            }
-        }
-
-        updatedSchema = builder.build();
-        schemaUpdateCache.put(valueSchema, updatedSchema);
-        return updatedSchema;
-
-
+        return DecimalCodec.decode(value, scale);
     }
 
 
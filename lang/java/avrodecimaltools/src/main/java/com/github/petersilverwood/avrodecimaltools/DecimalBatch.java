@@ -0,0 +1,226 @@
+package com.github.petersilverwood.avrodecimaltools;
+
+import java.math.BigDecimal;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes many Avro decimal values of one scale at a time, for consumers outside of Connect:
+ *
+ *     DecimalBatch batch = DecimalBatch.decode(values, 4);
+ *     long[] unscaled = batch.unscaled();
+ *
+ * Values that fit a long land in a primitive long[] of unscaled values. Values that do not are flagged in an
+ * overflow bitmap (bit i of word i / 64) and left at 0; they are only decoded, to BigDecimal, when asked for.
+ * The source buffers are therefore referenced by the batch and must not be modified while it is in use.
+ *
+ * The decodeUnscaled methods fill caller supplied arrays, so a column of values can be decoded repeatedly
+ * without allocating.
+ */
+public final class DecimalBatch {
+
+    private final int scale;
+    private final int size;
+    private final long[] unscaled;
+    private final long[] overflow;
+    private final int overflowCount;
+
+    // Either the separate values, or one buffer with offsets:
+    private final ByteBuffer[] values;
+    private final ByteBuffer buffer;
+    private final int base;
+    private final int[] offsets;
+
+
+    private DecimalBatch(int scale, int size, ByteBuffer[] values, ByteBuffer buffer, int[] offsets) {
+        this.scale = scale;
+        this.size = size;
+        this.values = values;
+        this.buffer = buffer;
+        this.base = buffer == null ? 0 : buffer.position();
+        this.offsets = offsets;
+        this.unscaled = new long[size];
+        this.overflow = new long[bitmapLength(size)];
+        this.overflowCount = values != null
+                ? decodeUnscaled(values, unscaled, overflow)
+                : decodeUnscaled(buffer, offsets, unscaled, overflow);
+    }
+
+
+    public static DecimalBatch decode(ByteBuffer[] values, int scale) {
+        return new DecimalBatch(scale, values.length, values, null, null);
+    }
+
+    public static DecimalBatch decode(List<ByteBuffer> values, int scale) {
+        return decode(values.toArray(new ByteBuffer[0]), scale);
+    }
+
+    /**
+     * Decodes values stored back to back in one buffer. Value i spans offsets[i] to offsets[i + 1], relative to
+     * the buffer's position, so there is one offset more than there are values.
+     */
+    public static DecimalBatch decode(ByteBuffer buffer, int[] offsets, int scale) {
+        if (offsets.length == 0) {
+            throw new IllegalArgumentException("offsets must hold at least one entry");
+        }
+        return new DecimalBatch(scale, offsets.length - 1, null, buffer, offsets);
+    }
+
+
+    /**
+     * Number of longs needed for the overflow bitmap of size values
+     */
+    public static int bitmapLength(int size) {
+        return (size + 63) >>> 6;
+    }
+
+
+    /**
+     * Decodes the unscaled values into unscaled[0..values.length), setting bit i of the overflow bitmap, and
+     * leaving unscaled[i] at 0, for every value not fitting a long.
+     *
+     * @return the number of values that did not fit
+     */
+    public static int decodeUnscaled(ByteBuffer[] values, long[] unscaled, long[] overflow) {
+        final int size = values.length;
+        Arrays.fill(overflow, 0, bitmapLength(size), 0L);
+
+        int overflows = 0;
+        for (int i = 0; i < size; i++) {
+            final ByteBuffer value = values[i];
+            final int offset = value.position();
+            final int length = value.remaining();
+
+            if (length <= DecimalCodec.LONG_BYTES) {
+                unscaled[i] = DecimalCodec.readLong(value, offset, length);
+                continue;
+            }
+
+            long lo = 0;
+            boolean fits = false;
+            if (length <= DecimalCodec.INT128_BYTES) {
+                final long hi = DecimalCodec.readLong(value, offset, length - DecimalCodec.LONG_BYTES);
+                lo = DecimalCodec.readLong(value, offset + length - DecimalCodec.LONG_BYTES, DecimalCodec.LONG_BYTES);
+                fits = hi == lo >> 63;
+            }
+            if (fits) {
+                unscaled[i] = lo;
+            } else {
+                unscaled[i] = 0;
+                overflow[i >>> 6] |= 1L << i;
+                overflows++;
+            }
+        }
+        return overflows;
+    }
+
+
+    /**
+     * As decodeUnscaled(ByteBuffer[], ...), for values stored back to back in one buffer
+     */
+    public static int decodeUnscaled(ByteBuffer buffer, int[] offsets, long[] unscaled, long[] overflow) {
+        final int size = offsets.length - 1;
+        final int base = buffer.position();
+        Arrays.fill(overflow, 0, bitmapLength(size), 0L);
+
+        int overflows = 0;
+        for (int i = 0; i < size; i++) {
+            final int offset = base + offsets[i];
+            final int length = offsets[i + 1] - offsets[i];
+
+            if (length <= DecimalCodec.LONG_BYTES) {
+                unscaled[i] = DecimalCodec.readLong(buffer, offset, length);
+                continue;
+            }
+
+            long lo = 0;
+            boolean fits = false;
+            if (length <= DecimalCodec.INT128_BYTES) {
+                final long hi = DecimalCodec.readLong(buffer, offset, length - DecimalCodec.LONG_BYTES);
+                lo = DecimalCodec.readLong(buffer, offset + length - DecimalCodec.LONG_BYTES, DecimalCodec.LONG_BYTES);
+                fits = hi == lo >> 63;
+            }
+            if (fits) {
+                unscaled[i] = lo;
+            } else {
+                unscaled[i] = 0;
+                overflow[i >>> 6] |= 1L << i;
+                overflows++;
+            }
+        }
+        return overflows;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    /**
+     * The unscaled values, 0 where a value overflows. The array is not copied.
+     */
+    public long[] unscaled() {
+        return unscaled;
+    }
+
+    public long unscaled(int index) {
+        return unscaled[index];
+    }
+
+    /**
+     * The overflow bitmap. The array is not copied.
+     */
+    public long[] overflow() {
+        return overflow;
+    }
+
+    public boolean overflows(int index) {
+        return (overflow[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public int overflowCount() {
+        return overflowCount;
+    }
+
+
+    public BigDecimal get(int index) {
+        if (!overflows(index)) {
+            return BigDecimal.valueOf(unscaled[index], scale);
+        }
+        return DecimalCodec.decode(source(index), scale);
+    }
+
+
+    public BigDecimal[] toBigDecimals() {
+        final BigDecimal[] decimals = new BigDecimal[size];
+        if (overflowCount == 0) {
+            for (int i = 0; i < size; i++) {
+                decimals[i] = BigDecimal.valueOf(unscaled[i], scale);
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                decimals[i] = get(i);
+            }
+        }
+        return decimals;
+    }
+
+
+    private ByteBuffer source(int index) {
+        if (values != null) {
+            return values[index];
+        }
+        // Through Buffer, so the calls also link on Java 8:
+        final ByteBuffer value = buffer.duplicate();
+        ((Buffer) value).limit(base + offsets[index + 1]);
+        ((Buffer) value).position(base + offsets[index]);
+        return value;
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.github.petersilverwood.avrodecimaltools;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes Avro decimal bytes (the big-endian two's-complement unscaled value) without copying them
+ * out of their buffer:
+ *
+ *     -    up to 8 bytes are read straight into a long
+ *     -    9 to 16 bytes are read into a pair of longs, so sign-padded values that still fit a long
+ *          (e.g. fixed(16) encodings) never reach BigInteger
+ *     -    anything wider falls back to BigInteger
+ *
+ * Buffers are only read with absolute gets, so their position is left untouched.
+ *
+ * Encoding writes the same minimal bytes as BigInteger.toByteArray(). Unscaled values that fit a long have their
+ * length worked out from their sign bits and are written straight into an array of that length, or into a caller
+ * supplied buffer with encode(long, byte[], int), without a BigInteger in between.
+ */
+public final class DecimalCodec {
+
+    static final int LONG_BYTES = 8;
+    static final int INT128_BYTES = 16;
+
+    static final int MAX_LONG_DIGITS = 19;
+
+    private DecimalCodec() {
+    }
+
+
+    public static BigDecimal decode(ByteBuffer value, int scale) {
+        final int offset = value.position();
+        final int length = value.remaining();
+
+        if (length <= LONG_BYTES) {
+            return BigDecimal.valueOf(readLong(value, offset, length), scale);
+        }
+
+        if (length <= INT128_BYTES) {
+            final long hi = readLong(value, offset, length - LONG_BYTES);
+            final long lo = readLong(value, offset + length - LONG_BYTES, LONG_BYTES);
+            if (hi == lo >> 63) {
+                return BigDecimal.valueOf(lo, scale);
+            }
+        }
+
+        return new BigDecimal(new BigInteger(copy(value, offset, length)), scale);
+    }
+
+
+    public static BigDecimal decode(byte[] value, int scale) {
+        final int length = value.length;
+
+        if (length <= LONG_BYTES) {
+            return BigDecimal.valueOf(readLong(value, 0, length), scale);
+        }
+
+        if (length <= INT128_BYTES) {
+            final long hi = readLong(value, 0, length - LONG_BYTES);
+            final long lo = readLong(value, length - LONG_BYTES, LONG_BYTES);
+            if (hi == lo >> 63) {
+                return BigDecimal.valueOf(lo, scale);
+            }
+        }
+
+        return new BigDecimal(new BigInteger(value), scale);
+    }
+
+
+    /**
+     * The unscaled value of the decimal as minimal big-endian two's-complement bytes
+     */
+    public static byte[] encode(BigDecimal value) {
+        // Every value of at most 18 digits fits a long, which a compact BigDecimal hands over without a BigInteger:
+        if (value.precision() < MAX_LONG_DIGITS) {
+            return encode(value.scaleByPowerOfTen(value.scale()).longValue());
+        }
+        return value.unscaledValue().toByteArray();
+    }
+
+
+    public static byte[] encode(long unscaled) {
+        final byte[] bytes = new byte[encodedLength(unscaled)];
+        encode(unscaled, bytes, 0);
+        return bytes;
+    }
+
+
+    /**
+     * Writes the minimal bytes of the unscaled value at the offset, which must leave room for encodedLength bytes
+     *
+     * @return the number of bytes written
+     */
+    public static int encode(long unscaled, byte[] bytes, int offset) {
+        final int length = encodedLength(unscaled);
+        for (int i = length - 1, shift = 0; i >= 0; i--, shift += 8) {
+            bytes[offset + i] = (byte) (unscaled >> shift);
+        }
+        return length;
+    }
+
+
+    /**
+     * The number of bytes of the minimal two's-complement encoding of the value: its significant bits plus a sign bit
+     */
+    public static int encodedLength(long unscaled) {
+        final int bits = Long.SIZE - Long.numberOfLeadingZeros(unscaled ^ (unscaled >> 63));
+        return bits / 8 + 1;
+    }
+
+
+    /**
+     * Reads a big-endian two's-complement value of 1 to 8 bytes, sign extended to a long.
+     */
+    public static long readLong(ByteBuffer buffer, int offset, int length) {
+        if (length == LONG_BYTES && buffer.order() == ByteOrder.BIG_ENDIAN) {
+            return buffer.getLong(offset);
+        }
+        if (length == 0) {
+            throw new NumberFormatException("Zero length BigInteger");
+        }
+
+        long result = buffer.get(offset);
+        for (int i = 1; i < length; i++) {
+            result = (result << 8) | (buffer.get(offset + i) & 0xFF);
+        }
+        return result;
+    }
+
+
+    /**
+     * Reads a big-endian two's-complement value of 1 to 8 bytes, sign extended to a long.
+     */
+    public static long readLong(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            throw new NumberFormatException("Zero length BigInteger");
+        }
+
+        long result = bytes[offset];
+        for (int i = 1; i < length; i++) {
+            result = (result << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return result;
+    }
+
+
+    private static byte[] copy(ByteBuffer buffer, int offset, int length) {
+        final byte[] bytes = new byte[length];
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, bytes, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(offset + i);
+            }
+        }
+        return bytes;
+    }
+
+}
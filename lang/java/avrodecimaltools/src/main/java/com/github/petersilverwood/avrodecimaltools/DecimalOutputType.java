@@ -0,0 +1,128 @@
+package com.github.petersilverwood.avrodecimaltools;
+
+import java.math.BigDecimal;
+
+/**
+ * The representation decoded decimals are handed on in.
+ *
+ * Each type converts straight from the unscaled long when the value fits one, so only values wider than a long
+ * go through a BigDecimal:
+ *
+ *     DECIMAL      BigDecimal
+ *     INT64        Long, the unscaled value
+ *     FLOAT64      Double, exact division by a power of ten for values below 2^53 and scales up to 22
+ *     STRING       plain decimal text, as BigDecimal.toPlainString()
+ */
+public enum DecimalOutputType {
+
+    DECIMAL {
+        @Override
+        public Object fromUnscaled(long unscaled, int scale) {
+            return BigDecimal.valueOf(unscaled, scale);
+        }
+
+        @Override
+        public Object fromBigDecimal(BigDecimal value) {
+            return value;
+        }
+    },
+
+    INT64 {
+        @Override
+        public Object fromUnscaled(long unscaled, int scale) {
+            return unscaled;
+        }
+
+        /**
+         * @throws ArithmeticException if the unscaled value does not fit a long
+         */
+        @Override
+        public Object fromBigDecimal(BigDecimal value) {
+            return value.unscaledValue().longValueExact();
+        }
+    },
+
+    FLOAT64 {
+        @Override
+        public Object fromUnscaled(long unscaled, int scale) {
+            // Both operands are exact doubles, so the single IEEE operation is correctly rounded:
+            if (Math.abs(unscaled) <= MAX_EXACT_DOUBLE_INT && unscaled != Long.MIN_VALUE) {
+                if (scale >= 0 && scale < DOUBLE_POW10.length) {
+                    return unscaled / DOUBLE_POW10[scale];
+                }
+                if (scale < 0 && -scale < DOUBLE_POW10.length) {
+                    return unscaled * DOUBLE_POW10[-scale];
+                }
+            }
+            return BigDecimal.valueOf(unscaled, scale).doubleValue();
+        }
+
+        @Override
+        public Object fromBigDecimal(BigDecimal value) {
+            return value.doubleValue();
+        }
+    },
+
+    STRING {
+        @Override
+        public Object fromUnscaled(long unscaled, int scale) {
+            return toPlainString(unscaled, scale);
+        }
+
+        @Override
+        public Object fromBigDecimal(BigDecimal value) {
+            return value.toPlainString();
+        }
+    };
+
+
+    private static final long MAX_EXACT_DOUBLE_INT = 1L << 53;
+
+    /*
+    * Every power of ten that is an exact double
+     */
+    private static final double[] DOUBLE_POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+
+    public abstract Object fromUnscaled(long unscaled, int scale);
+
+    public abstract Object fromBigDecimal(BigDecimal value);
+
+
+    /**
+     * Formats an unscaled value as BigDecimal.valueOf(unscaled, scale).toPlainString() would
+     */
+    static String toPlainString(long unscaled, int scale) {
+        final String digits = Long.toString(unscaled);
+        if (scale == 0) {
+            return digits;
+        }
+
+        final int sign = unscaled < 0 ? 1 : 0;
+        final int digitCount = digits.length() - sign;
+        final StringBuilder text = new StringBuilder(digits.length() + Math.abs(scale) + 2);
+
+        if (scale < 0) {
+            text.append(digits);
+            if (unscaled != 0) {
+                for (int i = 0; i < -scale; i++) {
+                    text.append('0');
+                }
+            }
+        } else if (digitCount > scale) {
+            final int point = digits.length() - scale;
+            text.append(digits, 0, point).append('.').append(digits, point, digits.length());
+        } else {
+            text.append(digits, 0, sign).append("0.");
+            for (int i = digitCount; i < scale; i++) {
+                text.append('0');
+            }
+            text.append(digits, sign, digits.length());
+        }
+        return text.toString();
+    }
+
+}
@@ -0,0 +1,304 @@
+package com.github.petersilverwood.avrodecimaltools;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+/**
+ * A target scale, precision and representation for decoded decimals.
+ *
+ * Values whose unscaled value fits a long are rescaled and checked in long arithmetic, against a table of powers
+ * of ten, and only become a BigDecimal once they are final. Wider values, and rescales that would overflow a long,
+ * fall back to BigDecimal.setScale and BigDecimal.precision().
+ *
+ * convert() hands the result on as its DecimalOutputType, again straight from the long where there is one.
+ *
+ * Rescaling throws ArithmeticException when rounding is needed under RoundingMode.UNNECESSARY, and so does a value
+ * with more digits than the target precision.
+ *
+ * Values wider than a long are first judged on their byte length, so that correct data pays next to nothing for
+ * the precision check: values short enough to always have few enough digits are not checked, and minimal
+ * encodings long enough to always have too many are rejected before they are decoded. Sign padded values (e.g.
+ * fixed(16) encodings) are never rejected on their length alone.
+ */
+public final class DecimalTarget {
+
+    public static final DecimalTarget NONE = new DecimalTarget(null, null, RoundingMode.UNNECESSARY);
+
+    /*
+    * POW10[i] == 10^i, for every power of ten that fits a long
+     */
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final Integer scale;
+    private final Integer precision;
+    private final RoundingMode roundingMode;
+    private final DecimalOutputType outputType;
+
+    // Values of at most uncheckedLength bytes have at most precision digits, values of at least rejectedLength more:
+    private final int uncheckedLength;
+    private final int rejectedLength;
+
+
+    public DecimalTarget(Integer scale, Integer precision, RoundingMode roundingMode) {
+        this(scale, precision, roundingMode, DecimalOutputType.DECIMAL);
+    }
+
+    /**
+     * @param scale         the scale to rescale to, or null to keep the scale of the value
+     * @param precision     the maximum number of digits, or null for no limit
+     * @param outputType    the representation convert() hands values on in
+     */
+    public DecimalTarget(Integer scale, Integer precision, RoundingMode roundingMode, DecimalOutputType outputType) {
+        if (precision != null && precision < 1) {
+            throw new IllegalArgumentException("precision must be at least 1");
+        }
+        this.scale = scale;
+        this.precision = precision;
+        this.roundingMode = roundingMode;
+        this.outputType = outputType;
+        this.uncheckedLength = precision == null ? Integer.MAX_VALUE : uncheckedLength(precision);
+        this.rejectedLength = precision == null ? Integer.MAX_VALUE : rejectedLength(precision);
+    }
+
+
+    /**
+     * The longest two's-complement value certain to have at most the given number of digits: n bytes hold values
+     * down to -2^(8n-1)
+     */
+    public static int uncheckedLength(int precision) {
+        final BigInteger limit = BigInteger.TEN.pow(precision);
+        int length = 0;
+        while (BigInteger.ONE.shiftLeft(8 * (length + 1) - 1).compareTo(limit) < 0) {
+            length++;
+        }
+        return length;
+    }
+
+
+    /**
+     * The shortest minimal two's-complement value certain to have more than the given number of digits: a minimal
+     * value of n bytes does not fit n - 1, so it is at least 2^(8n-9) in magnitude
+     */
+    public static int rejectedLength(int precision) {
+        final BigInteger limit = BigInteger.TEN.pow(precision);
+        int length = 2;
+        while (BigInteger.ONE.shiftLeft(8 * length - 9).compareTo(limit) < 0) {
+            length++;
+        }
+        return length;
+    }
+
+
+    /**
+     * The scale values of the given scale end up with
+     */
+    public int scale(int sourceScale) {
+        return scale == null ? sourceScale : scale;
+    }
+
+    public Integer precision() {
+        return precision;
+    }
+
+    public RoundingMode roundingMode() {
+        return roundingMode;
+    }
+
+    public DecimalOutputType outputType() {
+        return outputType;
+    }
+
+    /**
+     * True when values are neither rescaled nor checked, whatever the output type
+     */
+    public boolean isNone() {
+        return scale == null && precision == null;
+    }
+
+
+    public BigDecimal decode(ByteBuffer value, int sourceScale) {
+        return isNone() ? DecimalCodec.decode(value, sourceScale) : (BigDecimal) decode(value, sourceScale, DecimalOutputType.DECIMAL);
+    }
+
+    public BigDecimal decode(byte[] value, int sourceScale) {
+        return isNone() ? DecimalCodec.decode(value, sourceScale) : (BigDecimal) decode(value, sourceScale, DecimalOutputType.DECIMAL);
+    }
+
+
+    /**
+     * Decodes into the output type of this target
+     */
+    public Object convert(ByteBuffer value, int sourceScale) {
+        return outputType == DecimalOutputType.DECIMAL ? decode(value, sourceScale) : decode(value, sourceScale, outputType);
+    }
+
+    public Object convert(byte[] value, int sourceScale) {
+        return outputType == DecimalOutputType.DECIMAL ? decode(value, sourceScale) : decode(value, sourceScale, outputType);
+    }
+
+
+    private Object decode(ByteBuffer value, int sourceScale, DecimalOutputType type) {
+        final int offset = value.position();
+        final int length = value.remaining();
+        if (length >= rejectedLength && scale(sourceScale) >= sourceScale && !isSignPadded(value.get(offset), value.get(offset + 1))) {
+            throw tooLong(length);
+        }
+        if (length <= DecimalCodec.LONG_BYTES) {
+            return apply(DecimalCodec.readLong(value, offset, length), sourceScale, type);
+        }
+        if (length <= DecimalCodec.INT128_BYTES) {
+            final long hi = DecimalCodec.readLong(value, offset, length - DecimalCodec.LONG_BYTES);
+            final long lo = DecimalCodec.readLong(value, offset + length - DecimalCodec.LONG_BYTES, DecimalCodec.LONG_BYTES);
+            if (hi == lo >> 63) {
+                return apply(lo, sourceScale, type);
+            }
+        }
+        return type.fromBigDecimal(apply(DecimalCodec.decode(value, sourceScale), needsCheck(length, sourceScale)));
+    }
+
+
+    private Object decode(byte[] value, int sourceScale, DecimalOutputType type) {
+        final int length = value.length;
+        if (length >= rejectedLength && scale(sourceScale) >= sourceScale && !isSignPadded(value[0], value[1])) {
+            throw tooLong(length);
+        }
+        if (length <= DecimalCodec.LONG_BYTES) {
+            return apply(DecimalCodec.readLong(value, 0, length), sourceScale, type);
+        }
+        if (length <= DecimalCodec.INT128_BYTES) {
+            final long hi = DecimalCodec.readLong(value, 0, length - DecimalCodec.LONG_BYTES);
+            final long lo = DecimalCodec.readLong(value, length - DecimalCodec.LONG_BYTES, DecimalCodec.LONG_BYTES);
+            if (hi == lo >> 63) {
+                return apply(lo, sourceScale, type);
+            }
+        }
+        return type.fromBigDecimal(apply(DecimalCodec.decode(value, sourceScale), needsCheck(length, sourceScale)));
+    }
+
+
+    /*
+    * Rounding to fewer decimals never adds digits beyond the ones dropped, growing the scale adds one per place
+     */
+    private boolean needsCheck(int length, int sourceScale) {
+        return length > uncheckedLength || scale(sourceScale) > sourceScale;
+    }
+
+    private static boolean isSignPadded(byte first, byte second) {
+        return (first == 0 && second >= 0) || (first == -1 && second < 0);
+    }
+
+    private ArithmeticException tooLong(int length) {
+        return new ArithmeticException("Value of " + length + " bytes exceeds precision " + precision);
+    }
+
+
+    /**
+     * Rescales and checks an unscaled value of the given scale
+     */
+    public BigDecimal apply(long unscaled, int sourceScale) {
+        return (BigDecimal) apply(unscaled, sourceScale, DecimalOutputType.DECIMAL);
+    }
+
+
+    private Object apply(long unscaled, int sourceScale, DecimalOutputType type) {
+        final int targetScale = scale(sourceScale);
+        final int shift = targetScale - sourceScale;
+
+        final long rescaled;
+        if (shift == 0) {
+            rescaled = unscaled;
+        } else if (shift > 0) {
+            if (shift >= POW10.length || Math.abs(unscaled) > Long.MAX_VALUE / POW10[shift] || unscaled == Long.MIN_VALUE) {
+                return type.fromBigDecimal(apply(BigDecimal.valueOf(unscaled, sourceScale)));
+            }
+            rescaled = unscaled * POW10[shift];
+        } else {
+            if (-shift >= POW10.length) {
+                return type.fromBigDecimal(apply(BigDecimal.valueOf(unscaled, sourceScale)));
+            }
+            rescaled = divide(unscaled, POW10[-shift], roundingMode);
+        }
+
+        checkPrecision(rescaled);
+        return type.fromUnscaled(rescaled, targetScale);
+    }
+
+
+    /**
+     * Rescales and checks a value too wide for the long arithmetic
+     */
+    public BigDecimal apply(BigDecimal value) {
+        return apply(value, true);
+    }
+
+    private BigDecimal apply(BigDecimal value, boolean checkPrecision) {
+        final BigDecimal rescaled = scale == null ? value : value.setScale(scale, roundingMode);
+        if (checkPrecision && precision != null && rescaled.precision() > precision) {
+            throw new ArithmeticException("Value " + rescaled.toPlainString() + " exceeds precision " + precision);
+        }
+        return rescaled;
+    }
+
+
+    private void checkPrecision(long unscaled) {
+        // Every long has at most 19 digits, and Math.abs(Long.MIN_VALUE) is only reached when precision < 19:
+        if (precision != null && precision < POW10.length
+                && (unscaled == Long.MIN_VALUE || Math.abs(unscaled) >= POW10[precision])) {
+            throw new ArithmeticException("Value " + BigDecimal.valueOf(unscaled, 0) + " (unscaled) exceeds precision " + precision);
+        }
+    }
+
+
+    /**
+     * Divides by a positive power of ten, rounding as BigDecimal.setScale would
+     */
+    static long divide(long dividend, long divisor, RoundingMode roundingMode) {
+        final long quotient = dividend / divisor;
+        final long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+
+        // The quotient is at most Long.MAX_VALUE / 10 in magnitude, so stepping away from zero cannot overflow:
+        final long away = quotient + (dividend < 0 ? -1 : 1);
+        final long absRemainder = Math.abs(remainder);
+
+        switch (roundingMode) {
+            case UNNECESSARY:
+                throw new ArithmeticException("Rounding necessary");
+            case DOWN:
+                return quotient;
+            case UP:
+                return away;
+            case CEILING:
+                return dividend > 0 ? away : quotient;
+            case FLOOR:
+                return dividend < 0 ? away : quotient;
+            default: {
+                // Compare the remainder against half the divisor without doubling it:
+                final int half = Long.compare(absRemainder, divisor - absRemainder);
+                if (half != 0) {
+                    return half > 0 ? away : quotient;
+                }
+                switch (roundingMode) {
+                    case HALF_UP:
+                        return away;
+                    case HALF_DOWN:
+                        return quotient;
+                    default:
+                        return (quotient & 1) == 0 ? quotient : away;
+                }
+            }
+        }
+    }
+
+}
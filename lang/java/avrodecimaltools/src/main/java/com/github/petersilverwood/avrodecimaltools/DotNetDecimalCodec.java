@@ -0,0 +1,223 @@
+package com.github.petersilverwood.avrodecimaltools;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Codec for the values of C#'s System.Decimal: a 96-bit magnitude, a sign and a scale of 0 to 28.
+ *
+ * The magnitude is handled as a long (its low 64 bits) and an int (its high 32 bits) instead of a BigInteger, and
+ * decodeBits / encodeBits convert between Avro decimal bytes and the int[4] layout of decimal.GetBits():
+ *
+ *     bits[0], bits[1], bits[2]    low, middle and high 32 bits of the magnitude
+ *     bits[3]                      scale in bits 16 to 23, sign in bit 31
+ *
+ * encodeBits writes the same minimal two's-complement bytes as DecimalConversion.ConvertDecimalToBytes in the C#
+ * library; lang/testdata/decimal-vectors.csv holds the vectors both sides are tested against.
+ *
+ * Whether a value is in range is decided from its byte length alone wherever possible: 12 bytes or less always
+ * fit, and longer values only need their leading (sign padding) bytes looked at. STRICT rejects values and scales
+ * outside the range of System.Decimal with an ArithmeticException, LENIENT decodes and encodes them as any other
+ * Avro decimal.
+ */
+public final class DotNetDecimalCodec {
+
+    public static final int MAX_SCALE = 28;
+
+    /**
+     * The most bytes a System.Decimal takes as a minimal Avro decimal: 96 bits of magnitude plus a sign bit
+     */
+    public static final int MAX_BYTES = 13;
+
+    public static final DotNetDecimalCodec LENIENT = new DotNetDecimalCodec(false);
+    public static final DotNetDecimalCodec STRICT = new DotNetDecimalCodec(true);
+
+    private static final int SIGN_MASK = 0x80000000;
+    private static final int SCALE_SHIFT = 16;
+
+    private final boolean rejectOutOfRange;
+
+
+    private DotNetDecimalCodec(boolean rejectOutOfRange) {
+        this.rejectOutOfRange = rejectOutOfRange;
+    }
+
+
+    public boolean rejectsOutOfRange() {
+        return rejectOutOfRange;
+    }
+
+
+    public BigDecimal decode(ByteBuffer value, int scale) {
+        if (rejectOutOfRange) {
+            checkScale(scale);
+            checkRange(value, value.position(), value.remaining());
+        }
+        return DecimalCodec.decode(value, scale);
+    }
+
+    public BigDecimal decode(byte[] value, int scale) {
+        if (rejectOutOfRange) {
+            checkScale(scale);
+            checkRange(ByteBuffer.wrap(value), 0, value.length);
+        }
+        return DecimalCodec.decode(value, scale);
+    }
+
+
+    public byte[] encode(BigDecimal value) {
+        if (rejectOutOfRange) {
+            checkScale(value.scale());
+        }
+
+        // Values of at most 18 digits are the low and middle words alone, taken as a long without a BigInteger:
+        if (value.precision() < DecimalCodec.MAX_LONG_DIGITS) {
+            return DecimalCodec.encode(value.scaleByPowerOfTen(value.scale()).longValue());
+        }
+
+        final BigInteger unscaled = value.unscaledValue();
+        if (rejectOutOfRange && unscaled.bitLength() > 96) {
+            throw new ArithmeticException("Value " + value + " is outside the range of System.Decimal");
+        }
+        return unscaled.toByteArray();
+    }
+
+
+    /**
+     * Decodes into the decimal.GetBits() layout. Values outside the range of System.Decimal are always rejected,
+     * there being no bits to hold them.
+     */
+    public int[] decodeBits(ByteBuffer value, int scale) {
+        checkScale(scale);
+
+        final int offset = value.position();
+        final int length = value.remaining();
+        checkRange(value, offset, length);
+
+        // Sign extended 128-bit two's complement value, of which at most 97 bits are significant:
+        long lo;
+        long hi;
+        if (length <= DecimalCodec.LONG_BYTES) {
+            lo = DecimalCodec.readLong(value, offset, length);
+            hi = lo >> 63;
+        } else {
+            final int loOffset = offset + length - DecimalCodec.LONG_BYTES;
+            final int hiLength = Math.min(length - DecimalCodec.LONG_BYTES, DecimalCodec.LONG_BYTES);
+            lo = DecimalCodec.readLong(value, loOffset, DecimalCodec.LONG_BYTES);
+            hi = DecimalCodec.readLong(value, loOffset - hiLength, hiLength);
+        }
+
+        final boolean negative = hi < 0;
+        if (negative) {
+            lo = -lo;
+            hi = ~hi + (lo == 0 ? 1 : 0);
+        }
+
+        return new int[]{
+                (int) lo,
+                (int) (lo >>> 32),
+                (int) hi,
+                (scale << SCALE_SHIFT) | (negative ? SIGN_MASK : 0)
+        };
+    }
+
+    public int[] decodeBits(byte[] value, int scale) {
+        return decodeBits(ByteBuffer.wrap(value), scale);
+    }
+
+
+    /**
+     * Encodes the decimal.GetBits() layout as minimal big-endian two's-complement bytes. The scale is not part of
+     * the bytes, see scale(bits).
+     */
+    public byte[] encodeBits(int[] bits) {
+        if (rejectOutOfRange) {
+            checkScale(scale(bits));
+        }
+
+        long lo = (bits[0] & 0xFFFFFFFFL) | ((long) bits[1] << 32);
+        long hi = bits[2] & 0xFFFFFFFFL;
+
+        if (bits[3] < 0) {
+            lo = -lo;
+            hi = ~hi + (lo == 0 ? 1 : 0);
+        }
+        return toBytes(hi, lo);
+    }
+
+
+    public static int scale(int[] bits) {
+        return (bits[3] >>> SCALE_SHIFT) & 0xFF;
+    }
+
+
+    /**
+     * True if the value fits a System.Decimal, deciding on the byte length where it can
+     */
+    public static boolean isInRange(ByteBuffer value) {
+        return inRange(value, value.position(), value.remaining());
+    }
+
+
+    private static boolean inRange(ByteBuffer value, int offset, int length) {
+        if (length < MAX_BYTES) {
+            return true;
+        }
+
+        // Anything in front of the last 12 bytes must be sign padding:
+        final byte lead = value.get(offset);
+        if (lead != 0 && lead != -1) {
+            return false;
+        }
+        for (int i = 1; i <= length - MAX_BYTES; i++) {
+            if (value.get(offset + i) != lead) {
+                return false;
+            }
+        }
+
+        // -2^96 is the one value of 97 bits without a magnitude of 96 bits or less:
+        if (lead == -1) {
+            final int tail = offset + length - DecimalCodec.LONG_BYTES;
+            return DecimalCodec.readLong(value, tail, DecimalCodec.LONG_BYTES) != 0 || DecimalCodec.readLong(value, tail - 4, 4) != 0;
+        }
+        return true;
+    }
+
+
+    private static void checkRange(ByteBuffer value, int offset, int length) {
+        if (length == 0) {
+            throw new NumberFormatException("Zero length BigInteger");
+        }
+        if (!inRange(value, offset, length)) {
+            throw new ArithmeticException("Value of " + length + " bytes is outside the range of System.Decimal");
+        }
+    }
+
+    private static void checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new ArithmeticException("Scale " + scale + " is outside the range of System.Decimal");
+        }
+    }
+
+
+    /*
+    * Minimal big-endian two's-complement bytes of the 128-bit value hi:lo, as BigInteger.toByteArray() writes them
+     */
+    private static byte[] toBytes(long hi, long lo) {
+        final byte[] bytes = new byte[2 * DecimalCodec.LONG_BYTES];
+        for (int i = 0; i < DecimalCodec.LONG_BYTES; i++) {
+            bytes[i] = (byte) (hi >>> (8 * (7 - i)));
+            bytes[DecimalCodec.LONG_BYTES + i] = (byte) (lo >>> (8 * (7 - i)));
+        }
+
+        int start = 0;
+        while (start < bytes.length - 1
+                && ((bytes[start] == 0 && bytes[start + 1] >= 0) || (bytes[start] == -1 && bytes[start + 1] < 0))) {
+            start++;
+        }
+        return Arrays.copyOfRange(bytes, start, bytes.length);
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.github.petersilverwood.avrodecimaltools;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+import com.github.petersilverwood.kafka.connect.CastFields;
+import com.github.petersilverwood.kafka.connect.DecimalBytesConversion;
+import com.github.petersilverwood.kafka.connect.ErrorPolicy;
+import com.github.petersilverwood.kafka.connect.RecordPart;
+import com.github.petersilverwood.kafka.connect.FieldPaths;
+import com.github.petersilverwood.kafka.connect.PathConversion;
+import com.github.petersilverwood.kafka.connect.SchemaCache;
+import com.github.petersilverwood.kafka.connect.SchemaWarmup;
+import com.github.petersilverwood.kafka.connect.StructPlan;
+import com.github.petersilverwood.kafka.connect.TransformMetrics;
+
+import java.util.Map;
+
+
+/**
+ * Connect transform to encode Decimal logical types into bytes, the reverse of CastDecimal, for sinks feeding
+ * consumers that read the unscaled two's-complement bytes (e.g. DecimalConversion.cs):
+ *
+ *     fields=amount,after.fee
+ *     field=amount, target.scale=4          rescaled first, rounding with rounding.mode
+ *
+ * The bytes fields carry the scale of their values as a 'scale' schema parameter. Values whose unscaled value
+ * fits a long are encoded without going through BigInteger, see DecimalCodec.
+ *
+ * This is the decimal encoding configuration of CastFields.
+ */
+public class EncodeDecimal<R extends ConnectRecord<R>> extends CastFields<R> {
+
+    protected interface ConfigNames {
+        String FIELD = "field";
+        String FIELDS = "fields";
+        String TARGET_SCALE = "target.scale";
+        String TARGET_PRECISION = "target.precision";
+        String ROUNDING_MODE = "rounding.mode";
+    }
+
+    public static final ConfigDef CONFIG_DEF = RecordPart.define(ErrorPolicy.define(SchemaWarmup.define(StructPlan.define(TransformMetrics.define(SchemaCache.define(new ConfigDef()
+            .define(ConfigNames.FIELD,
+                    ConfigDef.Type.STRING,
+                    null,
+                    (name, valueObject) -> {
+                        if(valueObject != null && valueObject.equals("")){
+                            throw new ConfigException("Must specify a field to encode.");
+                        };
+                    },
+                    ConfigDef.Importance.HIGH,
+                    "The field containing the Decimal")
+            .define(ConfigNames.FIELDS, ConfigDef.Type.LIST, "", ConfigDef.Importance.HIGH,
+                    "List of Decimal fields to encode. Fields may be dotted paths into nested structs")
+            .define(ConfigNames.TARGET_SCALE, ConfigDef.Type.INT, null, atLeastOrNull(0), ConfigDef.Importance.MEDIUM,
+                    "Scale to rescale the decimals to before encoding, rounding with '" + ConfigNames.ROUNDING_MODE + "'")
+            .define(ConfigNames.TARGET_PRECISION, ConfigDef.Type.INT, null, atLeastOrNull(1), ConfigDef.Importance.MEDIUM,
+                    "Maximum number of digits of the decimals; larger values fail the record")
+            .define(ConfigNames.ROUNDING_MODE, ConfigDef.Type.STRING, DEFAULT_ROUNDING_MODE, ROUNDING_MODES, ConfigDef.Importance.LOW,
+                    "java.math.RoundingMode used when rescaling, e.g. HALF_UP, HALF_EVEN or UNNECESSARY")))))));
+
+
+    @Override
+    public void configure(Map<String, ?> props) {
+        final SimpleConfig config = new SimpleConfig(CONFIG_DEF, props);
+        final DecimalTarget target = decimalTarget(config, ConfigNames.TARGET_SCALE, ConfigNames.TARGET_PRECISION, ConfigNames.ROUNDING_MODE);
+        final PathConversion encode = DecimalBytesConversion.fromDecimal(target);
+
+        final FieldPaths<PathConversion> fields = new FieldPaths<>();
+        final String field = config.getString(ConfigNames.FIELD);
+        if (field != null) {
+            addField(fields, ConfigNames.FIELD, field, encode);
+        }
+        for (String path : config.getList(ConfigNames.FIELDS)) {
+            addField(fields, ConfigNames.FIELDS, path.trim(), encode);
+        }
+
+        configure(fields, null, null, config);
+    }
+
+    @Override
+    public ConfigDef config() {
+        return CONFIG_DEF;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.transforms.util.SchemaUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies a conversion to every element of an array
+ */
+public final class ArrayConversion implements FieldConversion {
+
+    private final Schema schema;
+    private final FieldConversion elementConversion;
+
+    public ArrayConversion(Schema arraySchema, FieldConversion elementConversion) {
+        final SchemaBuilder builder = SchemaUtil.copySchemaBasics(arraySchema, SchemaBuilder.array(elementConversion.schema()));
+        if (arraySchema.isOptional()) {
+            builder.optional();
+        }
+        this.schema = builder.build();
+        this.elementConversion = elementConversion;
+    }
+
+    @Override
+    public Schema schema() {
+        return schema;
+    }
+
+    @Override
+    public Object convert(Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        final List<?> elements = (List<?>) value;
+        final List<Object> converted = new ArrayList<>(elements.size());
+        for (Object element : elements) {
+            converted.add(elementConversion.convert(element));
+        }
+        return converted;
+    }
+
+}
@@ -0,0 +1,669 @@
+package com.github.petersilverwood.kafka.connect;
+
+import com.github.petersilverwood.avrodecimaltools.DecimalOutputType;
+import com.github.petersilverwood.avrodecimaltools.DecimalTarget;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.header.Headers;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.RoundingMode;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.apache.kafka.connect.transforms.util.Requirements.requireStruct;
+
+/**
+ * Connect transform applying decimal and timestamp conversions to any number of fields in a single copy of the
+ * struct, with a single cached output schema per input schema:
+ *
+ *     decimal.fields=amount:4,after.fee:2       decimals from bytes, as path:scale pairs
+ *     decimal.field.pattern=.*_amt               top-level bytes fields matching, using decimal.scale
+ *     timestamp.fields=created,after.updated     timestamps from epoch millis
+ *     timestamp.fields=ts:micros,day:string:date  as path[:unit[:type]], see TimestampUnit and TimestampOutputType
+ *
+ * With decimal.target.scale and/or decimal.target.precision set, every decimal is rescaled (rounding with
+ * decimal.rounding.mode, HALF_UP by default) and checked against the precision; see DecimalTarget.
+ * decimal.output.type=int64|float64|string writes that type instead of a Decimal.
+ *
+ * Decimals without an explicit scale may take theirs from a parameter of the field schema (decimal.scale.parameter)
+ * or from a record header (decimal.scale.header) before falling back to decimal.scale; see DecimalScale. Plans for
+ * header scales are cached per input schema and scale, in a second cache of schema.cache.size schemas.
+ *
+ * Timestamps given as strings are ISO-8601, or of the DateTimeFormatter pattern in timestamp.format.
+ *
+ * Schemaless (Map) values are converted too: configured keys holding byte[], ByteBuffer or base64 text become
+ * BigDecimals and numbers under timestamp keys become Dates; other text, such as "12.34", is left alone. The map is
+ * shallow copied once and updated in place, and records without anything to convert are passed on as they are.
+ *
+ * With copy.mode=shared, converted structs share the untouched values of the input instead of putting (and
+ * validating) every field again; see StructPlan.
+ *
+ * Plans for known schemas can be built at configure() time instead of on the first record; see SchemaWarmup.
+ *
+ * Values that cannot be converted fail the record by default; on.error can null the field or pass the record
+ * through instead, optionally tagged with a header; see ErrorPolicy.
+ *
+ * target=key or target=both converts record keys too, both in a single pass and through one schema cache; see
+ * RecordPart.
+ *
+ * CastDecimal and NullableTimestampTransform are configurations of this transform.
+ */
+public class CastFields<R extends ConnectRecord<R>> implements Transformation<R> {
+
+    private static final Logger log = LoggerFactory.getLogger(CastFields.class);
+
+    protected interface ConfigNames {
+        String DECIMAL_FIELDS = "decimal.fields";
+        String DECIMAL_SCALE = "decimal.scale";
+        String DECIMAL_FIELD_PATTERN = "decimal.field.pattern";
+        String DECIMAL_TARGET_SCALE = "decimal.target.scale";
+        String DECIMAL_TARGET_PRECISION = "decimal.target.precision";
+        String DECIMAL_ROUNDING_MODE = "decimal.rounding.mode";
+        String DECIMAL_OUTPUT_TYPE = "decimal.output.type";
+        String DECIMAL_SCALE_HEADER = "decimal.scale.header";
+        String DECIMAL_SCALE_PARAMETER = "decimal.scale.parameter";
+        String TIMESTAMP_FIELDS = "timestamp.fields";
+        String TIMESTAMP_FORMAT = "timestamp.format";
+    }
+
+    private static final String PURPOSE = "cast fields";
+
+    /*
+    * Header scales of 0 to 38, the widest precision of most databases, have their plans cached
+     */
+    private static final int SCALED_PLANS = 39;
+
+    protected static final String DEFAULT_ROUNDING_MODE = RoundingMode.HALF_UP.name();
+    protected static final ConfigDef.Validator ROUNDING_MODES = validNames(RoundingMode.values());
+    protected static final String DEFAULT_OUTPUT_TYPE = DecimalOutputType.DECIMAL.name().toLowerCase(Locale.ROOT);
+    protected static final ConfigDef.Validator OUTPUT_TYPES = validNames(DecimalOutputType.values());
+    protected static final String DEFAULT_TIMESTAMP_UNIT = TimestampUnit.MILLIS.name().toLowerCase(Locale.ROOT);
+    protected static final ConfigDef.Validator TIMESTAMP_UNITS = validNames(TimestampUnit.values());
+    protected static final String DEFAULT_TIMESTAMP_TYPE = TimestampOutputType.TIMESTAMP.name().toLowerCase(Locale.ROOT);
+    protected static final ConfigDef.Validator TIMESTAMP_TYPES = validNames(TimestampOutputType.values());
+
+    public static final ConfigDef CONFIG_DEF = RecordPart.define(ErrorPolicy.define(SchemaWarmup.define(StructPlan.define(TransformMetrics.define(SchemaCache.define(new ConfigDef()
+            .define(ConfigNames.DECIMAL_FIELDS, ConfigDef.Type.LIST, "", ConfigDef.Importance.HIGH,
+                    "Fields to cast from bytes to decimals, as path:scale pairs. Paths without a scale use '" + ConfigNames.DECIMAL_SCALE + "'")
+            .define(ConfigNames.DECIMAL_SCALE, ConfigDef.Type.INT, null, ConfigDef.Importance.MEDIUM,
+                    "The default scale for decimal fields")
+            .define(ConfigNames.DECIMAL_SCALE_HEADER, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+                    "Record header holding the scale of decimal fields without an explicit scale, overriding '" + ConfigNames.DECIMAL_SCALE + "'")
+            .define(ConfigNames.DECIMAL_SCALE_PARAMETER, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+                    "Schema parameter holding the scale of a decimal field without an explicit scale, overriding the header and '" + ConfigNames.DECIMAL_SCALE + "'")
+            .define(ConfigNames.DECIMAL_FIELD_PATTERN, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+                    "Regular expression; every top-level bytes field whose name matches is cast using '" + ConfigNames.DECIMAL_SCALE + "'")
+            .define(ConfigNames.DECIMAL_TARGET_SCALE, ConfigDef.Type.INT, null, atLeastOrNull(0), ConfigDef.Importance.MEDIUM,
+                    "Scale to rescale every decimal to, rounding with '" + ConfigNames.DECIMAL_ROUNDING_MODE + "'")
+            .define(ConfigNames.DECIMAL_TARGET_PRECISION, ConfigDef.Type.INT, null, atLeastOrNull(1), ConfigDef.Importance.MEDIUM,
+                    "Maximum number of digits of the decimals; larger values fail the record")
+            .define(ConfigNames.DECIMAL_ROUNDING_MODE, ConfigDef.Type.STRING, DEFAULT_ROUNDING_MODE, ROUNDING_MODES, ConfigDef.Importance.LOW,
+                    "java.math.RoundingMode used when rescaling, e.g. HALF_UP, HALF_EVEN or UNNECESSARY")
+            .define(ConfigNames.DECIMAL_OUTPUT_TYPE, ConfigDef.Type.STRING, DEFAULT_OUTPUT_TYPE, OUTPUT_TYPES, ConfigDef.Importance.MEDIUM,
+                    "Type to write decimals as: decimal, int64 (the unscaled value), float64 or string")
+            .define(ConfigNames.TIMESTAMP_FIELDS, ConfigDef.Type.LIST, "", ConfigDef.Importance.HIGH,
+                    "Fields to cast to timestamps, as path[:unit[:type]]. Units are millis (the default), seconds, micros, nanos "
+                            + "or string, types are timestamp (the default), date or time")
+            .define(ConfigNames.TIMESTAMP_FORMAT, ConfigDef.Type.STRING, null, ConfigDef.Importance.LOW,
+                    "java.time.format.DateTimeFormatter pattern of string timestamps; ISO-8601 when not set")))))));
+
+
+    private FieldPaths<PathConversion> fieldConversions;
+    private Pattern decimalPattern;
+    private PathConversion decimalPatternConversion;
+
+    private SchemaCache<StructPlan> schemaUpdateCache;
+    private DecimalScale headerScale;
+    private SchemaCache<AtomicReferenceArray<StructPlan>> scaledPlanCache;
+    private StructPlan.CopyMode copyMode;
+    private ErrorPolicy errorPolicy;
+    private String errorHeader;
+    private RecordPart recordPart;
+    private final TransformMetrics metrics = new TransformMetrics();
+
+
+    @Override
+    public void configure(Map<String, ?> props) {
+        final SimpleConfig config = new SimpleConfig(CONFIG_DEF, props);
+        final DecimalScale scale = new DecimalScale(config.getInt(ConfigNames.DECIMAL_SCALE),
+                config.getString(ConfigNames.DECIMAL_SCALE_HEADER), config.getString(ConfigNames.DECIMAL_SCALE_PARAMETER));
+        final DecimalTarget target = decimalTarget(config, ConfigNames.DECIMAL_TARGET_SCALE, ConfigNames.DECIMAL_TARGET_PRECISION,
+                ConfigNames.DECIMAL_ROUNDING_MODE, ConfigNames.DECIMAL_OUTPUT_TYPE);
+
+        final FieldPaths<PathConversion> conversions = new FieldPaths<>();
+        addDecimalFields(conversions, ConfigNames.DECIMAL_FIELDS, config.getList(ConfigNames.DECIMAL_FIELDS), scale, target, ConfigNames.DECIMAL_SCALE);
+        addTimestampFields(conversions, ConfigNames.TIMESTAMP_FIELDS, config.getList(ConfigNames.TIMESTAMP_FIELDS),
+                TimestampUnit.MILLIS, TimestampOutputType.TIMESTAMP,
+                compileFormat(ConfigNames.TIMESTAMP_FORMAT, config.getString(ConfigNames.TIMESTAMP_FORMAT)));
+
+        final Pattern pattern = compilePattern(ConfigNames.DECIMAL_FIELD_PATTERN, config.getString(ConfigNames.DECIMAL_FIELD_PATTERN));
+        final PathConversion patternConversion = pattern == null ? null
+                : defaultScaleConversion(scale, target, ConfigNames.DECIMAL_SCALE, ConfigNames.DECIMAL_FIELD_PATTERN);
+
+        configure(conversions, pattern, patternConversion, scale, config);
+    }
+
+
+    protected final void configure(FieldPaths<PathConversion> fieldConversions, Pattern decimalPattern,
+                                   PathConversion patternConversion, SimpleConfig config) {
+        configure(fieldConversions, decimalPattern, patternConversion, DecimalScale.fixed(null), config);
+    }
+
+    /**
+     * Sets up the transform once the configuration has been parsed
+     *
+     * @param decimalPattern  optional pattern of top-level bytes fields to cast with patternConversion
+     * @param decimalScale    where the scale of decimals comes from, the header of which is read per record
+     * @param config          the parsed configuration, holding the schema cache and metrics settings
+     */
+    protected final void configure(FieldPaths<PathConversion> fieldConversions, Pattern decimalPattern,
+                                   PathConversion patternConversion, DecimalScale decimalScale, SimpleConfig config) {
+        if (fieldConversions.isEmpty() && decimalPattern == null) {
+            throw new ConfigException("Must specify a field to cast.");
+        }
+
+        this.fieldConversions = fieldConversions;
+        this.decimalPattern = decimalPattern;
+        this.decimalPatternConversion = patternConversion;
+        this.schemaUpdateCache = SchemaCache.fromConfig(config);
+        this.headerScale = decimalScale.header() == null ? null : decimalScale;
+        this.scaledPlanCache = headerScale == null ? null : SchemaCache.fromConfig(config);
+        this.copyMode = StructPlan.copyMode(config);
+        this.errorPolicy = ErrorPolicy.fromConfig(config);
+        this.errorHeader = config.getString(ErrorPolicy.HEADER_CONFIG);
+        this.recordPart = RecordPart.fromConfig(config);
+        this.metrics.configure(config, getClass(), schemaUpdateCache);
+
+        prewarm(SchemaWarmup.schemas(config));
+    }
+
+
+    /*
+    * Builds and caches the plans of the given schemas, so their first records find them ready. A schema the plan
+    * fails for is skipped: its records meet the same error, and are handled as on.error says.
+     */
+    private void prewarm(Collection<Schema> schemas) {
+        int prepared = 0;
+        for (Schema schema : schemas) {
+            if (schema.type() != Schema.Type.STRUCT) {
+                continue;
+            }
+            final StructPlan plan;
+            try {
+                plan = buildPlan(schema);
+            } catch (DataException e) {
+                log.warn("Not preparing schema {}: {}", schema.name(), e.getMessage());
+                continue;
+            }
+            schemaUpdateCache.put(schema, plan);
+            prewarmScaled(schema, plan);
+            prepared++;
+        }
+        if (prepared == 0) {
+            return;
+        }
+        if (prepared > schemaUpdateCache.capacity()) {
+            log.warn("Prepared {} schemas, more than the {} the schema cache holds; raise '{}' to keep them all",
+                    prepared, schemaUpdateCache.capacity(), SchemaCache.CAPACITY_CONFIG);
+        } else {
+            log.info("Prepared {} schemas", prepared);
+        }
+    }
+
+    /*
+    * Records whose header holds the default scale look their plan up in the scaled cache; it is the plan built
+    * for the default scale
+     */
+    private void prewarmScaled(Schema schema, StructPlan plan) {
+        final Integer scale = headerScale == null ? null : headerScale.defaultScale();
+        if (scale == null || scale < 0 || scale >= SCALED_PLANS) {
+            return;
+        }
+        final AtomicReferenceArray<StructPlan> plans = new AtomicReferenceArray<>(SCALED_PLANS);
+        plans.set(scale, plan);
+        scaledPlanCache.put(schema, plans);
+    }
+
+
+    /**
+     * The metrics of this instance, for the conversions to record into
+     */
+    protected TransformMetrics metrics() {
+        return metrics;
+    }
+
+
+    @Override
+    public ConfigDef config() {
+        return CONFIG_DEF;
+    }
+
+    @Override
+    public void close() {
+        metrics.close();
+    }
+
+
+    @Override
+    public R apply(R record) {
+        try {
+            if (!metrics.sampleLatency()) {
+                return applyCounted(record);
+            }
+
+            final long start = System.nanoTime();
+            try {
+                return applyCounted(record);
+            } finally {
+                metrics.recordLatency(System.nanoTime() - start);
+            }
+        } catch (DataException e) {
+            if (errorPolicy != ErrorPolicy.TAG) {
+                throw e;
+            }
+            final Headers headers = record.headers().duplicate().addString(errorHeader, String.valueOf(e.getMessage()));
+            return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(),
+                    record.valueSchema(), record.value(), record.timestamp(), headers);
+        }
+    }
+
+
+    /*
+    * Converts the key and/or the value through the same plan cache, into at most one new record
+     */
+    private R applyCounted(R record) {
+        final SchemaAndValue updatedKey;
+        final SchemaAndValue updatedValue;
+        try {
+            updatedKey = recordPart.includesKey() ? applyConversions(record.keySchema(), record.key(), record.headers()) : null;
+            updatedValue = recordPart.includesValue() ? applyConversions(record.valueSchema(), record.value(), record.headers()) : null;
+        } catch (DataException e) {
+            passThrough(e);
+            return record;
+        } catch (RuntimeException e) {
+            metrics.recordError();
+            throw e;
+        }
+        metrics.recordApplied(updatedKey != null || updatedValue != null);
+        if (updatedKey == null && updatedValue == null) {
+            return record;
+        }
+
+        // Return a new record:
+        return record.newRecord(record.topic(), record.kafkaPartition(),
+                updatedKey == null ? record.keySchema() : updatedKey.schema(), updatedKey == null ? record.key() : updatedKey.value(),
+                updatedValue == null ? record.valueSchema() : updatedValue.schema(), updatedValue == null ? record.value() : updatedValue.value(),
+                record.timestamp());
+    }
+
+
+    /*
+    * Counts the failure, and rethrows it unless the policy hands the record on unconverted
+     */
+    void passThrough(DataException e) {
+        metrics.recordError();
+        if (errorPolicy == ErrorPolicy.FAIL || errorPolicy == ErrorPolicy.TAG) {
+            throw e;
+        }
+        log.debug("Passing the record through unconverted: {}", e.getMessage());
+    }
+
+
+    /*
+    * The plan of a schema and the conversion of schemaless values as records without headers get them, for
+    * CastingJsonConverter
+     */
+    StructPlan plan(Schema valueSchema) {
+        return getOrBuildPlan(valueSchema);
+    }
+
+    SchemaAndValue convertSchemaless(Map<?, ?> value) {
+        return applySchemaless(value, null);
+    }
+
+    ErrorPolicy errorPolicy() {
+        return errorPolicy;
+    }
+
+
+    private SchemaAndValue applyConversions(Schema valueSchema, Object value, Headers headers) {
+
+        final Integer recordScale = headerScale == null ? null : headerScale.fromHeaders(headers);
+
+        // Schemaless values are converted key by key, without any schema work:
+        if (null == valueSchema && value instanceof Map) {
+            return applySchemaless((Map<?, ?>) value, recordScale);
+        }
+
+        // Only struct keys and values have fields to cast:
+        if (null == valueSchema || Schema.Type.STRUCT != valueSchema.type()) {
+            log.trace("Schema is null or not a struct.");
+            return null;
+        }
+
+        // Get the updated schema and its copy plan
+        StructPlan plan = recordScale == null ? getOrBuildPlan(valueSchema) : getOrBuildPlan(valueSchema, recordScale);
+
+        // Nothing to cast in this schema, worked out once and cached with the plan:
+        if (plan.isIdentity()) {
+            return null;
+        }
+
+        // The record value must contain a Struct type, which we can clone to a new Struct with the updated schema.
+        Struct struct = requireStruct(value, PURPOSE);
+
+        return new SchemaAndValue(plan.schema(), plan.apply(struct));
+
+    }
+
+
+    private SchemaAndValue applySchemaless(Map<?, ?> value, Integer recordScale) {
+
+        Map<?, ?> updatedValue = fieldConversions.convertSchemaless(value,
+                (conversion, fieldValue) -> convertSchemaless(conversion, fieldValue, recordScale));
+        if (decimalPattern != null) {
+            updatedValue = convertMatchingKeys(value, updatedValue, recordScale);
+        }
+
+        return updatedValue == value ? null : new SchemaAndValue(null, updatedValue);
+    }
+
+
+    /*
+    * Applies the pattern to top-level keys not covered by a configured path
+     */
+    @SuppressWarnings("unchecked")
+    private Map<?, ?> convertMatchingKeys(Map<?, ?> value, Map<?, ?> updatedValue, Integer recordScale) {
+        Map<Object, Object> updated = updatedValue == value ? null : (Map<Object, Object>) updatedValue;
+        for (Map.Entry<?, ?> entry : value.entrySet()) {
+            if (!(entry.getKey() instanceof String) || fieldConversions.contains((String) entry.getKey())
+                    || !decimalPattern.matcher((String) entry.getKey()).matches()) {
+                continue;
+            }
+
+            final Object origValue = entry.getValue();
+            final Object newValue = origValue instanceof String ? origValue : convertSchemaless(decimalPatternConversion, origValue, recordScale);
+            if (newValue != origValue) {
+                if (updated == null) {
+                    updated = new HashMap<>(value);
+                }
+                updated.put(entry.getKey(), newValue);
+            }
+        }
+        return updated == null ? value : updated;
+    }
+
+
+    private StructPlan getOrBuildPlan(Schema valueSchema) {
+
+        // Lookup from cache:
+        StructPlan plan = schemaUpdateCache.get(valueSchema);
+        if (plan != null)
+            return plan;
+
+        plan = planOrFailure(valueSchema, null);
+
+        schemaUpdateCache.put(valueSchema, plan);
+        return plan;
+
+
+    }
+
+
+    /*
+    * Plans of records with a header scale, kept per input schema in an array indexed by scale. Scales outside the
+    * array are rare enough to build a plan for every record.
+     */
+    private StructPlan getOrBuildPlan(Schema valueSchema, int scale) {
+        if (scale < 0 || scale >= SCALED_PLANS) {
+            return buildPlan(valueSchema, scale);
+        }
+
+        AtomicReferenceArray<StructPlan> plans = scaledPlanCache.get(valueSchema);
+        if (plans == null) {
+            plans = new AtomicReferenceArray<>(SCALED_PLANS);
+            scaledPlanCache.put(valueSchema, plans);
+        }
+
+        StructPlan plan = plans.get(scale);
+        if (plan == null) {
+            // Plans are immutable, two threads racing here build the same one:
+            plan = planOrFailure(valueSchema, scale);
+            plans.lazySet(scale, plan);
+        }
+        return plan;
+    }
+
+
+    private StructPlan buildPlan(Schema valueSchema) {
+        return buildPlan(valueSchema, null);
+    }
+
+    /*
+    * A schema the plan fails for is cached with a failed plan, so its later records fail (and are handled as
+    * on.error says) without building the plan again
+     */
+    private StructPlan planOrFailure(Schema valueSchema, Integer recordScale) {
+        try {
+            return buildPlan(valueSchema, recordScale);
+        } catch (DataException e) {
+            return StructPlan.failed(valueSchema, e);
+        }
+    }
+
+    private StructPlan buildPlan(Schema valueSchema, Integer recordScale) {
+        return fieldConversions.compile(valueSchema,
+                (path, schema, conversion) -> conversionFor(conversion, path, schema, recordScale),
+                field -> matchesPattern(field) ? conversionFor(decimalPatternConversion, field.name(), field.schema(), recordScale) : null,
+                copyMode);
+    }
+
+
+    /*
+    * Under ErrorPolicy.NULL, conversions are wrapped to null what they fail on, and fields whose conversion cannot
+    * be resolved against their schema are nulled altogether
+     */
+    private FieldConversion conversionFor(PathConversion conversion, String path, Schema schema, Integer recordScale) {
+        final FieldConversion resolved;
+        try {
+            resolved = recordScale != null && conversion instanceof ScaledPathConversion
+                    ? ((ScaledPathConversion) conversion).conversionFor(path, schema, recordScale)
+                    : conversion.conversionFor(path, schema);
+        } catch (DataException e) {
+            if (errorPolicy != ErrorPolicy.NULL) {
+                throw e;
+            }
+            log.warn("Field '{}' will be set to null: {}", path, e.getMessage());
+            return new NullOnError(path, null, schema, metrics);
+        }
+        return resolved == null || errorPolicy != ErrorPolicy.NULL ? resolved : new NullOnError(path, resolved, schema, metrics);
+    }
+
+    private Object convertSchemaless(PathConversion conversion, Object value, Integer recordScale) {
+        try {
+            return recordScale != null && conversion instanceof ScaledPathConversion
+                    ? ((ScaledPathConversion) conversion).convertSchemaless(value, recordScale)
+                    : conversion.convertSchemaless(value);
+        } catch (DataException e) {
+            if (errorPolicy != ErrorPolicy.NULL) {
+                throw e;
+            }
+            metrics.recordFieldNulled();
+            log.debug("Setting a schemaless value to null: {}", e.getMessage());
+            return null;
+        }
+    }
+
+
+    /*
+    * Explicitly configured paths take precedence over the pattern, which only picks up top-level plain bytes fields
+     */
+    private boolean matchesPattern(Field field) {
+        return decimalPattern != null
+                && field.schema().type() == Schema.Type.BYTES
+                && field.schema().name() == null
+                && decimalPattern.matcher(field.name()).matches();
+    }
+
+
+    /**
+     * Adds decimal casts given as path:scale pairs, or as bare paths taking their scale from the DecimalScale
+     */
+    protected void addDecimalFields(FieldPaths<PathConversion> conversions, String configName, List<String> specs,
+                                    DecimalScale defaultScale, DecimalTarget target, String scaleConfigName) {
+        for (String spec : specs) {
+            final int separator = spec.lastIndexOf(':');
+            if (separator < 0) {
+                addField(conversions, configName, spec, defaultScaleConversion(defaultScale, target, scaleConfigName, configName));
+            } else {
+                final int fieldScale;
+                try {
+                    fieldScale = Integer.parseInt(spec.substring(separator + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new ConfigException(configName, spec, "Expected field:scale");
+                }
+                addField(conversions, configName, spec.substring(0, separator).trim(), DecimalConversion.toScale(fieldScale, target, metrics));
+            }
+        }
+    }
+
+    /**
+     * Adds timestamp casts given as path[:unit[:type]], the unit and type defaulting to the given ones
+     *
+     * @param format    the format of string timestamps, null for ISO-8601
+     */
+    protected static void addTimestampFields(FieldPaths<PathConversion> conversions, String configName, List<String> specs,
+                                             TimestampUnit defaultUnit, TimestampOutputType defaultType, DateTimeFormatter format) {
+        for (String spec : specs) {
+            final String[] parts = spec.split(":", -1);
+            if (parts.length > 3) {
+                throw new ConfigException(configName, spec, "Expected field[:unit[:type]]");
+            }
+
+            final TimestampUnit unit;
+            final TimestampOutputType type;
+            try {
+                unit = parts.length > 1 ? TimestampUnit.valueOf(parts[1].trim().toUpperCase(Locale.ROOT)) : defaultUnit;
+                type = parts.length > 2 ? TimestampOutputType.valueOf(parts[2].trim().toUpperCase(Locale.ROOT)) : defaultType;
+            } catch (IllegalArgumentException e) {
+                throw new ConfigException(configName, spec, "Expected field[:unit[:type]]");
+            }
+            addField(conversions, configName, parts[0].trim(), TimestampConversion.from(unit, type, format));
+        }
+    }
+
+    /**
+     * The cast of decimals without an explicit scale, which needs a default scale unless a header or schema
+     * parameter may give one
+     */
+    protected PathConversion defaultScaleConversion(DecimalScale scale, DecimalTarget target, String scaleConfigName, String configName) {
+        return scale.isFixed()
+                ? DecimalConversion.toScale(requireScale(scale.defaultScale(), scaleConfigName, configName), target, metrics)
+                : DecimalConversion.toSourceScale(scale, target, metrics);
+    }
+
+    protected static void addField(FieldPaths<PathConversion> conversions, String configName, String path, PathConversion conversion) {
+        try {
+            conversions.add(path, conversion);
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException(configName, path, e.getMessage());
+        }
+    }
+
+    protected static int requireScale(Integer scale, String scaleConfigName, String configName) {
+        if (scale == null) {
+            throw new ConfigException("'" + scaleConfigName + "' must be set when using '" + configName + "' without explicit scales.");
+        }
+        return scale;
+    }
+
+    protected static DecimalTarget decimalTarget(SimpleConfig config, String scaleConfigName, String precisionConfigName,
+                                                 String roundingModeConfigName, String outputTypeConfigName) {
+        return decimalTarget(config, scaleConfigName, precisionConfigName, roundingModeConfigName,
+                DecimalOutputType.valueOf(config.getString(outputTypeConfigName).toUpperCase(Locale.ROOT)));
+    }
+
+    /**
+     * The target of transforms that always write decimals, without an output type setting
+     */
+    protected static DecimalTarget decimalTarget(SimpleConfig config, String scaleConfigName, String precisionConfigName,
+                                                 String roundingModeConfigName) {
+        return decimalTarget(config, scaleConfigName, precisionConfigName, roundingModeConfigName, DecimalOutputType.DECIMAL);
+    }
+
+    private static DecimalTarget decimalTarget(SimpleConfig config, String scaleConfigName, String precisionConfigName,
+                                               String roundingModeConfigName, DecimalOutputType outputType) {
+        final Integer targetScale = config.getInt(scaleConfigName);
+        final Integer targetPrecision = config.getInt(precisionConfigName);
+        if (targetScale == null && targetPrecision == null && outputType == DecimalOutputType.DECIMAL) {
+            return DecimalTarget.NONE;
+        }
+        if (targetScale != null && targetPrecision != null && targetScale > targetPrecision) {
+            throw new ConfigException(scaleConfigName, targetScale, "Must not exceed '" + precisionConfigName + "'");
+        }
+        return new DecimalTarget(targetScale, targetPrecision,
+                RoundingMode.valueOf(config.getString(roundingModeConfigName).toUpperCase(Locale.ROOT)), outputType);
+    }
+
+    /*
+    * Range.atLeast rejects null, which these optional settings default to
+     */
+    protected static ConfigDef.Validator atLeastOrNull(int min) {
+        final ConfigDef.Validator atLeast = ConfigDef.Range.atLeast(min);
+        return (name, value) -> {
+            if (value != null) {
+                atLeast.ensureValid(name, value);
+            }
+        };
+    }
+
+    private static ConfigDef.Validator validNames(Enum<?>[] values) {
+        final List<String> names = new ArrayList<>();
+        for (Enum<?> value : values) {
+            names.add(value.name());
+            names.add(value.name().toLowerCase(Locale.ROOT));
+        }
+        return ConfigDef.ValidString.in(names.toArray(new String[0]));
+    }
+
+    protected static DateTimeFormatter compileFormat(String configName, String pattern) {
+        if (pattern == null) {
+            return null;
+        }
+        try {
+            return DateTimeFormatter.ofPattern(pattern, Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException(configName, pattern, e.getMessage());
+        }
+    }
+
+    protected static Pattern compilePattern(String configName, String pattern) {
+        if (pattern == null) {
+            return null;
+        }
+        try {
+            return Pattern.compile(pattern);
+        } catch (PatternSyntaxException e) {
+            throw new ConfigException(configName, pattern, e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,317 @@
+package com.github.petersilverwood.kafka.connect;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.kafka.connect.data.Date;
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.data.Time;
+import org.apache.kafka.connect.data.Timestamp;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.json.JsonConverter;
+import org.apache.kafka.connect.json.JsonConverterConfig;
+import org.apache.kafka.connect.json.JsonDeserializer;
+import org.apache.kafka.connect.storage.Converter;
+import org.apache.kafka.connect.storage.ConverterConfig;
+import org.apache.kafka.connect.storage.ConverterType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JsonConverter applying the casts of CastFields (or CastDecimal, NullableTimestampTransform) while the JSON is
+ * read, so the Struct of a record is built once, with its final types, instead of once by the converter and again
+ * by the transform:
+ *
+ *     value.converter=com.github.petersilverwood.kafka.connect.CastingJsonConverter
+ *     value.converter.schemas.enable=true
+ *     value.converter.decimal.fields=amount:4
+ *
+ * The settings go to both the JsonConverter and the transform named by 'transform' (CastFields by default).
+ * The input schema is read from the envelope by the JsonConverter, which caches it; its plan comes from the
+ * transform's schema cache, and the output Struct is filled straight from the JSON tree, converting the planned
+ * fields on the way. Everything else reads as the JsonConverter reads it, and fromConnectData is the
+ * JsonConverter's.
+ *
+ * Schemaless JSON is read by the JsonConverter and its Map converted by the transform. Converters see no record
+ * headers, so decimals without a scale take the default scale, and on.error=tag is not supported. Values the
+ * casts fail on are handled as on.error says; passed through, they are read without the casts.
+ */
+public class CastingJsonConverter implements Converter, Closeable {
+
+    public static final String TRANSFORM_CONFIG = "transform";
+
+    public static final ConfigDef CONFIG_DEF = new ConfigDef()
+            .define(TRANSFORM_CONFIG, ConfigDef.Type.CLASS, CastFields.class, ConfigDef.Importance.MEDIUM,
+                    "The transform whose casts to apply: CastFields, CastDecimal or NullableTimestampTransform");
+
+    private final JsonConverter json = new JsonConverter();
+    private final JsonDeserializer deserializer = new JsonDeserializer();
+    private boolean schemasEnabled;
+    private CastFields<?> cast;
+
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        final AbstractConfig config = new AbstractConfig(CONFIG_DEF, configs, false);
+        final Class<?> transform = config.getClass(TRANSFORM_CONFIG);
+        if (!CastFields.class.isAssignableFrom(transform)) {
+            throw new ConfigException(TRANSFORM_CONFIG, transform.getName(), "Not a CastFields");
+        }
+
+        json.configure(configs, isKey);
+        final Map<String, Object> jsonConfigs = new HashMap<>(configs);
+        jsonConfigs.put(ConverterConfig.TYPE_CONFIG, isKey ? ConverterType.KEY.getName() : ConverterType.VALUE.getName());
+        schemasEnabled = new JsonConverterConfig(jsonConfigs).schemasEnabled();
+
+        cast = Utils.newInstance(transform.asSubclass(CastFields.class));
+        cast.configure(configs);
+        if (cast.errorPolicy() == ErrorPolicy.TAG) {
+            throw new ConfigException(ErrorPolicy.CONFIG, "tag", "Converters cannot add headers");
+        }
+    }
+
+
+    public ConfigDef config() {
+        return CONFIG_DEF;
+    }
+
+    /**
+     * The metrics of the transform applying the casts
+     */
+    TransformMetrics metrics() {
+        return cast.metrics();
+    }
+
+
+    @Override
+    public byte[] fromConnectData(String topic, Schema schema, Object value) {
+        return json.fromConnectData(topic, schema, value);
+    }
+
+    @Override
+    public SchemaAndValue toConnectData(String topic, byte[] value) {
+        if (value == null) {
+            return SchemaAndValue.NULL;
+        }
+        if (!schemasEnabled) {
+            return convertSchemaless(json.toConnectData(topic, value));
+        }
+
+        final JsonNode envelope;
+        try {
+            envelope = deserializer.deserialize(topic, value);
+        } catch (SerializationException e) {
+            throw new DataException("Converting byte[] to Kafka Connect data failed due to serialization error: ", e);
+        }
+        if (!envelope.isObject() || envelope.size() != 2 || !envelope.has("schema") || !envelope.has("payload")) {
+            throw new DataException("JsonConverter with schemas.enable requires \"schema\" and \"payload\" fields and may not contain additional fields."
+                    + " If you are trying to deserialize plain JSON data, set schemas.enable=false in your converter configuration.");
+        }
+        if (envelope.get("schema").isNull()) {
+            // Rare enough to parse again rather than infer the types here:
+            return convertSchemaless(json.toConnectData(topic, value));
+        }
+
+        final Schema schema = json.asConnectSchema(envelope.get("schema"));
+        final JsonNode payload = envelope.get("payload");
+        try {
+            final StructPlan plan = schema.type() == Schema.Type.STRUCT ? cast.plan(schema) : null;
+            final boolean converted = plan != null && !plan.isIdentity();
+            final SchemaAndValue data = converted
+                    ? new SchemaAndValue(plan.schema(), payload.isNull() ? toConnect(plan.schema(), payload) : toStruct(plan, payload))
+                    : new SchemaAndValue(schema, toConnect(schema, payload));
+            cast.metrics().recordApplied(converted);
+            return data;
+        } catch (DataException e) {
+            cast.passThrough(e);
+            return new SchemaAndValue(schema, toConnect(schema, payload));
+        }
+    }
+
+    private SchemaAndValue convertSchemaless(SchemaAndValue data) {
+        if (!(data.value() instanceof Map)) {
+            return data;
+        }
+        try {
+            final SchemaAndValue updated = cast.convertSchemaless((Map<?, ?>) data.value());
+            cast.metrics().recordApplied(updated != null);
+            return updated == null ? data : updated;
+        } catch (DataException e) {
+            cast.passThrough(e);
+            return data;
+        }
+    }
+
+
+    /*
+    * The output Struct of the plan, its fields read from the JSON object and converted one by one; nested plans
+    * are followed into their objects, so no input Struct is built at any depth
+     */
+    private static Struct toStruct(StructPlan plan, JsonNode value) {
+        plan.requireCompiled();
+        if (!value.isObject()) {
+            throw new DataException("Structs should be encoded as JSON objects, but found " + value.getNodeType());
+        }
+
+        final Struct struct = new Struct(plan.schema());
+        for (int i = 0; i < plan.size(); i++) {
+            final Field field = plan.inputField(i);
+            final JsonNode fieldValue = value.get(field.name());
+            final FieldConversion conversion = plan.conversion(i);
+
+            final Object newFieldValue;
+            if (conversion instanceof StructPlan && fieldValue != null && fieldValue.isObject()) {
+                newFieldValue = toStruct((StructPlan) conversion, fieldValue);
+            } else {
+                final Object origFieldValue = toConnect(field.schema(), fieldValue);
+                newFieldValue = conversion == null ? origFieldValue : conversion.convert(origFieldValue);
+            }
+            struct.put(plan.outputField(i), newFieldValue);
+        }
+        return struct;
+    }
+
+
+    /*
+    * Reads a value of the schema as the JsonConverter does, logical types included
+     */
+    private static Object toConnect(Schema schema, JsonNode value) {
+        if (value == null || value.isNull()) {
+            if (schema.defaultValue() != null) {
+                return schema.defaultValue();
+            }
+            if (value == null || schema.isOptional()) {
+                return null;
+            }
+            throw new DataException("Invalid null value for required " + schema.type() + " field");
+        }
+
+        final Object converted;
+        switch (schema.type()) {
+            case BOOLEAN:
+                converted = value.booleanValue();
+                break;
+            case INT8:
+                converted = (byte) value.intValue();
+                break;
+            case INT16:
+                converted = (short) value.intValue();
+                break;
+            case INT32:
+                converted = value.intValue();
+                break;
+            case INT64:
+                converted = value.longValue();
+                break;
+            case FLOAT32:
+                converted = value.floatValue();
+                break;
+            case FLOAT64:
+                converted = value.doubleValue();
+                break;
+            case BYTES:
+                try {
+                    converted = value.binaryValue();
+                } catch (IOException e) {
+                    throw new DataException("Invalid bytes field", e);
+                }
+                break;
+            case STRING:
+                converted = value.textValue();
+                break;
+            case ARRAY:
+                converted = toList(schema.valueSchema(), value);
+                break;
+            case MAP:
+                converted = toMap(schema, value);
+                break;
+            case STRUCT:
+                if (!value.isObject()) {
+                    throw new DataException("Structs should be encoded as JSON objects, but found " + value.getNodeType());
+                }
+                final Struct struct = new Struct(schema);
+                for (Field field : schema.fields()) {
+                    struct.put(field, toConnect(field.schema(), value.get(field.name())));
+                }
+                converted = struct;
+                break;
+            default:
+                throw new DataException("Unknown schema type: " + schema.type());
+        }
+        return schema.name() == null ? converted : toLogical(schema, converted);
+    }
+
+    private static List<Object> toList(Schema elementSchema, JsonNode value) {
+        final List<Object> list = new ArrayList<>(value.size());
+        for (JsonNode element : value) {
+            list.add(toConnect(elementSchema, element));
+        }
+        return list;
+    }
+
+    private static Map<Object, Object> toMap(Schema schema, JsonNode value) {
+        final Map<Object, Object> map = new HashMap<>();
+        if (schema.keySchema().type() == Schema.Type.STRING) {
+            if (!value.isObject()) {
+                throw new DataException("Maps with string fields should be encoded as JSON objects, but found " + value.getNodeType());
+            }
+            final Iterator<Map.Entry<String, JsonNode>> entries = value.fields();
+            while (entries.hasNext()) {
+                final Map.Entry<String, JsonNode> entry = entries.next();
+                map.put(entry.getKey(), toConnect(schema.valueSchema(), entry.getValue()));
+            }
+        } else {
+            if (!value.isArray()) {
+                throw new DataException("Maps with non-string fields should be encoded as JSON array of tuples, but found " + value.getNodeType());
+            }
+            for (JsonNode entry : value) {
+                if (!entry.isArray() || entry.size() != 2) {
+                    throw new DataException("Found invalid map entry instead of array tuple: " + entry.getNodeType());
+                }
+                map.put(toConnect(schema.keySchema(), entry.get(0)), toConnect(schema.valueSchema(), entry.get(1)));
+            }
+        }
+        return map;
+    }
+
+    private static Object toLogical(Schema schema, Object value) {
+        switch (schema.name()) {
+            case Decimal.LOGICAL_NAME:
+                if (!(value instanceof byte[])) {
+                    throw new DataException("Invalid type for Decimal, underlying representation should be bytes but was " + value.getClass());
+                }
+                return Decimal.toLogical(schema, (byte[]) value);
+            case Date.LOGICAL_NAME:
+                return Date.toLogical(schema, (Integer) value);
+            case Time.LOGICAL_NAME:
+                return Time.toLogical(schema, (Integer) value);
+            case Timestamp.LOGICAL_NAME:
+                return Timestamp.toLogical(schema, (Long) value);
+            default:
+                return value;
+        }
+    }
+
+
+    @Override
+    public void close() {
+        if (cast != null) {
+            cast.close();
+        }
+        deserializer.close();
+    }
+
+}
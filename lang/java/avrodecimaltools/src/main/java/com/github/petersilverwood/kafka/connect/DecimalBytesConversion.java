@@ -0,0 +1,134 @@
+package com.github.petersilverwood.kafka.connect;
+
+import com.github.petersilverwood.avrodecimaltools.DecimalCodec;
+import com.github.petersilverwood.avrodecimaltools.DecimalTarget;
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.errors.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Encodes a Decimal logical type into plain bytes holding its unscaled value, the reverse of DecimalConversion, as
+ * read by DecimalConversion.cs. The values can be rescaled and limited to a precision by a DecimalTarget first.
+ *
+ * The bytes schema carries the scale as a parameter, as the int64 output of DecimalConversion does, and the
+ * precision when one is set. Values are first aligned to the scale of their Decimal schema, which only adds or
+ * drops trailing zeros; values that would need rounding fail, as Decimal.fromLogical fails them.
+ *
+ * Values are handed on as byte[] of their exact length: the JsonConverter writes the whole backing array of a
+ * ByteBuffer, so slices of a shared buffer cannot be handed on.
+ */
+public final class DecimalBytesConversion implements FieldConversion {
+
+    private static final Logger log = LoggerFactory.getLogger(DecimalBytesConversion.class);
+
+    private final String path;
+    private final int scale;
+    private final DecimalTarget target;
+    private final Schema schema;
+
+
+    /**
+     * @throws DataException if the input schema has no valid scale parameter
+     */
+    public DecimalBytesConversion(String path, Schema inputSchema, DecimalTarget target) {
+        this.path = path;
+        this.scale = scale(path, inputSchema);
+        this.target = target;
+        this.schema = schema(inputSchema.isOptional(), target.scale(scale), target);
+    }
+
+
+    private static Schema schema(boolean optional, int scale, DecimalTarget target) {
+        final SchemaBuilder builder = SchemaBuilder.bytes().parameter(Decimal.SCALE_FIELD, Integer.toString(scale));
+        if (target.precision() != null) {
+            builder.parameter(DecimalConversion.PRECISION_PARAMETER, target.precision().toString());
+        }
+        if (optional) {
+            builder.optional();
+        }
+        return builder.build();
+    }
+
+
+    private static int scale(String path, Schema schema) {
+        final String scale = schema.parameters() == null ? null : schema.parameters().get(Decimal.SCALE_FIELD);
+        if (scale == null) {
+            throw new DataException("Decimal field '" + path + "' has no scale parameter");
+        }
+        try {
+            return Integer.parseInt(scale.trim());
+        } catch (NumberFormatException e) {
+            throw new DataException("Decimal field '" + path + "' has an invalid scale parameter: " + scale, e);
+        }
+    }
+
+
+    /**
+     * Encodes Decimals, leaving plain bytes fields, taken to be encoded already, alone
+     */
+    public static PathConversion fromDecimal(DecimalTarget target) {
+        return new PathConversion() {
+            @Override
+            public FieldConversion conversionFor(String path, Schema schema) {
+                if (DecimalConversion.isDecimal(schema)) {
+                    return new DecimalBytesConversion(path, schema, target);
+                }
+                if (schema.type() == Schema.Type.BYTES) {
+                    return null;
+                }
+                throw new DataException("Field '" + path + "' is " + schema.type() + ", not a Decimal");
+            }
+
+            @Override
+            public Object convertSchemaless(Object value) {
+                return value instanceof BigDecimal ? encode("(schemaless)", (BigDecimal) value, target) : value;
+            }
+        };
+    }
+
+
+    @Override
+    public Schema schema() {
+        return schema;
+    }
+
+    @Override
+    public Object convert(Object value) {
+        if (value == null) {
+            return null;
+        }
+        final byte[] newFieldValue = encode(path, aligned((BigDecimal) value), target);
+        if (log.isTraceEnabled()) {
+            log.trace("Encoded field '{}' from '{}' to {} bytes", path, value, newFieldValue.length);
+        }
+        return newFieldValue;
+    }
+
+
+    private BigDecimal aligned(BigDecimal value) {
+        if (value.scale() == scale) {
+            return value;
+        }
+        try {
+            return value.setScale(scale, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException e) {
+            throw new DataException("Cannot encode field '" + path + "': " + value + " does not fit its scale of " + scale, e);
+        }
+    }
+
+
+    private static byte[] encode(String path, BigDecimal value, DecimalTarget target) {
+        try {
+            return DecimalCodec.encode(target.isNone() ? value : target.apply(value));
+        } catch (ArithmeticException e) {
+            throw new DataException("Cannot encode field '" + path + "': " + e.getMessage(), e);
+        }
+    }
+
+}
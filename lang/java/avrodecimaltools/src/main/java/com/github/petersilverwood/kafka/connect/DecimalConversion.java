@@ -0,0 +1,245 @@
+package com.github.petersilverwood.kafka.connect;
+
+import com.github.petersilverwood.avrodecimaltools.DecimalTarget;
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.errors.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Decodes Avro decimal bytes into a Decimal logical type of a fixed scale, optionally rescaled and limited to a
+ * precision as set by a DecimalTarget. The precision is declared on the schema as the Avro converter does.
+ *
+ * The target may ask for an int64 unscaled value, a float64 or a plain string instead of a Decimal, in which case
+ * the schema is of that type and the value is produced without an intermediate BigDecimal.
+ */
+public final class DecimalConversion implements FieldConversion {
+
+    private static final Logger log = LoggerFactory.getLogger(DecimalConversion.class);
+
+    static final String PRECISION_PARAMETER = "connect.decimal.precision";
+
+    private final String path;
+    private final int scale;
+    private final DecimalTarget target;
+    private final Schema schema;
+    private final TransformMetrics metrics;
+
+
+    /**
+     * @throws DataException if the input schema is not bytes
+     */
+    public DecimalConversion(String path, Schema inputSchema, int scale, DecimalTarget target, TransformMetrics metrics) {
+        if (inputSchema.type() != Schema.Type.BYTES) {
+            throw new DataException("Field '" + path + "' is " + inputSchema.type() + ", not bytes");
+        }
+        this.path = path;
+        this.scale = scale;
+        this.target = target;
+        this.metrics = metrics;
+        this.schema = schema(inputSchema.isOptional(), target.scale(scale), target);
+    }
+
+
+    /*
+    * int64 values carry their scale as a parameter, they cannot be read without it
+     */
+    private static Schema schema(boolean optional, int scale, DecimalTarget target) {
+        final SchemaBuilder builder;
+        switch (target.outputType()) {
+            case INT64:
+                builder = SchemaBuilder.int64().parameter(Decimal.SCALE_FIELD, Integer.toString(scale));
+                break;
+            case FLOAT64:
+                builder = SchemaBuilder.float64();
+                break;
+            case STRING:
+                builder = SchemaBuilder.string();
+                break;
+            default:
+                builder = Decimal.builder(scale);
+                break;
+        }
+        if (target.precision() != null) {
+            builder.parameter(PRECISION_PARAMETER, target.precision().toString());
+        }
+        if (optional) {
+            builder.optional();
+        }
+        return builder.build();
+    }
+
+
+    /**
+     * Casts to the given scale, leaving values that already are decimals alone
+     */
+    public static PathConversion toScale(int scale, DecimalTarget target, TransformMetrics metrics) {
+        return new PathConversion() {
+            @Override
+            public FieldConversion conversionFor(String path, Schema schema) {
+                return isDecimal(schema) ? null : new DecimalConversion(path, schema, scale, target, metrics);
+            }
+
+            @Override
+            public Object convertSchemaless(Object value) {
+                return decodeSchemaless(value, scale, target, metrics);
+            }
+        };
+    }
+
+
+    /**
+     * Casts with the scale of the schema parameter, the record header or the default of a DecimalScale, leaving
+     * values that already are decimals alone. Fields without any scale fail the record.
+     */
+    public static ScaledPathConversion toSourceScale(DecimalScale scale, DecimalTarget target, TransformMetrics metrics) {
+        return new ScaledPathConversion() {
+            @Override
+            public FieldConversion conversionFor(String path, Schema schema) {
+                return isDecimal(schema) ? null : new DecimalConversion(path, schema, resolve(path, schema, scale.defaultScale()), target, metrics);
+            }
+
+            @Override
+            public FieldConversion conversionFor(String path, Schema schema, int recordScale) {
+                return isDecimal(schema) ? null : new DecimalConversion(path, schema, resolve(path, schema, recordScale), target, metrics);
+            }
+
+            @Override
+            public Object convertSchemaless(Object value) {
+                if (scale.defaultScale() != null) {
+                    return decodeSchemaless(value, scale.defaultScale(), target, metrics);
+                }
+                if (isBytes(value)) {
+                    throw noScale("(schemaless)");
+                }
+                return value;
+            }
+
+            @Override
+            public Object convertSchemaless(Object value, int recordScale) {
+                return decodeSchemaless(value, recordScale, target, metrics);
+            }
+
+            private int resolve(String path, Schema schema, Integer recordScale) {
+                final String parameter = scale.parameter() == null || schema.parameters() == null
+                        ? null : schema.parameters().get(scale.parameter());
+                if (parameter != null) {
+                    try {
+                        return Integer.parseInt(parameter.trim());
+                    } catch (NumberFormatException e) {
+                        throw new DataException("Schema parameter '" + scale.parameter() + "' of field '" + path + "' is not a scale: " + parameter, e);
+                    }
+                }
+                if (recordScale == null) {
+                    throw noScale(path);
+                }
+                return recordScale;
+            }
+
+            private DataException noScale(String path) {
+                return new DataException("No scale for field '" + path + "': no schema parameter '" + scale.parameter()
+                        + "', header '" + scale.header() + "' or default scale");
+            }
+        };
+    }
+
+
+    private static boolean isBytes(Object value) {
+        return value instanceof ByteBuffer || value instanceof byte[] || value instanceof String && isBase64((String) value);
+    }
+
+
+    /*
+    * Whether the text is padded base64 as the JsonConverter writes bytes. Text that also happens to be valid
+    * base64, such as "1234", cannot be told apart and is decoded.
+     */
+    static boolean isBase64(String text) {
+        final int length = text.length();
+        if (length == 0 || length % 4 != 0) {
+            return false;
+        }
+        final int padding = text.charAt(length - 1) != '=' ? 0 : text.charAt(length - 2) != '=' ? 1 : 2;
+        for (int i = 0; i < length - padding; i++) {
+            final char c = text.charAt(i);
+            if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '+' || c == '/')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Decodes the bytes representations found in schemaless values: byte[], ByteBuffer, or base64 text as written
+     * by the JsonConverter. Anything else, including text that is not base64 such as "12.34", is returned as it is.
+     */
+    public static Object decodeSchemaless(Object value, int scale, DecimalTarget target, TransformMetrics metrics) {
+        try {
+            if (value instanceof ByteBuffer) {
+                metrics.recordDecodedLength(((ByteBuffer) value).remaining());
+                return target.convert((ByteBuffer) value, scale);
+            }
+            if (value instanceof byte[]) {
+                metrics.recordDecodedLength(((byte[]) value).length);
+                return target.convert((byte[]) value, scale);
+            }
+            if (value instanceof String && isBase64((String) value)) {
+                final byte[] bytes = Base64.getDecoder().decode((String) value);
+                metrics.recordDecodedLength(bytes.length);
+                return target.convert(bytes, scale);
+            }
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            throw new DataException("Cannot cast to " + describe(scale, target) + ": " + e.getMessage(), e);
+        }
+        return value;
+    }
+
+    private static String describe(int scale, DecimalTarget target) {
+        final String type = target.outputType().name().toLowerCase(Locale.ROOT);
+        return target.precision() == null
+                ? type + " of scale " + target.scale(scale)
+                : type + "(" + target.precision() + ", " + target.scale(scale) + ")";
+    }
+
+    public static boolean isDecimal(Schema schema) {
+        return Decimal.LOGICAL_NAME.equals(schema.name());
+    }
+
+
+    @Override
+    public Schema schema() {
+        return schema;
+    }
+
+    @Override
+    public Object convert(Object value) {
+        if (value == null) {
+            return null;
+        }
+        final Object newFieldValue;
+        try {
+            // The JsonConverter hands bytes fields on as byte[], the Avro converter as ByteBuffer:
+            if (value instanceof byte[]) {
+                metrics.recordDecodedLength(((byte[]) value).length);
+                newFieldValue = target.convert((byte[]) value, scale);
+            } else {
+                final ByteBuffer bytes = (ByteBuffer) value;
+                metrics.recordDecodedLength(bytes.remaining());
+                newFieldValue = target.convert(bytes, scale);
+            }
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            throw new DataException("Cannot cast field '" + path + "' to " + describe(scale, target) + ": " + e.getMessage(), e);
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Cast field '{}' from '{}' to '{}'", path, value, newFieldValue);
+        }
+        return newFieldValue;
+    }
+
+}
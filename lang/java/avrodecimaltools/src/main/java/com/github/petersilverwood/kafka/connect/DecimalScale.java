@@ -0,0 +1,87 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Where decimal fields without an explicit scale get their scale from, first to last:
+ *
+ *     parameter    a parameter of the field's schema, e.g. the 'scale' an upstream converter declares
+ *     header       a record header, for topics mixing values of several scales
+ *     default      the configured scale
+ *
+ * The parameter is resolved once per schema. A header scale is resolved per record, see CastFields.
+ */
+public final class DecimalScale {
+
+    private final Integer defaultScale;
+    private final String header;
+    private final String parameter;
+
+
+    /**
+     * @param defaultScale  the scale when neither the parameter nor the header gives one, or null
+     * @param header        the name of the header holding the scale, or null
+     * @param parameter     the name of the schema parameter holding the scale, or null
+     */
+    public DecimalScale(Integer defaultScale, String header, String parameter) {
+        this.defaultScale = defaultScale;
+        this.header = header;
+        this.parameter = parameter;
+    }
+
+    public static DecimalScale fixed(Integer scale) {
+        return new DecimalScale(scale, null, null);
+    }
+
+
+    public Integer defaultScale() {
+        return defaultScale;
+    }
+
+    public String header() {
+        return header;
+    }
+
+    public String parameter() {
+        return parameter;
+    }
+
+    /**
+     * True when every field has the default scale
+     */
+    public boolean isFixed() {
+        return header == null && parameter == null;
+    }
+
+
+    /**
+     * The scale in the last header of the configured name, or null when there is none
+     */
+    public Integer fromHeaders(Headers headers) {
+        final Header scaleHeader = header == null ? null : headers.lastWithName(header);
+        if (scaleHeader == null || scaleHeader.value() == null) {
+            return null;
+        }
+
+        final Object value = scaleHeader.value();
+        try {
+            if (value instanceof Number) {
+                return ((Number) value).intValue();
+            }
+            if (value instanceof String) {
+                return Integer.parseInt(((String) value).trim());
+            }
+            if (value instanceof byte[]) {
+                return Integer.parseInt(new String((byte[]) value, StandardCharsets.UTF_8).trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new DataException("Header '" + header + "' does not hold a scale: " + e.getMessage(), e);
+        }
+        throw new DataException("Header '" + header + "' does not hold a scale: " + value.getClass().getName());
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+
+import java.util.Locale;
+
+/**
+ * What a transform does with a value it cannot convert: bytes of the wrong length or with too many digits, a
+ * field of an unexpected type, text that is not a timestamp.
+ *
+ *     -    fail: the DataException is thrown, failing the task unless Connect's errors.tolerance says otherwise
+ *     -    null: the field is set to null, its schema made optional, and the rest of the record is converted
+ *     -    passthrough: the record is handed on as it came in
+ *     -    tag: as passthrough, with the error in a header (on.error.header) for routing to a dead letter queue
+ *
+ * Errors that do not belong to one field, such as a value that is not a Struct or an unreadable scale header,
+ * pass the record through under null. Failed values are counted in the conversion errors of TransformMetrics.
+ */
+public enum ErrorPolicy {
+
+    FAIL, NULL, PASSTHROUGH, TAG;
+
+    public static final String CONFIG = "on.error";
+    public static final String HEADER_CONFIG = "on.error.header";
+
+    public static final String DEFAULT_HEADER = "avro-decimal-tools.error";
+
+
+    /**
+     * Adds the error handling settings to a transform's ConfigDef
+     */
+    public static ConfigDef define(ConfigDef configDef) {
+        return configDef
+                .define(CONFIG, ConfigDef.Type.STRING, FAIL.name().toLowerCase(Locale.ROOT),
+                        ConfigDef.ValidString.in("fail", "null", "passthrough", "tag", "FAIL", "NULL", "PASSTHROUGH", "TAG"),
+                        ConfigDef.Importance.MEDIUM,
+                        "What to do with values that cannot be converted: fail the task, null the field, pass the "
+                                + "record through, or pass it through tagged with a '" + HEADER_CONFIG + "' header")
+                .define(HEADER_CONFIG, ConfigDef.Type.STRING, DEFAULT_HEADER, ConfigDef.Importance.LOW,
+                        "Header holding the error of records passed through under on.error=tag");
+    }
+
+    public static ErrorPolicy fromConfig(SimpleConfig config) {
+        return valueOf(config.getString(CONFIG).toUpperCase(Locale.ROOT));
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.connect.data.Schema;
+
+/**
+ * Conversion of a single field value, resolved once per input schema when a StructPlan is compiled
+ */
+public interface FieldConversion {
+
+    /**
+     * The schema of the converted value
+     */
+    Schema schema();
+
+    Object convert(Object value);
+
+}
@@ -0,0 +1,176 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dotted field paths, such as after.amount, each leading to a leaf setting of type T.
+ *
+ * Paths are resolved against a schema once, when compiling a StructPlan. Arrays and maps are descended into
+ * implicitly: with lines an array of structs, lines.amount addresses the amount of every element, and a path
+ * that ends on an array or map addresses its elements or values.
+ *
+ * Only structs along a configured path are rebuilt, every other value is carried over by reference. Schemaless
+ * (Map) values are walked by key in the same way.
+ */
+public final class FieldPaths<T> {
+
+    /**
+     * Creates the conversion for a leaf of a path, the schema being that of the value to convert
+     */
+    public interface LeafFactory<T> {
+        FieldConversion conversionFor(String path, Schema schema, T leaf);
+    }
+
+    /**
+     * Converts a schemaless value at a leaf, returning the value itself when there is nothing to convert
+     */
+    public interface SchemalessLeaf<T> {
+        Object convert(T leaf, Object value);
+    }
+
+    private final Node<T> root = new Node<>();
+
+
+    /**
+     * @throws IllegalArgumentException if the path is empty or overlaps with a path added earlier
+     */
+    public void add(String path, T leaf) {
+        Node<T> node = root;
+        for (String segment : path.split("\\.", -1)) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Invalid field path '" + path + "'");
+            }
+            if (node.leaf != null) {
+                throw new IllegalArgumentException("Field path '" + path + "' is nested in another configured path");
+            }
+            node = node.children.computeIfAbsent(segment, name -> new Node<>());
+        }
+        if (node.leaf != null || !node.children.isEmpty()) {
+            throw new IllegalArgumentException("Field path '" + path + "' is configured more than once");
+        }
+        node.leaf = leaf;
+    }
+
+    public boolean isEmpty() {
+        return root.children.isEmpty();
+    }
+
+    /**
+     * True if the top-level field is the start of a configured path
+     */
+    public boolean contains(String fieldName) {
+        return root.children.containsKey(fieldName);
+    }
+
+
+    /**
+     * Compiles the plan for a struct schema. Top-level fields that are not the start of a configured path are
+     * handed to the fallback rule. Nested struct plans use the same copy mode.
+     */
+    public StructPlan compile(Schema structSchema, LeafFactory<T> factory, StructPlan.FieldRule fallback,
+                              StructPlan.CopyMode copyMode) {
+        return StructPlan.compile(structSchema, field -> {
+            final Node<T> node = root.children.get(field.name());
+            return node == null ? fallback.conversionFor(field) : conversionFor(field.name(), field.schema(), node, factory, copyMode);
+        }, copyMode);
+    }
+
+
+    private static <T> FieldConversion conversionFor(String path, Schema schema, Node<T> node, LeafFactory<T> factory,
+                                                     StructPlan.CopyMode copyMode) {
+
+        switch (schema.type()) {
+            case ARRAY: {
+                final FieldConversion elementConversion = conversionFor(path, schema.valueSchema(), node, factory, copyMode);
+                return elementConversion == null ? null : new ArrayConversion(schema, elementConversion);
+            }
+            case MAP: {
+                final FieldConversion valueConversion = conversionFor(path, schema.valueSchema(), node, factory, copyMode);
+                return valueConversion == null ? null : new MapConversion(schema, valueConversion);
+            }
+            case STRUCT:
+                if (node.leaf == null) {
+                    final StructPlan plan = StructPlan.compile(schema, (Field field) -> {
+                        final Node<T> child = node.children.get(field.name());
+                        return child == null ? null : conversionFor(path + "." + field.name(), field.schema(), child, factory, copyMode);
+                    }, copyMode);
+                    return plan.isIdentity() ? null : plan;
+                }
+                return factory.conversionFor(path, schema, node.leaf);
+            default:
+                return node.leaf == null ? null : factory.conversionFor(path, schema, node.leaf);
+        }
+    }
+
+
+    /**
+     * Converts the configured keys of a schemaless value.
+     *
+     * Maps along a path are looked up by key, lists are descended into. Nothing is rebuilt: a map or list is
+     * shallow copied on the first value that changes and then updated in place, so the original value is never
+     * modified. When nothing changes, the value itself is returned.
+     */
+    public Map<?, ?> convertSchemaless(Map<?, ?> value, SchemalessLeaf<T> converter) {
+        return convertMap(value, root, converter);
+    }
+
+
+    private static <T> Object convertValue(Object value, Node<T> node, SchemalessLeaf<T> converter) {
+        if (value instanceof List) {
+            return convertList((List<?>) value, node, converter);
+        }
+        if (node.leaf == null) {
+            return value instanceof Map ? convertMap((Map<?, ?>) value, node, converter) : value;
+        }
+        return value == null ? null : converter.convert(node.leaf, value);
+    }
+
+
+    private static <T> Map<?, ?> convertMap(Map<?, ?> value, Node<T> node, SchemalessLeaf<T> converter) {
+        Map<Object, Object> updated = null;
+        for (Map.Entry<String, Node<T>> child : node.children.entrySet()) {
+            final Object origValue = value.get(child.getKey());
+            if (origValue == null) {
+                continue;
+            }
+
+            final Object newValue = convertValue(origValue, child.getValue(), converter);
+            if (newValue != origValue) {
+                if (updated == null) {
+                    updated = new HashMap<>(value);
+                }
+                updated.put(child.getKey(), newValue);
+            }
+        }
+        return updated == null ? value : updated;
+    }
+
+
+    private static <T> List<?> convertList(List<?> value, Node<T> node, SchemalessLeaf<T> converter) {
+        List<Object> updated = null;
+        for (int i = 0; i < value.size(); i++) {
+            final Object origValue = value.get(i);
+            final Object newValue = convertValue(origValue, node, converter);
+            if (newValue != origValue) {
+                if (updated == null) {
+                    updated = new ArrayList<>(value);
+                }
+                updated.set(i, newValue);
+            }
+        }
+        return updated == null ? value : updated;
+    }
+
+
+    private static final class Node<T> {
+        final Map<String, Node<T>> children = new HashMap<>();
+        T leaf;
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.transforms.util.SchemaUtil;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Applies a conversion to every value of a map, keys are kept as they are
+ */
+public final class MapConversion implements FieldConversion {
+
+    private final Schema schema;
+    private final FieldConversion valueConversion;
+
+    public MapConversion(Schema mapSchema, FieldConversion valueConversion) {
+        final SchemaBuilder builder = SchemaUtil.copySchemaBasics(mapSchema,
+                SchemaBuilder.map(mapSchema.keySchema(), valueConversion.schema()));
+        if (mapSchema.isOptional()) {
+            builder.optional();
+        }
+        this.schema = builder.build();
+        this.valueConversion = valueConversion;
+    }
+
+    @Override
+    public Schema schema() {
+        return schema;
+    }
+
+    @Override
+    public Object convert(Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        final Map<?, ?> entries = (Map<?, ?>) value;
+        final Map<Object, Object> converted = new LinkedHashMap<>(entries.size() * 4 / 3 + 1);
+        for (Map.Entry<?, ?> entry : entries.entrySet()) {
+            converted.put(entry.getKey(), valueConversion.convert(entry.getValue()));
+        }
+        return converted;
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.transforms.util.SchemaUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A conversion under ErrorPolicy.NULL: values the conversion fails on become null, under an optional schema.
+ *
+ * A conversion that could not be resolved against the schema at all is given as null; every value of the field
+ * is then nulled, keeping the input schema made optional.
+ */
+final class NullOnError implements FieldConversion {
+
+    private static final Logger log = LoggerFactory.getLogger(NullOnError.class);
+
+    private final String path;
+    private final FieldConversion conversion;
+    private final Schema schema;
+    private final TransformMetrics metrics;
+
+
+    NullOnError(String path, FieldConversion conversion, Schema inputSchema, TransformMetrics metrics) {
+        this.path = path;
+        this.conversion = conversion;
+        this.schema = optional(conversion == null ? inputSchema : conversion.schema());
+        this.metrics = metrics;
+    }
+
+
+    @Override
+    public Schema schema() {
+        return schema;
+    }
+
+    @Override
+    public Object convert(Object value) {
+        if (conversion == null) {
+            return null;
+        }
+        try {
+            return conversion.convert(value);
+        } catch (DataException e) {
+            metrics.recordFieldNulled();
+            log.debug("Setting field '{}' to null: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+
+    static Schema optional(Schema schema) {
+        if (schema.isOptional()) {
+            return schema;
+        }
+
+        final SchemaBuilder builder;
+        switch (schema.type()) {
+            case STRUCT:
+                builder = SchemaBuilder.struct();
+                for (Field field : schema.fields()) {
+                    builder.field(field.name(), field.schema());
+                }
+                break;
+            case ARRAY:
+                builder = SchemaBuilder.array(schema.valueSchema());
+                break;
+            case MAP:
+                builder = SchemaBuilder.map(schema.keySchema(), schema.valueSchema());
+                break;
+            default:
+                builder = SchemaBuilder.type(schema.type());
+                break;
+        }
+        return SchemaUtil.copySchemaBasics(schema, builder).optional().build();
+    }
+
+}
@@ -1,55 +1,75 @@
 package com.github.petersilverwood.kafka.connect;
 
-import org.apache.kafka.common.cache.Cache;
-import org.apache.kafka.common.cache.LRUCache;
-import org.apache.kafka.common.cache.SynchronizedCache;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.connector.ConnectRecord;
-import org.apache.kafka.connect.data.*;
-import org.apache.kafka.connect.transforms.Transformation;
-import org.apache.kafka.connect.transforms.util.SchemaUtil;
 import org.apache.kafka.connect.transforms.util.SimpleConfig;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
 import java.util.Map;
 
-import static org.apache.kafka.connect.transforms.util.Requirements.requireStruct;
-
-public class NullableTimestampTransform<R extends ConnectRecord<R>> implements Transformation<R> {
-
-    private static final Logger log = LoggerFactory.getLogger(NullableTimestampTransform.class);
+/**
+ * Connect transform to convert a nullable unix ts (epoch millis) into an optional Timestamp logical type.
+ *
+ * Several fields can be cast at once, each with its own unit and output type:
+ *
+ *     fields=created,updated:seconds,day:string:date
+ *
+ * Paths without a unit or type use 'unit' and 'type'. String timestamps are ISO-8601, or of the 'format' pattern.
+ *
+ * target=key casts fields of record keys instead, and target=both of keys and values in one pass; see RecordPart.
+ *
+ * This is the timestamp only configuration of CastFields.
+ */
+public class NullableTimestampTransform<R extends ConnectRecord<R>> extends CastFields<R> {
 
     protected interface ConfigNames {
         String FIELD = "field";
-
+        String FIELDS = "fields";
+        String UNIT = "unit";
+        String TYPE = "type";
+        String FORMAT = "format";
     }
 
-    private static final String PURPOSE = "cast unix ts to timestamp field";
 
-
-    public static final ConfigDef CONFIG_DEF = new ConfigDef()
+    public static final ConfigDef CONFIG_DEF = RecordPart.define(ErrorPolicy.define(SchemaWarmup.define(StructPlan.define(TransformMetrics.define(SchemaCache.define(new ConfigDef()
             .define(NullableTimestampTransform.ConfigNames.FIELD,
                     ConfigDef.Type.STRING,
-                    ConfigDef.NO_DEFAULT_VALUE,
+                    null,
                     (name, valueObject) -> {
-                        if(valueObject == null || valueObject.equals("")){
+                        if(valueObject != null && valueObject.equals("")){
                             throw new ConfigException("Must specify a field to cast.");
                         };
                     },
                     ConfigDef.Importance.HIGH,
-                    "The field containing the unix ts");
-
-    private String field;
-    private Cache<Schema, Schema> schemaUpdateCache;
+                    "The field containing the unix ts")
+            .define(NullableTimestampTransform.ConfigNames.FIELDS, ConfigDef.Type.LIST, "", ConfigDef.Importance.HIGH,
+                    "Fields to cast, as path[:unit[:type]]")
+            .define(NullableTimestampTransform.ConfigNames.UNIT, ConfigDef.Type.STRING, DEFAULT_TIMESTAMP_UNIT, TIMESTAMP_UNITS, ConfigDef.Importance.MEDIUM,
+                    "Unit of the fields: millis, seconds, micros, nanos or string")
+            .define(NullableTimestampTransform.ConfigNames.TYPE, ConfigDef.Type.STRING, DEFAULT_TIMESTAMP_TYPE, TIMESTAMP_TYPES, ConfigDef.Importance.MEDIUM,
+                    "Logical type to cast the fields to: timestamp, date or time")
+            .define(NullableTimestampTransform.ConfigNames.FORMAT, ConfigDef.Type.STRING, null, ConfigDef.Importance.LOW,
+                    "java.time.format.DateTimeFormatter pattern of string fields; ISO-8601 when not set")))))));
 
     @Override
     public void configure(Map<String, ?> props) {
         final SimpleConfig config = new SimpleConfig(CONFIG_DEF, props);
-        field = config.getString(NullableTimestampTransform.ConfigNames.FIELD);
+        final TimestampUnit unit = TimestampUnit.valueOf(config.getString(NullableTimestampTransform.ConfigNames.UNIT).toUpperCase(Locale.ROOT));
+        final TimestampOutputType type = TimestampOutputType.valueOf(config.getString(NullableTimestampTransform.ConfigNames.TYPE).toUpperCase(Locale.ROOT));
+        final DateTimeFormatter format = compileFormat(NullableTimestampTransform.ConfigNames.FORMAT,
+                config.getString(NullableTimestampTransform.ConfigNames.FORMAT));
+
+        final FieldPaths<PathConversion> fields = new FieldPaths<>();
+        final String field = config.getString(NullableTimestampTransform.ConfigNames.FIELD);
+        if (field != null) {
+            addField(fields, NullableTimestampTransform.ConfigNames.FIELD, field, TimestampConversion.from(unit, type, format));
+        }
+        addTimestampFields(fields, NullableTimestampTransform.ConfigNames.FIELDS, config.getList(NullableTimestampTransform.ConfigNames.FIELDS),
+                unit, type, format);
 
-        schemaUpdateCache = new SynchronizedCache<>(new LRUCache<Schema, Schema>(16));
+        configure(fields, null, null, config);
 
     }
 
@@ -59,87 +79,4 @@ public class NullableTimestampTransform<R extends ConnectRecord<R>> implements T
         return CONFIG_DEF;
     }
 
-
-    @Override
-    public void close() {
-
-    }
-
-
-    @Override
-    public R apply(R record) {
-
-        // Check that the SMT is applied to a field in the record value only.
-        if (null == record.valueSchema() || Schema.Type.STRUCT != record.valueSchema().type()) {
-            log.trace("record.valueSchema() is null or record.valueSchema() is not a struct.");
-            return record;
-        }
-
-        // Build new schema
-        Schema updatedSchema = getOrBuildSchema(record.valueSchema());
-
-
-        // The record value must contain a Struct type, which we can clone to a new Struct with the updated schema.
-        Struct value = requireStruct(record.value(), PURPOSE);
-
-        final Struct updatedValue = new Struct(updatedSchema);
-        for (Field field : value.schema().fields()) {
-
-            final Object origFieldValue = value.get(field);
-            if(field.name().equals(this.field)){
-
-                Object newFieldValue;
-                // Do cast:
-                if(origFieldValue == null){
-                    newFieldValue = null;
-                }else{
-                    newFieldValue = new java.util.Date((long)origFieldValue);
-                }
-
-                updatedValue.put(updatedSchema.field(field.name()), newFieldValue);
-                log.trace("Cast field '{}' from '{}' to '{}'", field.name(), origFieldValue, newFieldValue);
-            }else{
-                updatedValue.put(updatedSchema.field(field.name()), origFieldValue);
-            }
-
-        }
-
-        // Return a new record:
-        return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(), updatedSchema, updatedValue, record.timestamp());
-
-    }
-
-
-
-
-    /*
-    * Build the target schema
-     */
-    private Schema getOrBuildSchema(Schema valueSchema) {
-
-        // Lookup from cache:
-        Schema updatedSchema = schemaUpdateCache.get(valueSchema);
-        if (updatedSchema != null)
-            return updatedSchema;
-
-        final SchemaBuilder builder = SchemaUtil.copySchemaBasics(valueSchema, SchemaBuilder.struct());
-
-        for (Field field : valueSchema.fields()) {
-            if (this.field.equals(field.name())) {
-
-                builder.field(field.name(), Timestamp.builder().optional().schema());
-
-            } else {
-                builder.field(field.name(), field.schema());
-            }
-        }
-
-        updatedSchema = builder.build();
-        schemaUpdateCache.put(valueSchema, updatedSchema);
-        return updatedSchema;
-
-
-    }
-
-
 }
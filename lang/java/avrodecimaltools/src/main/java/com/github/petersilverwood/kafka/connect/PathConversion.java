@@ -0,0 +1,24 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.connect.data.Schema;
+
+/**
+ * The conversion configured for a field path
+ */
+public interface PathConversion {
+
+    /**
+     * Resolves the conversion against the schema found at the path
+     *
+     * @return the conversion, or null when the value already has the target type
+     */
+    FieldConversion conversionFor(String path, Schema schema);
+
+    /**
+     * Converts a schemaless value found at the path
+     *
+     * @return the converted value, or the value itself when it already has the target type
+     */
+    Object convertSchemaless(Object value);
+
+}
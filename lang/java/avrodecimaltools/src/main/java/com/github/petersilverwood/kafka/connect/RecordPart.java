@@ -0,0 +1,47 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+
+import java.util.Locale;
+
+/**
+ * Which part of the record a transform converts: the value (the default), the key, or both.
+ *
+ * Under both, the key and the value are converted in one apply() into a single output record. Their plans come
+ * from the same schema cache, so a key schema that also turns up as a value schema is planned once, and the record
+ * is copied, timed and counted once rather than once per part. Scale headers apply to both parts, and a part that
+ * cannot be converted fails (or passes through, or tags) the record as a whole.
+ */
+public enum RecordPart {
+
+    KEY, VALUE, BOTH;
+
+    public static final String CONFIG = "target";
+
+
+    /**
+     * Adds the target setting to a transform's ConfigDef
+     */
+    public static ConfigDef define(ConfigDef configDef) {
+        return configDef
+                .define(CONFIG, ConfigDef.Type.STRING, VALUE.name().toLowerCase(Locale.ROOT),
+                        ConfigDef.ValidString.in("key", "value", "both", "KEY", "VALUE", "BOTH"),
+                        ConfigDef.Importance.MEDIUM,
+                        "Part of the record to convert: value, key, or both in a single pass");
+    }
+
+    public static RecordPart fromConfig(SimpleConfig config) {
+        return valueOf(config.getString(CONFIG).toUpperCase(Locale.ROOT));
+    }
+
+
+    public boolean includesKey() {
+        return this != VALUE;
+    }
+
+    public boolean includesValue() {
+        return this != KEY;
+    }
+
+}
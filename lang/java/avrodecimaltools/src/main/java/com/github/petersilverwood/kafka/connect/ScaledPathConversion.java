@@ -0,0 +1,20 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.connect.data.Schema;
+
+/**
+ * A conversion whose scale can also be given per record, as read from a header by CastFields
+ */
+public interface ScaledPathConversion extends PathConversion {
+
+    /**
+     * Resolves the conversion for records of the given scale
+     */
+    FieldConversion conversionFor(String path, Schema schema, int scale);
+
+    /**
+     * Converts a schemaless value of a record of the given scale
+     */
+    Object convertSchemaless(Object value, int scale);
+
+}
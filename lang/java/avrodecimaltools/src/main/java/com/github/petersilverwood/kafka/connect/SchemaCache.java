@@ -0,0 +1,256 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.common.cache.Cache;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache keyed by Schema, built for the per-record lookups of the transforms:
+ *
+ *     -    reads never lock: an identity table is probed first, so the schema instances handed out by a converter
+ *          are found without computing ConnectSchema.hashCode() or equals()
+ *     -    on an identity miss the deep hash is computed once and memoized in the key
+ *     -    inserts and evictions take a lock, they only happen on misses
+ *     -    LRU eviction is approximated with a second-chance (CLOCK) sweep, so a hit only ever sets a flag
+ *
+ * Hit, miss and eviction counts are kept in LongAdders.
+ */
+public final class SchemaCache<V> implements Cache<Schema, V> {
+
+    public static final String CAPACITY_CONFIG = "schema.cache.size";
+    public static final String EVICTION_CONFIG = "schema.cache.eviction";
+
+    public static final int DEFAULT_CAPACITY = 128;
+
+    public enum EvictionPolicy {
+        LRU, FIFO
+    }
+
+
+    /**
+     * Adds the cache settings to a transform's ConfigDef
+     */
+    public static ConfigDef define(ConfigDef configDef) {
+        return configDef
+                .define(CAPACITY_CONFIG, ConfigDef.Type.INT, DEFAULT_CAPACITY, ConfigDef.Range.atLeast(1),
+                        ConfigDef.Importance.LOW, "Maximum number of input schemas to keep updated schemas for")
+                .define(EVICTION_CONFIG, ConfigDef.Type.STRING, EvictionPolicy.LRU.name().toLowerCase(Locale.ROOT),
+                        ConfigDef.ValidString.in("lru", "fifo", "LRU", "FIFO"),
+                        ConfigDef.Importance.LOW, "Schema cache eviction policy, lru or fifo");
+    }
+
+    public static <V> SchemaCache<V> fromConfig(SimpleConfig config) {
+        return new SchemaCache<>(config.getInt(CAPACITY_CONFIG),
+                EvictionPolicy.valueOf(config.getString(EVICTION_CONFIG).toUpperCase(Locale.ROOT)));
+    }
+
+
+    private final int capacity;
+    private final EvictionPolicy policy;
+
+    private final ConcurrentHashMap<SchemaKey, Entry<V>> entries;
+    private final AtomicReferenceArray<Alias<V>> identityTable;
+    private final ArrayDeque<Entry<V>> insertionOrder = new ArrayDeque<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+
+    public SchemaCache(int capacity, EvictionPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.entries = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        this.identityTable = new AtomicReferenceArray<>(Integer.highestOneBit(capacity * 4 - 1) << 1);
+    }
+
+
+    @Override
+    public V get(Schema schema) {
+
+        final int slot = identitySlot(schema);
+        final Alias<V> alias = identityTable.get(slot);
+        if (alias != null && alias.schema == schema && !alias.entry.evicted) {
+            return hit(alias.entry);
+        }
+
+        final Entry<V> entry = entries.get(new SchemaKey(schema));
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        // Remember this instance so the next lookup is by identity:
+        identityTable.lazySet(slot, new Alias<>(schema, entry));
+        return hit(entry);
+    }
+
+
+    @Override
+    public void put(Schema schema, V value) {
+
+        final SchemaKey key = new SchemaKey(schema);
+        final Entry<V> entry;
+
+        synchronized (insertionOrder) {
+            if (entries.containsKey(key)) {
+                return;
+            }
+            while (entries.size() >= capacity) {
+                evictOne();
+            }
+
+            entry = new Entry<>(key, value);
+            entries.put(key, entry);
+            insertionOrder.addLast(entry);
+        }
+
+        identityTable.lazySet(identitySlot(schema), new Alias<>(schema, entry));
+    }
+
+
+    @Override
+    public boolean remove(Schema schema) {
+        synchronized (insertionOrder) {
+            final Entry<V> entry = entries.remove(new SchemaKey(schema));
+            if (entry == null) {
+                return false;
+            }
+            entry.evicted = true;
+            insertionOrder.remove(entry);
+            return true;
+        }
+    }
+
+
+    @Override
+    public long size() {
+        return entries.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public EvictionPolicy evictionPolicy() {
+        return policy;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+
+    private V hit(Entry<V> entry) {
+        hits.increment();
+        // Only write when the flag changes, so steady state hits stay read-only:
+        if (policy == EvictionPolicy.LRU && !entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.value;
+    }
+
+
+    /*
+    * Caller holds the insertionOrder lock
+     */
+    private void evictOne() {
+        while (true) {
+            final Entry<V> candidate = insertionOrder.pollFirst();
+            if (policy == EvictionPolicy.LRU && candidate.referenced) {
+                // Second chance:
+                candidate.referenced = false;
+                insertionOrder.addLast(candidate);
+                continue;
+            }
+
+            candidate.evicted = true;
+            entries.remove(candidate.key);
+            evictions.increment();
+            return;
+        }
+    }
+
+
+    private int identitySlot(Schema schema) {
+        final int hash = System.identityHashCode(schema);
+        return (hash ^ (hash >>> 16)) & (identityTable.length() - 1);
+    }
+
+
+    /**
+     * Key comparing by identity first, with the deep hash computed once
+     */
+    private static final class SchemaKey {
+
+        private final Schema schema;
+        private final int hash;
+
+        SchemaKey(Schema schema) {
+            this.schema = schema;
+            this.hash = schema.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SchemaKey)) {
+                return false;
+            }
+            final SchemaKey other = (SchemaKey) o;
+            return schema == other.schema || (hash == other.hash && schema.equals(other.schema));
+        }
+    }
+
+
+    private static final class Entry<V> {
+
+        final SchemaKey key;
+        final V value;
+        volatile boolean referenced;
+        volatile boolean evicted;
+
+        Entry(SchemaKey key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+
+    private static final class Alias<V> {
+
+        final Schema schema;
+        final Entry<V> entry;
+
+        Alias(Schema schema, Entry<V> entry) {
+            this.schema = schema;
+            this.entry = entry;
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.common.Configurable;
+import org.apache.kafka.connect.data.Schema;
+
+import java.util.Collection;
+
+/**
+ * Source of the value schemas a transform is going to see, so it can build their plans at configure() time
+ * instead of on the first record of each. See SchemaWarmup.
+ *
+ * configure() is handed the configuration of the transform, providers read their own settings from it.
+ */
+public interface SchemaProvider extends Configurable {
+
+    /**
+     * The Connect schemas to prepare, as the converter will hand them out; schemas that are not structs are ignored
+     */
+    Collection<Schema> schemas();
+
+}
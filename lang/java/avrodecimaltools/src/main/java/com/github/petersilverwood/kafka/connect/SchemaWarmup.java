@@ -0,0 +1,50 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Settings for preparing the plans of known schemas at configure() time.
+ *
+ * The first record of each schema otherwise pays for building its output schema and plan, which after a restart
+ * or rebalance of a task reading hundreds of topics shows up as a latency spike. The schemas come from a
+ * SchemaProvider (schema.prewarm.provider), which must hand them out exactly as the converter builds them; a cache
+ * entry is only ever hit by an equal schema.
+ *
+ * Schemas whose plan cannot be built are logged and skipped, their records then fail or pass as on.error says.
+ * With a scale header, plans are prepared for records without the header and for those whose header holds the
+ * default scale; other header scales are planned on their first record.
+ */
+public final class SchemaWarmup {
+
+    public static final String PROVIDER_CONFIG = "schema.prewarm.provider";
+
+    private SchemaWarmup() {
+    }
+
+
+    /**
+     * Adds the warmup settings to a transform's ConfigDef
+     */
+    public static ConfigDef define(ConfigDef configDef) {
+        return configDef
+                .define(PROVIDER_CONFIG, ConfigDef.Type.CLASS, null, ConfigDef.Importance.LOW,
+                        "SchemaProvider class giving the value schemas to prepare at startup");
+    }
+
+
+    /**
+     * The schemas to prepare, empty when warmup is not configured
+     */
+    public static Collection<Schema> schemas(SimpleConfig config) {
+        if (config.getClass(PROVIDER_CONFIG) == null) {
+            return Collections.emptyList();
+        }
+        return config.getConfiguredInstance(PROVIDER_CONFIG, SchemaProvider.class).schemas();
+    }
+
+}
@@ -0,0 +1,266 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.transforms.util.SchemaUtil;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The updated schema of a struct together with a compiled copy plan.
+ *
+ * The plan is an array indexed by field position: a null slot copies the value, any other slot holds the
+ * conversion for that field. Field names are only looked at when compiling, so applying a plan does no
+ * string comparisons and no name based lookups.
+ *
+ * How the copy is made is set by the copy mode:
+ *
+ *     -    validated: every value is put() into the new Struct, which checks it against its schema
+ *     -    shared: the value array of the input is copied as it is, and only the converted slots and the unset
+ *          fields with a schema default are written; nothing is validated again. The input is left untouched, and
+ *          the result is an ordinary Struct, equal to the validated copy.
+ *
+ * Shared copies read Struct's private value array (see StructValues); on a Kafka version where that cannot be
+ * done, plans fall back to validated copies, which configure() logs as a warning.
+ *
+ * A schema the plan cannot be compiled for gets a failed plan, which keeps the error and fails every value with a
+ * new DataException caused by it, so the schema is looked at only once.
+ */
+public final class StructPlan implements FieldConversion {
+
+    private static final Logger log = LoggerFactory.getLogger(StructPlan.class);
+
+    public static final String COPY_MODE_CONFIG = "copy.mode";
+
+    public enum CopyMode {
+        VALIDATED, SHARED
+    }
+
+
+    /**
+     * Adds the copy mode setting to a transform's ConfigDef
+     */
+    public static ConfigDef define(ConfigDef configDef) {
+        return configDef
+                .define(COPY_MODE_CONFIG, ConfigDef.Type.STRING, CopyMode.VALIDATED.name().toLowerCase(Locale.ROOT),
+                        ConfigDef.ValidString.in("validated", "shared", "VALIDATED", "SHARED"),
+                        ConfigDef.Importance.LOW,
+                        "How output structs are built: 'validated' puts and checks every field, 'shared' copies the "
+                                + "untouched values without checking them again and only writes the converted fields");
+    }
+
+    /**
+     * The configured copy mode, falling back to validated (with a warning) where Struct's values cannot be accessed
+     */
+    public static CopyMode copyMode(SimpleConfig config) {
+        final CopyMode configured = CopyMode.valueOf(config.getString(COPY_MODE_CONFIG).toUpperCase(Locale.ROOT));
+        final CopyMode mode = effective(configured, StructValues.available());
+        if (mode != configured) {
+            log.warn("'{}' is {}, but this Kafka version's Struct does not allow it; struct copies will be {}",
+                    COPY_MODE_CONFIG, configured.name().toLowerCase(Locale.ROOT), mode.name().toLowerCase(Locale.ROOT));
+        }
+        return mode;
+    }
+
+    static CopyMode effective(CopyMode mode, boolean sharedAvailable) {
+        return mode == CopyMode.SHARED && !sharedAvailable ? CopyMode.VALIDATED : mode;
+    }
+
+    /**
+     * Decides per field of an input schema whether it is converted, returning null to copy it unchanged
+     */
+    public interface FieldRule {
+        FieldConversion conversionFor(Field field);
+    }
+
+    private final Schema schema;
+    private final Field[] inputFields;
+    private final Field[] outputFields;
+    private final FieldConversion[] conversions;
+    private final int[] converted;
+    private final int[] defaulted;
+    private final boolean identity;
+    private final CopyMode copyMode;
+    private final DataException failure;
+
+
+    private StructPlan(Schema schema, Field[] inputFields, Field[] outputFields, FieldConversion[] conversions, CopyMode copyMode,
+                       DataException failure) {
+        this.schema = schema;
+        this.inputFields = inputFields;
+        this.outputFields = outputFields;
+        this.conversions = conversions;
+        this.copyMode = copyMode;
+        this.failure = failure;
+
+        int count = 0;
+        for (FieldConversion conversion : conversions) {
+            count += conversion == null ? 0 : 1;
+        }
+        this.converted = new int[count];
+        for (int i = 0, next = 0; i < conversions.length; i++) {
+            if (conversions[i] != null) {
+                converted[next++] = i;
+            }
+        }
+        this.identity = count == 0 && failure == null;
+
+        int defaults = 0;
+        for (int i = 0; i < conversions.length; i++) {
+            defaults += conversions[i] == null && inputFields[i].schema().defaultValue() != null ? 1 : 0;
+        }
+        this.defaulted = new int[defaults];
+        for (int i = 0, next = 0; i < conversions.length; i++) {
+            if (conversions[i] == null && inputFields[i].schema().defaultValue() != null) {
+                defaulted[next++] = i;
+            }
+        }
+    }
+
+
+    public static StructPlan compile(Schema inputSchema, FieldRule rule) {
+        return compile(inputSchema, rule, CopyMode.VALIDATED);
+    }
+
+
+    public static StructPlan compile(Schema inputSchema, FieldRule rule, CopyMode copyMode) {
+
+        final List<Field> fields = inputSchema.fields();
+        final Field[] inputFields = fields.toArray(new Field[0]);
+        final FieldConversion[] conversions = new FieldConversion[inputFields.length];
+
+        final SchemaBuilder builder = SchemaUtil.copySchemaBasics(inputSchema, SchemaBuilder.struct());
+        if (inputSchema.isOptional()) {
+            builder.optional();
+        }
+        for (int i = 0; i < inputFields.length; i++) {
+            final Field field = inputFields[i];
+            conversions[i] = rule.conversionFor(field);
+            builder.field(field.name(), conversions[i] == null ? field.schema() : conversions[i].schema());
+        }
+
+        final Schema schema = builder.build();
+        final Field[] outputFields = schema.fields().toArray(new Field[0]);
+        return new StructPlan(schema, inputFields, outputFields, conversions, effective(copyMode, StructValues.available()), null);
+    }
+
+
+    /**
+     * A plan for a schema that could not be compiled, applying which throws a DataException caused by the given one
+     */
+    public static StructPlan failed(Schema inputSchema, DataException failure) {
+        return new StructPlan(inputSchema, new Field[0], new Field[0], new FieldConversion[0], CopyMode.VALIDATED, failure);
+    }
+
+
+    @Override
+    public Schema schema() {
+        return schema;
+    }
+
+
+    /**
+     * True when no field is converted, so values can be passed on as they are
+     */
+    public boolean isIdentity() {
+        return identity;
+    }
+
+    public CopyMode copyMode() {
+        return copyMode;
+    }
+
+
+    @Override
+    public Object convert(Object value) {
+        return value == null ? null : apply((Struct) value);
+    }
+
+
+    /**
+     * Copies the value into a new Struct of the updated schema, converting the planned fields
+     *
+     * @throws DataException of a failed plan, a new one each time
+     */
+    public Struct apply(Struct value) {
+        requireCompiled();
+        return copyMode == CopyMode.SHARED ? applyShared(value) : applyValidated(value);
+    }
+
+
+    /*
+    * Field by field access, for building the output of a plan from something other than a Struct
+     */
+    int size() {
+        return inputFields.length;
+    }
+
+    Field inputField(int index) {
+        return inputFields[index];
+    }
+
+    Field outputField(int index) {
+        return outputFields[index];
+    }
+
+    FieldConversion conversion(int index) {
+        return conversions[index];
+    }
+
+    /**
+     * @throws DataException of a failed plan, a new one each time
+     */
+    void requireCompiled() {
+        if (failure != null) {
+            throw new DataException(failure.getMessage(), failure);
+        }
+    }
+
+
+    private Struct applyValidated(Struct value) {
+
+        final Struct updatedValue = new Struct(schema);
+        for (int i = 0; i < outputFields.length; i++) {
+
+            final Object origFieldValue = value.get(inputFields[i]);
+            final FieldConversion conversion = conversions[i];
+
+            updatedValue.put(outputFields[i], conversion == null ? origFieldValue : conversion.convert(origFieldValue));
+        }
+
+        return updatedValue;
+    }
+
+
+    /*
+    * The schemas are equal, so the value arrays line up by position. Converted fields are read through get(),
+    * and unset copied fields take their schema default, as get() gives them to the validated copy
+     */
+    private Struct applyShared(Struct value) {
+
+        final Struct updatedValue = new Struct(schema);
+        final Object[] values = StructValues.of(updatedValue);
+        System.arraycopy(StructValues.of(value), 0, values, 0, values.length);
+
+        for (int i : defaulted) {
+            if (values[i] == null) {
+                values[i] = inputFields[i].schema().defaultValue();
+            }
+        }
+
+        for (int i : converted) {
+            values[i] = conversions[i].convert(value.get(inputFields[i]));
+        }
+
+        return updatedValue;
+    }
+
+}
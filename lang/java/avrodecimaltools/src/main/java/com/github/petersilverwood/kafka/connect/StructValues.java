@@ -0,0 +1,64 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+
+/**
+ * Direct access to the value array of a Struct, for StructPlan's shared copy mode.
+ *
+ * Struct keeps its values in a private Object[] indexed by field position, and put() validates every value on the
+ * way in. Reading that array lets a plan copy the untouched values of a struct in one arraycopy. The handle is
+ * looked up once; when the field is missing or not accessible, available() is false and plans keep using put().
+ */
+final class StructValues {
+
+    private static final Logger log = LoggerFactory.getLogger(StructValues.class);
+
+    private static final MethodHandle VALUES = valuesGetter("values");
+
+    private StructValues() {
+    }
+
+
+    static boolean available() {
+        return VALUES != null;
+    }
+
+
+    /**
+     * The live value array of the struct, writes to it bypass validation
+     */
+    static Object[] of(Struct struct) {
+        try {
+            return (Object[]) VALUES.invokeExact(struct);
+        } catch (Throwable e) {
+            throw new ConnectException("Failed to read the values of a Struct", e);
+        }
+    }
+
+
+    /*
+    * Null when Struct has no such Object[] field, as may happen with any Kafka release
+     */
+    static MethodHandle valuesGetter(String fieldName) {
+        try {
+            final Field values = Struct.class.getDeclaredField(fieldName);
+            if (values.getType() != Object[].class) {
+                log.warn("Struct.{} is of type {}, struct copies will be validated", fieldName, values.getType());
+                return null;
+            }
+            values.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(values);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Struct.{} is not accessible, struct copies will be validated", fieldName, e);
+            return null;
+        }
+    }
+
+}
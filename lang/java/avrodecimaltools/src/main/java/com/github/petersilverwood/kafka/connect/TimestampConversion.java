@@ -0,0 +1,124 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.errors.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.DateTimeException;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Converts numbers of a TimestampUnit, or timestamp text, into an optional Timestamp, Date or Time logical type
+ */
+public final class TimestampConversion implements FieldConversion {
+
+    private static final Logger log = LoggerFactory.getLogger(TimestampConversion.class);
+
+    private static final String CONNECT_LOGICAL_TYPES = "org.apache.kafka.connect.data.";
+
+    private final String path;
+    private final TimestampUnit unit;
+    private final TimestampOutputType outputType;
+    private final TimestampParser parser;
+
+
+    public TimestampConversion(String path) {
+        this(path, TimestampUnit.MILLIS, TimestampOutputType.TIMESTAMP, null);
+    }
+
+    /**
+     * @param parser    the parser for TimestampUnit.STRING values, unused for other units
+     */
+    public TimestampConversion(String path, TimestampUnit unit, TimestampOutputType outputType, TimestampParser parser) {
+        this.path = path;
+        this.unit = unit;
+        this.outputType = outputType;
+        this.parser = parser;
+    }
+
+
+    /**
+     * Converts values of the given unit, leaving values that already have the output type alone
+     *
+     * @param format    the format of TimestampUnit.STRING values, null for ISO-8601
+     */
+    public static PathConversion from(TimestampUnit unit, TimestampOutputType outputType, DateTimeFormatter format) {
+        // One parser per configured path, so each caches the days of its own column:
+        final TimestampParser parser = unit == TimestampUnit.STRING ? new TimestampParser(format) : null;
+        final TimestampConversion schemaless = new TimestampConversion("(schemaless)", unit, outputType, parser);
+
+        return new PathConversion() {
+            @Override
+            public FieldConversion conversionFor(String path, Schema schema) {
+                if (outputType.schema().name().equals(schema.name())) {
+                    return null;
+                }
+                if (!accepts(unit, schema)) {
+                    throw new DataException("Field '" + path + "' is " + (schema.name() == null ? schema.type() : schema.name())
+                            + ", not " + (unit == TimestampUnit.STRING ? "a string" : "a number of " + unit));
+                }
+                return new TimestampConversion(path, unit, outputType, parser);
+            }
+
+            @Override
+            public Object convertSchemaless(Object value) {
+                final boolean convertible = unit == TimestampUnit.STRING ? value instanceof String : value instanceof Number;
+                return convertible ? schemaless.convert(value) : value;
+            }
+        };
+    }
+
+
+    /*
+    * Decided by type, so named numbers such as io.debezium.time.Timestamp convert too. Connect's own logical types
+    * hold Dates and BigDecimals rather than numbers or text, and are not converted
+     */
+    private static boolean accepts(TimestampUnit unit, Schema schema) {
+        if (schema.name() != null && schema.name().startsWith(CONNECT_LOGICAL_TYPES)) {
+            return false;
+        }
+        switch (schema.type()) {
+            case STRING:
+                return unit == TimestampUnit.STRING;
+            case INT8:
+            case INT16:
+            case INT32:
+            case INT64:
+            case FLOAT32:
+            case FLOAT64:
+                return unit != TimestampUnit.STRING;
+            default:
+                return false;
+        }
+    }
+
+
+    @Override
+    public Schema schema() {
+        return outputType.schema();
+    }
+
+    @Override
+    public Object convert(Object origFieldValue) {
+        if (origFieldValue == null) {
+            return null;
+        }
+
+        final java.util.Date newFieldValue;
+        try {
+            final long epochMillis = unit == TimestampUnit.STRING
+                    ? parser.parseEpochMillis((String) origFieldValue)
+                    : unit.toEpochMillis(((Number) origFieldValue).longValue());
+            newFieldValue = outputType.toDate(epochMillis);
+        } catch (DateTimeException | ArithmeticException e) {
+            throw new DataException("Cannot cast field '" + path + "' from " + unit + " to " + outputType + ": " + e.getMessage(), e);
+        }
+
+        if (log.isTraceEnabled()) {
+            log.trace("Cast field '{}' from '{}' to '{}'", path, origFieldValue, newFieldValue);
+        }
+        return newFieldValue;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Time;
+import org.apache.kafka.connect.data.Timestamp;
+
+/**
+ * The Connect logical type timestamps are cast to. Date and Time values are cut from the instant in UTC, as the
+ * Connect Date and Time types require.
+ */
+public enum TimestampOutputType {
+
+    TIMESTAMP(Timestamp.builder().optional().schema()) {
+        @Override
+        long fromEpochMillis(long epochMillis) {
+            return epochMillis;
+        }
+    },
+
+    DATE(org.apache.kafka.connect.data.Date.builder().optional().schema()) {
+        @Override
+        long fromEpochMillis(long epochMillis) {
+            return epochMillis - Math.floorMod(epochMillis, MILLIS_PER_DAY);
+        }
+    },
+
+    TIME(Time.builder().optional().schema()) {
+        @Override
+        long fromEpochMillis(long epochMillis) {
+            return Math.floorMod(epochMillis, MILLIS_PER_DAY);
+        }
+    };
+
+
+    static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final Schema schema;
+
+    TimestampOutputType(Schema schema) {
+        this.schema = schema;
+    }
+
+
+    public Schema schema() {
+        return schema;
+    }
+
+    public java.util.Date toDate(long epochMillis) {
+        return new java.util.Date(fromEpochMillis(epochMillis));
+    }
+
+    abstract long fromEpochMillis(long epochMillis);
+
+}
@@ -0,0 +1,205 @@
+package com.github.petersilverwood.kafka.connect;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Parses timestamp text into epoch millis.
+ *
+ * ISO-8601 text of the usual shapes is read by hand, without allocating:
+ *
+ *     2020-03-01
+ *     2020-03-01T12:34[:56[.789123]]      'T' or ' ' between date and time
+ *     ... followed by Z, +01:00, +0100 or +01; text without an offset is in UTC
+ *
+ * The date part is worked out once per day seen: the last date and its epoch millis are cached, and text of the
+ * same day only has its time and offset read. Anything else, and text in a custom format, goes through a cached
+ * DateTimeFormatter.
+ *
+ * Parsers are safe to share between threads.
+ */
+public final class TimestampParser {
+
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+
+    private static final int DATE_LENGTH = 10;
+
+    private final DateTimeFormatter formatter;
+    private volatile Day lastDay;
+
+
+    /**
+     * Parses ISO-8601 text
+     */
+    public TimestampParser() {
+        this(null);
+    }
+
+    /**
+     * Parses text of the given format, or ISO-8601 text when null. Formats without an offset or zone are in UTC.
+     */
+    public TimestampParser(DateTimeFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+
+    /**
+     * @throws DateTimeException if the text cannot be parsed
+     */
+    public long parseEpochMillis(String text) {
+        if (formatter != null) {
+            return parseWithFormatter(formatter, text);
+        }
+
+        final int length = text.length();
+        if (length < DATE_LENGTH || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return parseIso(text);
+        }
+
+        int i = DATE_LENGTH;
+        long timeMillis = 0;
+        if (i < length && (text.charAt(i) == 'T' || text.charAt(i) == ' ')) {
+            if (i + 6 > length || text.charAt(i + 3) != ':') {
+                return parseIso(text);
+            }
+            final int hour = twoDigits(text, i + 1);
+            final int minute = twoDigits(text, i + 4);
+            i += 6;
+
+            int second = 0;
+            int millis = 0;
+            if (i < length && text.charAt(i) == ':') {
+                second = i + 3 <= length ? twoDigits(text, i + 1) : -1;
+                i += 3;
+                if (second >= 0 && i < length && text.charAt(i) == '.') {
+                    // Up to nanoseconds, of which the milliseconds are kept:
+                    final int start = ++i;
+                    while (i < length && i - start < 9 && isDigit(text.charAt(i))) {
+                        if (i - start < 3) {
+                            millis = millis * 10 + (text.charAt(i) - '0');
+                        }
+                        i++;
+                    }
+                    if (i == start) {
+                        return parseIso(text);
+                    }
+                    for (int digits = i - start; digits < 3; digits++) {
+                        millis *= 10;
+                    }
+                }
+            }
+
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+                return parseIso(text);
+            }
+            timeMillis = hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * 1000L + millis;
+        }
+
+        long offsetMillis = 0;
+        if (i < length) {
+            final char c = text.charAt(i);
+            if (c == 'Z') {
+                i++;
+            } else if (c == '+' || c == '-') {
+                final int offsetHours = i + 3 <= length ? twoDigits(text, i + 1) : -1;
+                i += 3;
+                int offsetMinutes = 0;
+                if (i < length && text.charAt(i) == ':') {
+                    offsetMinutes = i + 3 <= length ? twoDigits(text, i + 1) : -1;
+                    i += 3;
+                } else if (i + 2 <= length) {
+                    offsetMinutes = twoDigits(text, i);
+                    i += 2;
+                }
+                if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+                    return parseIso(text);
+                }
+                offsetMillis = (c == '-' ? -1 : 1) * (offsetHours * MILLIS_PER_HOUR + offsetMinutes * MILLIS_PER_MINUTE);
+            }
+        }
+        if (i != length) {
+            return parseIso(text);
+        }
+
+        final long dayMillis = dayMillis(text);
+        return dayMillis == Long.MIN_VALUE ? parseIso(text) : dayMillis + timeMillis - offsetMillis;
+    }
+
+
+    /*
+    * Epoch millis of the date at the start of the text, or Long.MIN_VALUE when it is not a date
+     */
+    private long dayMillis(String text) {
+        final Day day = lastDay;
+        if (day != null && text.regionMatches(0, day.text, 0, DATE_LENGTH)) {
+            return day.epochMillis;
+        }
+
+        final int century = twoDigits(text, 0);
+        final int yearOfCentury = twoDigits(text, 2);
+        final int month = twoDigits(text, 5);
+        final int dayOfMonth = twoDigits(text, 8);
+        if (century < 0 || yearOfCentury < 0 || month < 0 || dayOfMonth < 0) {
+            return Long.MIN_VALUE;
+        }
+
+        final long epochMillis;
+        try {
+            epochMillis = LocalDate.of(century * 100 + yearOfCentury, month, dayOfMonth).toEpochDay() * TimestampOutputType.MILLIS_PER_DAY;
+        } catch (DateTimeException e) {
+            return Long.MIN_VALUE;
+        }
+        lastDay = new Day(text.substring(0, DATE_LENGTH), epochMillis);
+        return epochMillis;
+    }
+
+
+    private static int twoDigits(String text, int index) {
+        final char tens = text.charAt(index);
+        final char units = text.charAt(index + 1);
+        return isDigit(tens) && isDigit(units) ? (tens - '0') * 10 + (units - '0') : -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+
+    /*
+    * Anything the hand written parser does not take: zone ids, week dates, expanded years, or malformed text
+     */
+    private static long parseIso(String text) {
+        return parseWithFormatter(text.length() > DATE_LENGTH ? DateTimeFormatter.ISO_DATE_TIME : DateTimeFormatter.ISO_DATE, text);
+    }
+
+
+    private static long parseWithFormatter(DateTimeFormatter formatter, String text) {
+        final TemporalAccessor parsed = formatter.parseBest(text, ZonedDateTime::from, LocalDateTime::from, LocalDate::from);
+        if (parsed instanceof ZonedDateTime) {
+            return ((ZonedDateTime) parsed).toInstant().toEpochMilli();
+        }
+        if (parsed instanceof LocalDateTime) {
+            return ((LocalDateTime) parsed).toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        return ((LocalDate) parsed).toEpochDay() * TimestampOutputType.MILLIS_PER_DAY;
+    }
+
+
+    private static final class Day {
+
+        final String text;
+        final long epochMillis;
+
+        Day(String text, long epochMillis) {
+            this.text = text;
+            this.epochMillis = epochMillis;
+        }
+    }
+
+}
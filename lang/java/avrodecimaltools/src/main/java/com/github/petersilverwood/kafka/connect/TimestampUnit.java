@@ -0,0 +1,50 @@
+package com.github.petersilverwood.kafka.connect;
+
+/**
+ * The unit a source writes its timestamps in. Numbers are whole units since the epoch, STRING is text parsed by
+ * a TimestampParser.
+ */
+public enum TimestampUnit {
+
+    MILLIS {
+        @Override
+        public long toEpochMillis(long value) {
+            return value;
+        }
+    },
+
+    SECONDS {
+        @Override
+        public long toEpochMillis(long value) {
+            return Math.multiplyExact(value, 1000L);
+        }
+    },
+
+    MICROS {
+        @Override
+        public long toEpochMillis(long value) {
+            return Math.floorDiv(value, 1000L);
+        }
+    },
+
+    NANOS {
+        @Override
+        public long toEpochMillis(long value) {
+            return Math.floorDiv(value, 1000_000L);
+        }
+    },
+
+    STRING {
+        @Override
+        public long toEpochMillis(long value) {
+            return value;
+        }
+    };
+
+
+    /**
+     * Converts a number of this unit to epoch millis, rounding towards negative infinity
+     */
+    public abstract long toEpochMillis(long value);
+
+}
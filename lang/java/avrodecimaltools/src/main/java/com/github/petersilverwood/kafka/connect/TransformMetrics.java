@@ -0,0 +1,265 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a transform instance, registered as an MBean under
+ *
+ *     com.github.petersilverwood.avrodecimaltools:type=[transform class],name=[metrics.name],id=[instance]
+ *
+ * Every applied record is counted once, as converted, passed through or failed. Values nulled under
+ * on.error=null are counted apart from the records holding them.
+ *
+ * Counting uses LongAdders, so concurrent tasks don't contend. Apply latency is only measured for a random sample
+ * of records (1 in metrics.latency.sample.rate) into a fixed reservoir, and the percentiles are computed when read.
+ */
+public class TransformMetrics implements TransformMetricsMBean {
+
+    public static final String ENABLED_CONFIG = "metrics.enabled";
+    public static final String NAME_CONFIG = "metrics.name";
+    public static final String LATENCY_SAMPLE_RATE_CONFIG = "metrics.latency.sample.rate";
+
+    static final String DOMAIN = "com.github.petersilverwood.avrodecimaltools";
+
+    private static final String[] LENGTH_BUCKETS = {
+            "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "16", "17-32", ">32"
+    };
+    private static final int RESERVOIR_SIZE = 1024;
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+
+    /**
+     * Adds the metrics settings to a transform's ConfigDef
+     */
+    public static ConfigDef define(ConfigDef configDef) {
+        return configDef
+                .define(ENABLED_CONFIG, ConfigDef.Type.BOOLEAN, true, ConfigDef.Importance.LOW,
+                        "Whether to collect metrics and register them as an MBean")
+                .define(NAME_CONFIG, ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW,
+                        "Name added to the MBean's ObjectName, e.g. the connector name")
+                .define(LATENCY_SAMPLE_RATE_CONFIG, ConfigDef.Type.INT, 64, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW,
+                        "Measure the apply latency of one in this many records");
+    }
+
+
+    private final int id = INSTANCES.incrementAndGet();
+
+    private volatile boolean enabled;
+    private int latencySampleRate = 1;
+    private SchemaCache<?> schemaCache;
+    private ObjectName objectName;
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder passedThrough = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder fieldsNulled = new LongAdder();
+    private final LongAdder[] decodedLengths = new LongAdder[LENGTH_BUCKETS.length];
+
+    private final AtomicLongArray latencyReservoir = new AtomicLongArray(RESERVOIR_SIZE);
+    private final AtomicLong latencySamples = new AtomicLong();
+
+
+    public TransformMetrics() {
+        for (int i = 0; i < decodedLengths.length; i++) {
+            decodedLengths[i] = new LongAdder();
+        }
+    }
+
+
+    /**
+     * Applies the metrics settings and registers the MBean when enabled, replacing an earlier registration
+     */
+    public synchronized void configure(SimpleConfig config, Class<?> transformClass, SchemaCache<?> schemaCache) {
+        close();
+
+        this.schemaCache = schemaCache;
+        this.latencySampleRate = config.getInt(LATENCY_SAMPLE_RATE_CONFIG);
+        this.enabled = config.getBoolean(ENABLED_CONFIG);
+        if (!enabled) {
+            return;
+        }
+
+        final String name = config.getString(NAME_CONFIG);
+        try {
+            objectName = new ObjectName(DOMAIN + ":type=" + transformClass.getSimpleName()
+                    + (name.isEmpty() ? "" : ",name=" + ObjectName.quote(name)) + ",id=" + id);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new ConnectException("Failed to register metrics MBean " + objectName, e);
+        }
+    }
+
+    public synchronized void close() {
+        if (objectName == null) {
+            return;
+        }
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new ConnectException("Failed to unregister metrics MBean " + objectName, e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    public ObjectName objectName() {
+        return objectName;
+    }
+
+
+    /**
+     * Decides whether the latency of the current record is measured
+     */
+    public boolean sampleLatency() {
+        return enabled && (latencySampleRate == 1 || ThreadLocalRandom.current().nextInt(latencySampleRate) == 0);
+    }
+
+    public void recordLatency(long nanos) {
+        final long sample = latencySamples.getAndIncrement();
+        latencyReservoir.lazySet((int) (sample % RESERVOIR_SIZE), nanos);
+    }
+
+    public void recordApplied(boolean converted) {
+        if (enabled) {
+            processed.increment();
+            if (!converted) {
+                passedThrough.increment();
+            }
+        }
+    }
+
+    public void recordError() {
+        if (enabled) {
+            processed.increment();
+            errors.increment();
+        }
+    }
+
+    public void recordFieldNulled() {
+        if (enabled) {
+            fieldsNulled.increment();
+        }
+    }
+
+    public void recordDecodedLength(int length) {
+        if (enabled) {
+            decodedLengths[length <= 16 ? Math.max(length - 1, 0) : length <= 32 ? 16 : 17].increment();
+        }
+    }
+
+
+    @Override
+    public long getRecordsProcessed() {
+        return processed.sum();
+    }
+
+    @Override
+    public long getRecordsPassedThrough() {
+        return passedThrough.sum();
+    }
+
+    @Override
+    public long getRecordsConverted() {
+        return processed.sum() - passedThrough.sum() - errors.sum();
+    }
+
+    @Override
+    public long getConversionErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getFieldsNulled() {
+        return fieldsNulled.sum();
+    }
+
+    @Override
+    public long getSchemaCacheHits() {
+        return schemaCache == null ? 0 : schemaCache.hitCount();
+    }
+
+    @Override
+    public long getSchemaCacheMisses() {
+        return schemaCache == null ? 0 : schemaCache.missCount();
+    }
+
+    @Override
+    public long getSchemaCacheEvictions() {
+        return schemaCache == null ? 0 : schemaCache.evictionCount();
+    }
+
+    @Override
+    public long getSchemaCacheSize() {
+        return schemaCache == null ? 0 : schemaCache.size();
+    }
+
+    @Override
+    public String[] getDecodedLengthBuckets() {
+        return LENGTH_BUCKETS.clone();
+    }
+
+    @Override
+    public long[] getDecodedLengthHistogram() {
+        final long[] histogram = new long[decodedLengths.length];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = decodedLengths[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getApplyLatencySamples() {
+        return latencySamples.get();
+    }
+
+    @Override
+    public long getApplyLatencyP50Nanos() {
+        return latencyPercentile(0.50);
+    }
+
+    @Override
+    public long getApplyLatencyP99Nanos() {
+        return latencyPercentile(0.99);
+    }
+
+    @Override
+    public long getApplyLatencyP999Nanos() {
+        return latencyPercentile(0.999);
+    }
+
+    @Override
+    public long getApplyLatencyMaxNanos() {
+        return latencyPercentile(1.0);
+    }
+
+
+    private long latencyPercentile(double percentile) {
+        final int count = (int) Math.min(latencySamples.get(), RESERVOIR_SIZE);
+        if (count == 0) {
+            return 0;
+        }
+        final long[] samples = new long[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = latencyReservoir.get(i);
+        }
+        Arrays.sort(samples);
+        return samples[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+    }
+
+}
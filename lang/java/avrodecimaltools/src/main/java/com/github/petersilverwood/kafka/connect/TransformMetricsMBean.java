@@ -0,0 +1,49 @@
+package com.github.petersilverwood.kafka.connect;
+
+/**
+ * JMX view of a transform instance, see TransformMetrics
+ */
+public interface TransformMetricsMBean {
+
+    long getRecordsProcessed();
+
+    long getRecordsPassedThrough();
+
+    long getRecordsConverted();
+
+    long getConversionErrors();
+
+    /**
+     * Number of field values set to null under on.error=null, the records of which count as converted
+     */
+    long getFieldsNulled();
+
+    long getSchemaCacheHits();
+
+    long getSchemaCacheMisses();
+
+    long getSchemaCacheEvictions();
+
+    long getSchemaCacheSize();
+
+    /**
+     * Labels of the DecodedLengthHistogram buckets
+     */
+    String[] getDecodedLengthBuckets();
+
+    /**
+     * Number of decimal values decoded, by length of their unscaled bytes
+     */
+    long[] getDecodedLengthHistogram();
+
+    long getApplyLatencySamples();
+
+    long getApplyLatencyP50Nanos();
+
+    long getApplyLatencyP99Nanos();
+
+    long getApplyLatencyP999Nanos();
+
+    long getApplyLatencyMaxNanos();
+
+}
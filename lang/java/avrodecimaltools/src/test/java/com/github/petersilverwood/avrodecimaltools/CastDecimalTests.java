@@ -6,16 +6,20 @@ import org.apache.kafka.connect.data.Decimal;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.source.SourceRecord;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import org.junit.Test;
 
 public class CastDecimalTests {
@@ -93,6 +97,74 @@ public class CastDecimalTests {
 
     }
 
+    @Test
+    public void testDecodeCSharpVectorsFromByteBuffer(){
+
+        String[] hexValues = {"7048860F3AB2", "8FB779F0C54E", "FF000000000000000000000001", "00FFFFFFFFFFFFFFFFFFFFFFFF", "00"};
+        String[] expectedValues = {"12345678910.1234", "-12345678910.1234", "-79228162514264337593543950335", "79228162514264337593543950335", "0"};
+        int[] scales = {4, 4, 0, 0, 0};
+
+        for (int i = 0; i < hexValues.length; i++) {
+            ByteBuffer buffer = ByteBuffer.wrap(decodeHexString(hexValues[i]));
+
+            assertEquals(new BigDecimal(expectedValues[i]), castDecimalTransform.fromBytes(buffer, scales[i]));
+            assertEquals(0, buffer.position());
+        }
+
+    }
+
+    @Test
+    public void testDecodeByteBufferMatchesBigInteger(){
+
+        Random random = new Random(42);
+        for (int length = 1; length <= 24; length++) {
+            for (int i = 0; i < 1000; i++) {
+                byte[] bytes = new byte[length];
+                random.nextBytes(bytes);
+                int scale = random.nextInt(20);
+
+                BigDecimal expected = new BigDecimal(new BigInteger(bytes), scale);
+                assertEquals(expected, castDecimalTransform.fromBytes(ByteBuffer.wrap(bytes), scale));
+                assertEquals(expected, castDecimalTransform.fromBytes(bytes, scale));
+            }
+        }
+
+    }
+
+    @Test
+    public void testDecodeSignPaddedFixedValues(){
+
+        // fixed(16) style encodings pad small values with sign bytes:
+        long[] values = {0L, 1L, -1L, 123456789101234L, -123456789101234L, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            buffer.putLong(value < 0 ? -1L : 0L).putLong(value).flip();
+
+            assertEquals(BigDecimal.valueOf(value, 4), castDecimalTransform.fromBytes(buffer, 4));
+            assertEquals(0, buffer.position());
+        }
+
+    }
+
+    @Test
+    public void testDecodeSlicedAndDirectBuffers(){
+
+        byte[] hexBytes = decodeHexString("AAAA7048860F3AB2BBBB");
+        ByteBuffer sliced = ByteBuffer.wrap(hexBytes, 2, 6).slice();
+        assertEquals(new BigDecimal("12345678910.1234"), castDecimalTransform.fromBytes(sliced, 4));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(13);
+        direct.put(decodeHexString("FF000000000000000000000001")).flip();
+        assertEquals(new BigDecimal("-79228162514264337593543950335"), castDecimalTransform.fromBytes(direct, 0));
+        assertEquals(0, direct.position());
+
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testDecodeEmptyBuffer(){
+        castDecimalTransform.fromBytes(ByteBuffer.allocate(0), 0);
+    }
+
     @Test
     public void testEncodeCSharpMinValue(){
 
@@ -226,6 +298,337 @@ public class CastDecimalTests {
 //        assertEquals(Timestamp.SCHEMA.type(), transformedSchema.field("timestamp").schema().type());
     }
 
+    @Test
+    public void castMultipleFieldsWithSchema() {
+
+        // Configure a transform:
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.SCALE, "2");
+        props.put(CastDecimal.ConfigNames.FIELDS, "fld1:4, fld2:0, fld3");
+
+        castDecimalTransform.configure(props);
+
+        // Build a sample record schema:
+        Schema sampleSchema = SchemaBuilder.struct()
+                .field("fld1", Schema.BYTES_SCHEMA)
+                .field("fld2", Schema.BYTES_SCHEMA)
+                .field("fld3", Schema.BYTES_SCHEMA)
+                .field("other", Schema.STRING_SCHEMA)
+                .build();
+
+        Struct recordValue = new Struct(sampleSchema);
+        recordValue.put("fld1", castDecimalTransform.toByteBuffer(new BigDecimal("12345678910.1234")));
+        recordValue.put("fld2", castDecimalTransform.toByteBuffer(new BigDecimal("79228162514264337593543950335")));
+        recordValue.put("fld3", castDecimalTransform.toByteBuffer(new BigDecimal("-1.25")));
+        recordValue.put("other", "unchanged");
+
+        // Apply the transformation:
+        SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "topic", 0,
+                sampleSchema, recordValue));
+
+        Struct transformedValue = (Struct) transformed.value();
+        assertEquals(new BigDecimal("12345678910.1234"), transformedValue.get("fld1"));
+        assertEquals(new BigDecimal("79228162514264337593543950335"), transformedValue.get("fld2"));
+        assertEquals(new BigDecimal("-1.25"), transformedValue.get("fld3"));
+        assertEquals("unchanged", transformedValue.get("other"));
+
+        Schema transformedSchema = transformedValue.schema();
+        assertEquals(Decimal.schema(4), transformedSchema.field("fld1").schema());
+        assertEquals(Decimal.schema(0), transformedSchema.field("fld2").schema());
+        assertEquals(Decimal.schema(2), transformedSchema.field("fld3").schema());
+        assertEquals(Schema.STRING_SCHEMA, transformedSchema.field("other").schema());
+
+        // The output schema is built once per input schema:
+        SourceRecord transformedAgain = castDecimalTransform.apply(new SourceRecord(null, null, "topic", 0,
+                sampleSchema, recordValue));
+        assertSame(transformedSchema, transformedAgain.valueSchema());
+    }
+
+    @Test
+    public void castFieldsMatchingPattern() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.SCALE, "2");
+        props.put(CastDecimal.ConfigNames.FIELD_PATTERN, ".*_amt");
+        props.put(CastDecimal.ConfigNames.FIELDS, "fee_amt:4");
+
+        castDecimalTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct()
+                .field("net_amt", Schema.BYTES_SCHEMA)
+                .field("fee_amt", Schema.BYTES_SCHEMA)
+                .field("name_amt", Schema.STRING_SCHEMA)
+                .field("id", Schema.BYTES_SCHEMA)
+                .build();
+
+        Struct recordValue = new Struct(sampleSchema);
+        recordValue.put("net_amt", castDecimalTransform.toByteBuffer(new BigDecimal("10.50")));
+        recordValue.put("fee_amt", castDecimalTransform.toByteBuffer(new BigDecimal("0.0125")));
+        recordValue.put("name_amt", "not bytes");
+        recordValue.put("id", new byte[]{1, 2});
+
+        SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "topic", 0,
+                sampleSchema, recordValue));
+
+        Struct transformedValue = (Struct) transformed.value();
+        assertEquals(new BigDecimal("10.50"), transformedValue.get("net_amt"));
+        assertEquals(new BigDecimal("0.0125"), transformedValue.get("fee_amt"));
+        assertEquals("not bytes", transformedValue.get("name_amt"));
+        assertEquals(Schema.BYTES_SCHEMA, transformedValue.schema().field("id").schema());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testNoFieldsConfigured() {
+        castDecimalTransform.configure(Collections.singletonMap(CastDecimal.ConfigNames.SCALE, "2"));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testFieldWithoutScale() {
+        castDecimalTransform.configure(Collections.singletonMap(CastDecimal.ConfigNames.FIELDS, "fld1:4,fld2"));
+    }
+
+    @Test
+    public void castNestedPaths() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.FIELDS, "after.amount:2, after.lines.price:4, after.rates:3");
+        castDecimalTransform.configure(props);
+
+        Schema lineSchema = SchemaBuilder.struct().name("line")
+                .field("price", Schema.BYTES_SCHEMA)
+                .field("sku", Schema.STRING_SCHEMA)
+                .build();
+        Schema rowSchema = SchemaBuilder.struct().name("row").optional()
+                .field("amount", Schema.OPTIONAL_BYTES_SCHEMA)
+                .field("lines", SchemaBuilder.array(lineSchema).build())
+                .field("rates", SchemaBuilder.map(Schema.STRING_SCHEMA, Schema.BYTES_SCHEMA).build())
+                .build();
+        Schema sourceSchema = SchemaBuilder.struct().name("source").field("db", Schema.STRING_SCHEMA).build();
+        Schema envelopeSchema = SchemaBuilder.struct().name("envelope")
+                .field("before", rowSchema)
+                .field("after", rowSchema)
+                .field("source", sourceSchema)
+                .build();
+
+        Struct line = new Struct(lineSchema).put("price", castDecimalTransform.toByteBuffer(new BigDecimal("9.9900"))).put("sku", "A1");
+        Map<String, Object> rates = new HashMap<>();
+        rates.put("vat", castDecimalTransform.toByteBuffer(new BigDecimal("0.200")));
+        Struct after = new Struct(rowSchema)
+                .put("amount", castDecimalTransform.toByteBuffer(new BigDecimal("12.34")))
+                .put("lines", Collections.singletonList(line))
+                .put("rates", rates);
+        Struct source = new Struct(sourceSchema).put("db", "sales");
+        Struct envelope = new Struct(envelopeSchema).put("before", null).put("after", after).put("source", source);
+
+        SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "topic", 0,
+                envelopeSchema, envelope));
+
+        Struct transformedValue = (Struct) transformed.value();
+        Struct transformedAfter = transformedValue.getStruct("after");
+        assertEquals(new BigDecimal("12.34"), transformedAfter.get("amount"));
+        assertEquals(new BigDecimal("9.9900"), transformedAfter.<Struct>getArray("lines").get(0).get("price"));
+        assertEquals("A1", transformedAfter.<Struct>getArray("lines").get(0).get("sku"));
+        assertEquals(new BigDecimal("0.200"), transformedAfter.getMap("rates").get("vat"));
+        assertEquals(null, transformedValue.get("before"));
+
+        // Siblings off the configured paths are passed on by reference:
+        assertSame(source, transformedValue.get("source"));
+        assertSame(sourceSchema, transformedValue.schema().field("source").schema());
+
+        Schema transformedAfterSchema = transformedValue.schema().field("after").schema();
+        assertEquals(true, transformedAfterSchema.isOptional());
+        assertEquals(Decimal.builder(2).optional().build(), transformedAfterSchema.field("amount").schema());
+        assertEquals(Decimal.schema(4), transformedAfterSchema.field("lines").schema().valueSchema().field("price").schema());
+        assertEquals(Decimal.schema(3), transformedAfterSchema.field("rates").schema().valueSchema());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testOverlappingPaths() {
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.FIELDS, "after:2, after.amount:2");
+        castDecimalTransform.configure(props);
+    }
+
+    @Test
+    public void recordWithoutFieldIsPassedThrough() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.SCALE, "4");
+        props.put(CastDecimal.ConfigNames.FIELD, "fld1");
+        castDecimalTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct().field("other", Schema.STRING_SCHEMA).build();
+        SourceRecord record = new SourceRecord(null, null, "topic", 0, sampleSchema, new Struct(sampleSchema).put("other", "x"));
+
+        assertSame(record, castDecimalTransform.apply(record));
+        assertSame(record, castDecimalTransform.apply(record));
+    }
+
+    @Test
+    public void recordWithDecimalFieldIsPassedThrough() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.SCALE, "4");
+        props.put(CastDecimal.ConfigNames.FIELD, "fld1");
+        castDecimalTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct().field("fld1", Decimal.schema(4)).build();
+        SourceRecord record = new SourceRecord(null, null, "topic", 0, sampleSchema,
+                new Struct(sampleSchema).put("fld1", new BigDecimal("1.2345")));
+
+        assertSame(record, castDecimalTransform.apply(record));
+    }
+
+    @Test
+    public void rescaleToTargetScaleAndPrecision() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.FIELDS, "fld1:4");
+        props.put(CastDecimal.ConfigNames.TARGET_SCALE, "2");
+        props.put(CastDecimal.ConfigNames.TARGET_PRECISION, "6");
+        props.put(CastDecimal.ConfigNames.ROUNDING_MODE, "half_even");
+        castDecimalTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct().field("fld1", Schema.BYTES_SCHEMA).build();
+        SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "topic", 0, sampleSchema,
+                new Struct(sampleSchema).put("fld1", ByteBuffer.wrap(castDecimalTransform.toBytes(new BigDecimal("1234.5650"))))));
+
+        Schema fieldSchema = transformed.valueSchema().field("fld1").schema();
+        assertEquals("2", fieldSchema.parameters().get(Decimal.SCALE_FIELD));
+        assertEquals("6", fieldSchema.parameters().get("connect.decimal.precision"));
+        assertEquals(new BigDecimal("1234.56"), ((Struct) transformed.value()).get("fld1"));
+    }
+
+    @Test(expected = DataException.class)
+    public void valueExceedingTargetPrecisionFails() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.FIELDS, "fld1:2");
+        props.put(CastDecimal.ConfigNames.TARGET_PRECISION, "6");
+        castDecimalTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct().field("fld1", Schema.BYTES_SCHEMA).build();
+        castDecimalTransform.apply(new SourceRecord(null, null, "topic", 0, sampleSchema,
+                new Struct(sampleSchema).put("fld1", ByteBuffer.wrap(castDecimalTransform.toBytes(new BigDecimal("12345.67"))))));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void targetScaleAbovePrecision() {
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.FIELD, "fld1");
+        props.put(CastDecimal.ConfigNames.SCALE, "2");
+        props.put(CastDecimal.ConfigNames.TARGET_SCALE, "8");
+        props.put(CastDecimal.ConfigNames.TARGET_PRECISION, "6");
+        castDecimalTransform.configure(props);
+    }
+
+    @Test
+    public void outputTypes() {
+
+        Schema sampleSchema = SchemaBuilder.struct().field("fld1", Schema.OPTIONAL_BYTES_SCHEMA).build();
+        Struct sample = new Struct(sampleSchema).put("fld1", ByteBuffer.wrap(castDecimalTransform.toBytes(new BigDecimal("-12.3450"))));
+
+        String[] outputTypes = {"int64", "float64", "string"};
+        Schema.Type[] schemaTypes = {Schema.Type.INT64, Schema.Type.FLOAT64, Schema.Type.STRING};
+        Object[] values = {-123450L, -12.345, "-12.3450"};
+
+        for (int i = 0; i < outputTypes.length; i++) {
+            Map<String, String> props = new HashMap<>();
+            props.put(CastDecimal.ConfigNames.FIELDS, "fld1:4");
+            props.put(CastDecimal.ConfigNames.OUTPUT_TYPE, outputTypes[i]);
+            castDecimalTransform.configure(props);
+
+            SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "topic", 0, sampleSchema, sample));
+            Schema fieldSchema = transformed.valueSchema().field("fld1").schema();
+            assertEquals(schemaTypes[i], fieldSchema.type());
+            assertEquals(true, fieldSchema.isOptional());
+            assertEquals(values[i], ((Struct) transformed.value()).get("fld1"));
+            if (schemaTypes[i] == Schema.Type.INT64) {
+                assertEquals("4", fieldSchema.parameters().get(Decimal.SCALE_FIELD));
+            }
+        }
+    }
+
+    @Test
+    public void scaleFromHeader() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.FIELD, "fld1");
+        props.put(CastDecimal.ConfigNames.SCALE, "2");
+        props.put(CastDecimal.ConfigNames.SCALE_HEADER, "scale");
+        castDecimalTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct().field("fld1", Schema.OPTIONAL_BYTES_SCHEMA).build();
+        byte[] unscaled = BigInteger.valueOf(12345).toByteArray();
+
+        SourceRecord scale3 = new SourceRecord(null, null, "topic", 0, null, null, sampleSchema,
+                new Struct(sampleSchema).put("fld1", ByteBuffer.wrap(unscaled)), null, null);
+        scale3.headers().addInt("scale", 3);
+        SourceRecord scale1 = new SourceRecord(null, null, "topic", 0, null, null, sampleSchema,
+                new Struct(sampleSchema).put("fld1", ByteBuffer.wrap(unscaled)), null, null);
+        scale1.headers().addString("scale", "1");
+        SourceRecord noHeader = new SourceRecord(null, null, "topic", 0, sampleSchema,
+                new Struct(sampleSchema).put("fld1", ByteBuffer.wrap(unscaled)));
+
+        for (int i = 0; i < 2; i++) {
+            SourceRecord transformed = castDecimalTransform.apply(scale3);
+            assertEquals(new BigDecimal("12.345"), ((Struct) transformed.value()).get("fld1"));
+            assertEquals(Decimal.builder(3).optional().schema(), transformed.valueSchema().field("fld1").schema());
+
+            transformed = castDecimalTransform.apply(scale1);
+            assertEquals(new BigDecimal("1234.5"), ((Struct) transformed.value()).get("fld1"));
+
+            transformed = castDecimalTransform.apply(noHeader);
+            assertEquals(new BigDecimal("123.45"), ((Struct) transformed.value()).get("fld1"));
+        }
+
+        // One plan per scale, the same instance each time:
+        assertSame(castDecimalTransform.apply(scale3).valueSchema(), castDecimalTransform.apply(scale3).valueSchema());
+
+        Map<String, Object> schemaless = new HashMap<>();
+        schemaless.put("fld1", unscaled);
+        SourceRecord schemalessRecord = new SourceRecord(null, null, "topic", 0, null, null, null, schemaless, null, null);
+        schemalessRecord.headers().addInt("scale", 4);
+        assertEquals(new BigDecimal("1.2345"), ((Map<?, ?>) castDecimalTransform.apply(schemalessRecord).value()).get("fld1"));
+    }
+
+    @Test
+    public void scaleFromSchemaParameter() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.FIELDS, "fld1,fld2");
+        props.put(CastDecimal.ConfigNames.SCALE_PARAMETER, "scale");
+        props.put(CastDecimal.ConfigNames.SCALE_HEADER, "scale");
+        castDecimalTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct()
+                .field("fld1", SchemaBuilder.bytes().optional().parameter("scale", "1").build())
+                .field("fld2", Schema.OPTIONAL_BYTES_SCHEMA)
+                .build();
+        byte[] unscaled = BigInteger.valueOf(12345).toByteArray();
+        SourceRecord record = new SourceRecord(null, null, "topic", 0, null, null, sampleSchema,
+                new Struct(sampleSchema).put("fld1", ByteBuffer.wrap(unscaled)).put("fld2", ByteBuffer.wrap(unscaled)), null, null);
+        record.headers().addInt("scale", 3);
+
+        // The parameter of fld1 wins over the header, fld2 has none:
+        Struct transformed = (Struct) castDecimalTransform.apply(record).value();
+        assertEquals(new BigDecimal("1234.5"), transformed.get("fld1"));
+        assertEquals(new BigDecimal("12.345"), transformed.get("fld2"));
+    }
+
+    @Test(expected = DataException.class)
+    public void noScaleFails() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.FIELD, "fld1");
+        props.put(CastDecimal.ConfigNames.SCALE_HEADER, "scale");
+        castDecimalTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct().field("fld1", Schema.OPTIONAL_BYTES_SCHEMA).build();
+        castDecimalTransform.apply(new SourceRecord(null, null, "topic", 0, sampleSchema,
+                new Struct(sampleSchema).put("fld1", ByteBuffer.wrap(new byte[]{1}))));
+    }
+
     private final static char[] hexArray = "0123456789ABCDEF".toCharArray();
     public static String bytesToHex(byte[] bytes) {
         char[] hexChars = new char[bytes.length * 2];
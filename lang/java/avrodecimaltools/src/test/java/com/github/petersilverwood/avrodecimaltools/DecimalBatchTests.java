@@ -0,0 +1,116 @@
+package com.github.petersilverwood.avrodecimaltools;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+
+public class DecimalBatchTests {
+
+    private static final String[] VALUES = {
+            "0", "-1", "12345678910.1234", "-922337203685477.5808", "922337203685477.5807",
+            "922337203685477.5808", "-12345678901234567890123.4567", "79228162514264337593543950335.0000"
+    };
+
+    private static ByteBuffer[] encode(BigDecimal[] decimals) {
+        ByteBuffer[] buffers = new ByteBuffer[decimals.length];
+        for (int i = 0; i < decimals.length; i++) {
+            buffers[i] = ByteBuffer.wrap(decimals[i].unscaledValue().toByteArray());
+        }
+        return buffers;
+    }
+
+    private static BigDecimal[] decimals() {
+        BigDecimal[] decimals = new BigDecimal[VALUES.length];
+        for (int i = 0; i < VALUES.length; i++) {
+            decimals[i] = new BigDecimal(VALUES[i]).setScale(4);
+        }
+        return decimals;
+    }
+
+
+    @Test
+    public void decodesSeparateBuffers() {
+
+        BigDecimal[] decimals = decimals();
+        DecimalBatch batch = DecimalBatch.decode(encode(decimals), 4);
+
+        assertEquals(VALUES.length, batch.size());
+        assertEquals(3, batch.overflowCount());
+        assertEquals(0b11100000L, batch.overflow()[0]);
+        assertEquals(-9223372036854775808L, batch.unscaled(3));
+        assertEquals(0L, batch.unscaled(5));
+        assertFalse(batch.overflows(4));
+        assertTrue(batch.overflows(5));
+        assertArrayEquals(decimals, batch.toBigDecimals());
+    }
+
+    @Test
+    public void decodesContiguousBuffer() {
+
+        BigDecimal[] decimals = decimals();
+        ByteBuffer[] encoded = encode(decimals);
+
+        // Some leading bytes, so offsets are relative to the position:
+        ByteBuffer heap = ByteBuffer.allocate(200);
+        ByteBuffer direct = ByteBuffer.allocateDirect(200);
+        int[] offsets = new int[encoded.length + 1];
+        for (ByteBuffer buffer : Arrays.asList(heap, direct)) {
+            buffer.put(new byte[]{7, 7, 7});
+            for (int i = 0; i < encoded.length; i++) {
+                offsets[i + 1] = offsets[i] + encoded[i].remaining();
+                buffer.put(encoded[i].duplicate());
+            }
+            buffer.flip();
+            buffer.position(3);
+
+            DecimalBatch batch = DecimalBatch.decode(buffer, offsets, 4);
+            assertEquals(3, batch.overflowCount());
+            assertArrayEquals(decimals, batch.toBigDecimals());
+            assertEquals(3, buffer.position());
+        }
+    }
+
+    @Test
+    public void matchesBigIntegerOnRandomValues() {
+
+        Random random = new Random(11);
+        ByteBuffer[] values = new ByteBuffer[1000];
+        for (int i = 0; i < values.length; i++) {
+            byte[] bytes = new byte[1 + random.nextInt(20)];
+            random.nextBytes(bytes);
+            values[i] = ByteBuffer.wrap(bytes);
+        }
+
+        // Reused arrays, with a stale overflow bit that must be cleared:
+        long[] unscaled = new long[values.length];
+        long[] overflow = new long[DecimalBatch.bitmapLength(values.length)];
+        overflow[0] = -1L;
+        DecimalBatch.decodeUnscaled(values, unscaled, overflow);
+
+        for (int i = 0; i < values.length; i++) {
+            BigInteger expected = new BigInteger(values[i].array());
+            boolean overflows = (overflow[i >>> 6] & (1L << i)) != 0;
+            assertEquals(expected.bitLength() > 63, overflows);
+            if (!overflows) {
+                assertEquals(expected.longValue(), unscaled[i]);
+            }
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void emptyValueIsRejected() {
+        DecimalBatch.decode(new ByteBuffer[]{ByteBuffer.allocate(0)}, 2);
+    }
+
+}
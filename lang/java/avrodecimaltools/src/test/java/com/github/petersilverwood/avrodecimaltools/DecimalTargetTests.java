@@ -0,0 +1,159 @@
+package com.github.petersilverwood.avrodecimaltools;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+
+public class DecimalTargetTests {
+
+    /*
+    * The long arithmetic must agree with BigDecimal.setScale and precision(), including where either throws
+     */
+    private static void assertMatchesBigDecimal(BigDecimal value, DecimalTarget target) {
+        BigDecimal expected;
+        try {
+            expected = value.setScale(target.scale(value.scale()), target.roundingMode());
+            if (target.precision() != null && expected.precision() > target.precision()) {
+                expected = null;
+            }
+        } catch (ArithmeticException e) {
+            expected = null;
+        }
+
+        BigDecimal actual;
+        try {
+            actual = target.decode(ByteBuffer.wrap(value.unscaledValue().toByteArray()), value.scale());
+        } catch (ArithmeticException e) {
+            actual = null;
+        }
+        assertEquals(value + " with " + target.roundingMode(), expected, actual);
+    }
+
+
+    @Test
+    public void matchesBigDecimalForEveryRoundingMode() {
+
+        Random random = new Random(12);
+        for (RoundingMode mode : RoundingMode.values()) {
+            for (int i = 0; i < 5000; i++) {
+                // Mostly longs, with some wider values and the edges of the long range:
+                BigInteger unscaled = i % 50 == 0 ? BigInteger.valueOf(Long.MIN_VALUE + random.nextInt(3))
+                        : new BigInteger(1 + random.nextInt(i % 10 == 0 ? 100 : 63), random);
+                if (random.nextBoolean()) {
+                    unscaled = unscaled.negate();
+                }
+                BigDecimal value = new BigDecimal(unscaled, random.nextInt(12));
+                Integer precision = random.nextInt(4) == 0 ? null : 1 + random.nextInt(25);
+
+                assertMatchesBigDecimal(value, new DecimalTarget(random.nextInt(24), precision, mode));
+            }
+        }
+    }
+
+    @Test
+    public void roundsHalves() {
+
+        BigDecimal[] halves = {new BigDecimal("2.5"), new BigDecimal("-2.5"), new BigDecimal("3.5"), new BigDecimal("-0.05")};
+        for (RoundingMode mode : RoundingMode.values()) {
+            for (BigDecimal half : halves) {
+                assertMatchesBigDecimal(half, new DecimalTarget(0, null, mode));
+            }
+        }
+    }
+
+    @Test
+    public void checksPrecisionWithoutRescaling() {
+
+        DecimalTarget target = new DecimalTarget(null, 5, RoundingMode.UNNECESSARY);
+        assertEquals(new BigDecimal("999.99"), target.apply(99999L, 2));
+        try {
+            target.apply(100000L, 2);
+            fail("Expected the precision to be exceeded");
+        } catch (ArithmeticException expected) {
+        }
+    }
+
+    @Test
+    public void outputTypesMatchBigDecimal() {
+
+        Random random = new Random(13);
+        DecimalTarget asString = new DecimalTarget(null, null, RoundingMode.UNNECESSARY, DecimalOutputType.STRING);
+        DecimalTarget asDouble = new DecimalTarget(null, null, RoundingMode.UNNECESSARY, DecimalOutputType.FLOAT64);
+        DecimalTarget asLong = new DecimalTarget(null, null, RoundingMode.UNNECESSARY, DecimalOutputType.INT64);
+
+        for (int i = 0; i < 20000; i++) {
+            BigInteger unscaled = i % 100 == 0 ? BigInteger.valueOf(Long.MIN_VALUE)
+                    : new BigInteger(random.nextInt(i % 10 == 0 ? 90 : 64), random);
+            if (random.nextBoolean()) {
+                unscaled = unscaled.negate();
+            }
+            BigDecimal value = new BigDecimal(unscaled, random.nextInt(30) - 5);
+            ByteBuffer bytes = ByteBuffer.wrap(unscaled.toByteArray());
+
+            assertEquals(value.toPlainString(), asString.convert(bytes, value.scale()));
+            assertEquals(value.doubleValue(), (Double) asDouble.convert(bytes, value.scale()), 0.0);
+            if (unscaled.bitLength() < 64) {
+                assertEquals(unscaled.longValue(), asLong.convert(bytes, value.scale()));
+            }
+        }
+    }
+
+    @Test
+    public void lengthBounds() {
+        assertEquals(15, DecimalTarget.uncheckedLength(38));
+        assertEquals(17, DecimalTarget.rejectedLength(38));
+        assertEquals(2, DecimalTarget.uncheckedLength(5));
+        assertEquals(4, DecimalTarget.rejectedLength(5));
+    }
+
+    @Test
+    public void wideValuesJudgedOnLengthMatchBigDecimal() {
+
+        Random random = new Random(24);
+        for (int i = 0; i < 20000; i++) {
+            BigInteger unscaled = new BigInteger(100 + random.nextInt(60), random);
+            if (random.nextBoolean()) {
+                unscaled = unscaled.negate();
+            }
+            BigDecimal value = new BigDecimal(unscaled, random.nextInt(10));
+            Integer scale = i % 3 == 0 ? null : random.nextInt(12);
+            assertMatchesBigDecimal(value, new DecimalTarget(scale, 30 + random.nextInt(15), RoundingMode.HALF_UP));
+        }
+    }
+
+    @Test
+    public void signPaddedValuesAreNotRejectedOnLength() {
+        // 1.25 as fixed(20), longer than any minimal value of 38 digits:
+        byte[] padded = new byte[20];
+        padded[19] = 125;
+        assertEquals(new BigDecimal("1.25"), new DecimalTarget(null, 38, RoundingMode.UNNECESSARY).decode(padded, 2));
+
+        byte[] negative = new byte[20];
+        java.util.Arrays.fill(negative, (byte) -1);
+        negative[19] = -125;
+        assertEquals(new BigDecimal("-1.25"), new DecimalTarget(null, 38, RoundingMode.UNNECESSARY).decode(ByteBuffer.wrap(negative), 2));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void int64OutputRejectsWideValues() {
+        new DecimalTarget(null, null, RoundingMode.UNNECESSARY, DecimalOutputType.INT64)
+                .convert(BigInteger.ONE.shiftLeft(70).toByteArray(), 2);
+    }
+
+    @Test
+    public void rescaledStringOutput() {
+        DecimalTarget target = new DecimalTarget(6, null, RoundingMode.UNNECESSARY, DecimalOutputType.STRING);
+        assertEquals("-0.050000", target.convert(new byte[]{-5}, 2));
+        assertEquals("0.000000", target.convert(new byte[]{0}, 0));
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.github.petersilverwood.avrodecimaltools;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+public class DotNetDecimalCodecTests {
+
+    /*
+    * Shared with the C# tests, see lang/csharp/test/DecimalToolTests
+     */
+    private static final String VECTORS = "../../testdata/decimal-vectors.csv";
+
+    private static List<String[]> vectors() throws IOException {
+        List<String[]> vectors = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(VECTORS), StandardCharsets.UTF_8)) {
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                vectors.add(line.split(","));
+            }
+        }
+        return vectors;
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    /*
+    * decimal.GetBits() of a value, worked out with BigInteger
+     */
+    private static int[] bits(BigDecimal value) {
+        BigInteger magnitude = value.unscaledValue().abs();
+        return new int[]{
+                magnitude.intValue(),
+                magnitude.shiftRight(32).intValue(),
+                magnitude.shiftRight(64).intValue(),
+                (value.scale() << 16) | (value.signum() < 0 ? 0x80000000 : 0)
+        };
+    }
+
+
+    @Test
+    public void goldenVectors() throws IOException {
+
+        List<String[]> vectors = vectors();
+        assertTrue(vectors.size() > 20);
+
+        for (String[] vector : vectors) {
+            byte[] bytes = fromHex(vector[0]);
+            int scale = Integer.parseInt(vector[1]);
+            BigDecimal value = new BigDecimal(vector[2]);
+
+            assertEquals(vector[2], value, DotNetDecimalCodec.STRICT.decode(bytes, scale));
+            assertEquals(vector[2], vector[0], CastDecimalTests.bytesToHex(DotNetDecimalCodec.STRICT.encode(value)));
+
+            int[] bits = DotNetDecimalCodec.STRICT.decodeBits(ByteBuffer.wrap(bytes), scale);
+            assertArrayEquals(vector[2], bits(value), bits);
+            assertEquals(scale, DotNetDecimalCodec.scale(bits));
+            assertEquals(vector[2], vector[0], CastDecimalTests.bytesToHex(DotNetDecimalCodec.STRICT.encodeBits(bits)));
+        }
+    }
+
+    @Test
+    public void bitsMatchBigIntegerOnRandomValues() {
+
+        Random random = new Random(14);
+        for (int i = 0; i < 20000; i++) {
+            BigInteger unscaled = new BigInteger(1 + random.nextInt(96), random);
+            if (random.nextBoolean()) {
+                unscaled = unscaled.negate();
+            }
+            BigDecimal value = new BigDecimal(unscaled, random.nextInt(29));
+            byte[] bytes = unscaled.toByteArray();
+
+            int[] bits = DotNetDecimalCodec.STRICT.decodeBits(bytes, value.scale());
+            assertArrayEquals(bits(value), bits);
+            assertArrayEquals(bytes, DotNetDecimalCodec.STRICT.encodeBits(bits));
+            assertArrayEquals(bytes, DotNetDecimalCodec.LENIENT.encode(value));
+        }
+    }
+
+    @Test
+    public void rangeIsDecidedByLength() {
+
+        BigInteger max = BigInteger.ONE.shiftLeft(96).subtract(BigInteger.ONE);
+
+        assertTrue(DotNetDecimalCodec.isInRange(ByteBuffer.wrap(max.toByteArray())));
+        assertTrue(DotNetDecimalCodec.isInRange(ByteBuffer.wrap(max.negate().toByteArray())));
+        assertFalse(DotNetDecimalCodec.isInRange(ByteBuffer.wrap(max.add(BigInteger.ONE).toByteArray())));
+        assertFalse(DotNetDecimalCodec.isInRange(ByteBuffer.wrap(max.add(BigInteger.ONE).negate().toByteArray())));
+
+        // Sign padded, as in a fixed(16):
+        assertTrue(DotNetDecimalCodec.isInRange(ByteBuffer.wrap(fromHex("FFFFFFFF000000000000000000000001"))));
+        assertFalse(DotNetDecimalCodec.isInRange(ByteBuffer.wrap(fromHex("FFFF00FF000000000000000000000001"))));
+    }
+
+    @Test
+    public void strictRejectsOutOfRange() {
+
+        byte[] tooWide = BigInteger.ONE.shiftLeft(96).toByteArray();
+
+        assertEquals(new BigDecimal(BigInteger.ONE.shiftLeft(96)), DotNetDecimalCodec.LENIENT.decode(tooWide, 0));
+        for (Runnable outOfRange : new Runnable[]{
+                () -> DotNetDecimalCodec.STRICT.decode(tooWide, 0),
+                () -> DotNetDecimalCodec.STRICT.decode(new byte[]{1}, 29),
+                () -> DotNetDecimalCodec.LENIENT.decodeBits(tooWide, 0),
+                () -> DotNetDecimalCodec.STRICT.encode(new BigDecimal(BigInteger.ONE.shiftLeft(96))),
+                () -> DotNetDecimalCodec.STRICT.encode(new BigDecimal("1E+3"))}) {
+            try {
+                outOfRange.run();
+                fail("Expected an ArithmeticException");
+            } catch (ArithmeticException expected) {
+            }
+        }
+    }
+
+}
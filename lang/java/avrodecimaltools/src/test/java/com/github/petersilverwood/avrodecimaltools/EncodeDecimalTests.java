@@ -0,0 +1,198 @@
+package com.github.petersilverwood.avrodecimaltools;
+
+
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.source.SourceRecord;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class EncodeDecimalTests {
+
+    private final EncodeDecimal<SourceRecord> encodeDecimalTransform = new EncodeDecimal<>();
+
+
+    @Test
+    public void encodeMatchesBigInteger() {
+        Random random = new Random(21);
+        for (int i = 0; i < 20000; i++) {
+            BigInteger unscaled = new BigInteger(1 + random.nextInt(100), random);
+            if (random.nextBoolean()) {
+                unscaled = unscaled.negate();
+            }
+            BigDecimal value = new BigDecimal(unscaled, random.nextInt(20));
+            assertArrayEquals(value.toPlainString(), unscaled.toByteArray(), DecimalCodec.encode(value));
+        }
+
+        for (long edge : new long[]{0, -1, 127, 128, -128, -129, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertArrayEquals(Long.toString(edge), BigInteger.valueOf(edge).toByteArray(), DecimalCodec.encode(edge));
+        }
+    }
+
+
+    @Test
+    public void encodeIntoBuffer() {
+        byte[] buffer = new byte[16];
+        assertEquals(2, DecimalCodec.encode(-129, buffer, 3));
+        assertEquals("FF7F", CastDecimalTests.bytesToHex(new byte[]{buffer[3], buffer[4]}));
+        assertEquals(0, buffer[5]);
+    }
+
+
+    @Test
+    public void encodeFieldsWithSchema() {
+        Map<String, String> props = new HashMap<>();
+        props.put(EncodeDecimal.ConfigNames.FIELDS, "amount,after.fee");
+        encodeDecimalTransform.configure(props);
+
+        Schema afterSchema = SchemaBuilder.struct().field("fee", Decimal.builder(2).optional().build()).build();
+        Schema sampleSchema = SchemaBuilder.struct()
+                .field("amount", Decimal.schema(4))
+                .field("after", afterSchema)
+                .build();
+        Struct sample = new Struct(sampleSchema)
+                .put("amount", new BigDecimal("12345678910.1234"))
+                .put("after", new Struct(afterSchema).put("fee", null));
+
+        SourceRecord transformed = encodeDecimalTransform.apply(new SourceRecord(null, null, "test", 0, sampleSchema, sample));
+
+        Schema amountSchema = transformed.valueSchema().field("amount").schema();
+        assertEquals(Schema.Type.BYTES, amountSchema.type());
+        assertNull(amountSchema.name());
+        assertEquals("4", amountSchema.parameters().get(Decimal.SCALE_FIELD));
+        assertEquals(true, transformed.valueSchema().field("after").schema().field("fee").schema().isOptional());
+
+        Struct value = (Struct) transformed.value();
+        assertEquals("7048860F3AB2", CastDecimalTests.bytesToHex(value.getBytes("amount")));
+        assertNull(value.getStruct("after").get("fee"));
+    }
+
+
+    @Test
+    public void roundTripsThroughCastDecimal() {
+        encodeDecimalTransform.configure(Collections.singletonMap(EncodeDecimal.ConfigNames.FIELD, "amount"));
+        CastDecimal<SourceRecord> castDecimalTransform = new CastDecimal<>();
+        Map<String, String> props = new HashMap<>();
+        props.put(CastDecimal.ConfigNames.FIELD, "amount");
+        props.put(CastDecimal.ConfigNames.SCALE, "3");
+        castDecimalTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct().field("amount", Decimal.schema(3)).build();
+        for (String amount : new String[]{"0.000", "-1.250", "9223372036854775.807", "-79228162514264337593543950.335"}) {
+            Struct sample = new Struct(sampleSchema).put("amount", new BigDecimal(amount));
+            SourceRecord encoded = encodeDecimalTransform.apply(new SourceRecord(null, null, "test", 0, sampleSchema, sample));
+            SourceRecord decoded = castDecimalTransform.apply(encoded.newRecord("test", 0, null, null,
+                    encoded.valueSchema(), new Struct(encoded.valueSchema()).put("amount", ByteBuffer.wrap(((Struct) encoded.value()).getBytes("amount"))), null));
+
+            assertEquals(new BigDecimal(amount), ((Struct) decoded.value()).get("amount"));
+        }
+    }
+
+
+    @Test
+    public void rescalesBeforeEncoding() {
+        Map<String, String> props = new HashMap<>();
+        props.put(EncodeDecimal.ConfigNames.FIELD, "amount");
+        props.put(EncodeDecimal.ConfigNames.TARGET_SCALE, "2");
+        encodeDecimalTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct().field("amount", Decimal.schema(4)).build();
+        Struct sample = new Struct(sampleSchema).put("amount", new BigDecimal("1234.5650"));
+
+        SourceRecord transformed = encodeDecimalTransform.apply(new SourceRecord(null, null, "test", 0, sampleSchema, sample));
+
+        assertEquals("2", transformed.valueSchema().field("amount").schema().parameters().get(Decimal.SCALE_FIELD));
+        assertArrayEquals(BigInteger.valueOf(123457).toByteArray(), ((Struct) transformed.value()).getBytes("amount"));
+    }
+
+
+    @Test(expected = ConfigException.class)
+    public void targetScaleAbovePrecisionIsRejected() {
+        Map<String, String> props = new HashMap<>();
+        props.put(EncodeDecimal.ConfigNames.FIELD, "amount");
+        props.put(EncodeDecimal.ConfigNames.TARGET_SCALE, "6");
+        props.put(EncodeDecimal.ConfigNames.TARGET_PRECISION, "5");
+        encodeDecimalTransform.configure(props);
+    }
+
+
+    @Test(expected = DataException.class)
+    public void precisionOverflowFails() {
+        Map<String, String> props = new HashMap<>();
+        props.put(EncodeDecimal.ConfigNames.FIELD, "amount");
+        props.put(EncodeDecimal.ConfigNames.TARGET_PRECISION, "5");
+        encodeDecimalTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct().field("amount", Decimal.schema(2)).build();
+        encodeDecimalTransform.apply(new SourceRecord(null, null, "test", 0, sampleSchema,
+                new Struct(sampleSchema).put("amount", new BigDecimal("12345.67"))));
+    }
+
+
+    @Test
+    public void alignsValuesToTheSchemaScale() {
+        encodeDecimalTransform.configure(Collections.singletonMap(EncodeDecimal.ConfigNames.FIELD, "amount"));
+
+        Schema sampleSchema = SchemaBuilder.struct().field("amount", Decimal.schema(4)).build();
+        Struct sample = new Struct(sampleSchema).put("amount", new BigDecimal("1.5"));
+
+        SourceRecord transformed = encodeDecimalTransform.apply(new SourceRecord(null, null, "test", 0, sampleSchema, sample));
+
+        // 1.5000 under scale=4, not 0.0015:
+        assertEquals("4", transformed.valueSchema().field("amount").schema().parameters().get(Decimal.SCALE_FIELD));
+        assertArrayEquals(BigInteger.valueOf(15000).toByteArray(), ((Struct) transformed.value()).getBytes("amount"));
+    }
+
+
+    @Test(expected = DataException.class)
+    public void valuesThatWouldRoundFail() {
+        encodeDecimalTransform.configure(Collections.singletonMap(EncodeDecimal.ConfigNames.FIELD, "amount"));
+
+        Schema sampleSchema = SchemaBuilder.struct().field("amount", Decimal.schema(1)).build();
+        encodeDecimalTransform.apply(new SourceRecord(null, null, "test", 0, sampleSchema,
+                new Struct(sampleSchema).put("amount", new BigDecimal("1.25"))));
+    }
+
+
+    @Test(expected = DataException.class)
+    public void invalidScaleParameterFails() {
+        encodeDecimalTransform.configure(Collections.singletonMap(EncodeDecimal.ConfigNames.FIELD, "amount"));
+
+        Schema amount = SchemaBuilder.bytes().name(Decimal.LOGICAL_NAME).parameter(Decimal.SCALE_FIELD, "two").build();
+        Schema sampleSchema = SchemaBuilder.struct().field("amount", amount).build();
+        encodeDecimalTransform.apply(new SourceRecord(null, null, "test", 0, sampleSchema,
+                new Struct(sampleSchema).put("amount", new BigDecimal("1.25"))));
+    }
+
+
+    @Test
+    public void encodeSchemaless() {
+        encodeDecimalTransform.configure(Collections.singletonMap(EncodeDecimal.ConfigNames.FIELD, "amount"));
+
+        Map<String, Object> sample = new HashMap<>();
+        sample.put("amount", new BigDecimal("-1.25"));
+        sample.put("other", "x");
+
+        SourceRecord transformed = encodeDecimalTransform.apply(new SourceRecord(null, null, "test", 0, null, sample));
+
+        assertArrayEquals(new byte[]{(byte) 0x83}, (byte[]) ((Map<?, ?>) transformed.value()).get("amount"));
+        assertEquals("x", ((Map<?, ?>) transformed.value()).get("other"));
+    }
+
+}
@@ -0,0 +1,231 @@
+package com.github.petersilverwood.kafka.connect;
+
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.github.petersilverwood.avrodecimaltools.CastDecimal;
+import com.github.petersilverwood.avrodecimaltools.EncodeDecimal;
+import org.apache.kafka.connect.data.*;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+
+/**
+ * Bytes allocated per apply() on the hot path, for representative record shapes, against the budgets in
+ * allocation-budgets.properties.
+ *
+ * Each shape is applied until the JIT has compiled it, then measured over many applies with
+ * com.sun.management.ThreadMXBean#getThreadAllocatedBytes. The budgets leave some headroom over the measured
+ * values, enough for JIT differences but not for one more object per field. Run with -Dallocation.budgets.report
+ * to print the measured values when a change moves them on purpose. The tests are skipped on JVMs that cannot
+ * measure thread allocations.
+ */
+public class AllocationBudgetTests {
+
+    private static final int WARMUP_APPLIES = 50_000;
+    private static final int MEASURED_APPLIES = 20_000;
+
+    private static com.sun.management.ThreadMXBean threadBean;
+    private static Properties budgets;
+
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        budgets = new Properties();
+        try (InputStream in = AllocationBudgetTests.class.getResourceAsStream("allocation-budgets.properties")) {
+            assertNotNull("allocation-budgets.properties is missing", in);
+            budgets.load(in);
+        }
+    }
+
+
+    /*
+    * Six decimal fields among 20, as most of our topics look
+     */
+    private static final Schema WIDE = wideSchema();
+
+    private static Schema wideSchema() {
+        final SchemaBuilder builder = SchemaBuilder.struct().name("budget.Wide");
+        for (int i = 0; i < 6; i++) {
+            builder.field("dec" + i, Schema.BYTES_SCHEMA);
+        }
+        builder.field("ts", Schema.OPTIONAL_INT64_SCHEMA);
+        for (int i = 7; i < 20; i++) {
+            builder.field("col" + i, Schema.OPTIONAL_STRING_SCHEMA);
+        }
+        return builder.build();
+    }
+
+    private static SourceRecord wideRecord() {
+        final Struct value = new Struct(WIDE);
+        for (int i = 0; i < 6; i++) {
+            value.put("dec" + i, ByteBuffer.wrap(BigInteger.valueOf(123456789L * (i + 1)).toByteArray()));
+        }
+        value.put("ts", 1546300800000L);
+        for (int i = 7; i < 20; i++) {
+            value.put("col" + i, "value-" + i);
+        }
+        return new SourceRecord(null, null, "budget", 0, WIDE, value);
+    }
+
+
+    @Test
+    public void castDecimalFlat() {
+        final Map<String, Object> props = new HashMap<>();
+        props.put("fields", "dec0:4,dec1:4,dec2:4,dec3:4,dec4:4,dec5:4");
+        assertWithinBudget("cast.decimal.flat", new CastDecimal<>(), props, wideRecord());
+    }
+
+    @Test
+    public void castDecimalRescaled() {
+        final Map<String, Object> props = new HashMap<>();
+        props.put("fields", "dec0:4,dec1:4,dec2:4,dec3:4,dec4:4,dec5:4");
+        props.put("target.scale", "2");
+        props.put("target.precision", "18");
+        assertWithinBudget("cast.decimal.rescaled", new CastDecimal<>(), props, wideRecord());
+    }
+
+    @Test
+    public void castDecimalInt64() {
+        final Map<String, Object> props = new HashMap<>();
+        props.put("fields", "dec0:4,dec1:4,dec2:4,dec3:4,dec4:4,dec5:4");
+        props.put("output.type", "int64");
+        assertWithinBudget("cast.decimal.int64", new CastDecimal<>(), props, wideRecord());
+    }
+
+    @Test
+    public void castDecimalNested() {
+        final Schema after = SchemaBuilder.struct().name("budget.After")
+                .field("amount", Schema.BYTES_SCHEMA)
+                .field("note", Schema.OPTIONAL_STRING_SCHEMA)
+                .build();
+        final Schema envelope = SchemaBuilder.struct().name("budget.Envelope")
+                .field("op", Schema.STRING_SCHEMA)
+                .field("after", after)
+                .build();
+        final Struct value = new Struct(envelope).put("op", "c")
+                .put("after", new Struct(after).put("amount", ByteBuffer.wrap(new byte[]{0x30, 0x39})).put("note", "n"));
+
+        final Map<String, Object> props = new HashMap<>();
+        props.put("fields", "after.amount:2");
+        assertWithinBudget("cast.decimal.nested", new CastDecimal<>(), props,
+                new SourceRecord(null, null, "budget", 0, envelope, value));
+    }
+
+    @Test
+    public void castDecimalSchemaless() {
+        final Map<String, Object> value = new HashMap<>();
+        value.put("amount", new byte[]{0x30, 0x39});
+        value.put("note", "n");
+
+        final Map<String, Object> props = new HashMap<>();
+        props.put("fields", "amount:2");
+        assertWithinBudget("cast.decimal.schemaless", new CastDecimal<>(), props,
+                new SourceRecord(null, null, "budget", 0, null, value));
+    }
+
+    @Test
+    public void timestampMillis() {
+        final Map<String, Object> props = new HashMap<>();
+        props.put("field", "ts");
+        assertWithinBudget("timestamp.millis", new NullableTimestampTransform<>(), props, wideRecord());
+    }
+
+    @Test
+    public void timestampString() {
+        final Schema schema = SchemaBuilder.struct().name("budget.Event")
+                .field("id", Schema.INT64_SCHEMA)
+                .field("at", Schema.OPTIONAL_STRING_SCHEMA)
+                .build();
+        final Struct value = new Struct(schema).put("id", 1L).put("at", "2020-03-01T12:34:56.789Z");
+
+        final Map<String, Object> props = new HashMap<>();
+        props.put("field", "at");
+        props.put("unit", "string");
+        assertWithinBudget("timestamp.string", new NullableTimestampTransform<>(), props,
+                new SourceRecord(null, null, "budget", 0, schema, value));
+    }
+
+    @Test
+    public void encodeDecimal() {
+        final Schema schema = SchemaBuilder.struct().name("budget.Sink")
+                .field("id", Schema.INT64_SCHEMA)
+                .field("amount", Decimal.schema(4))
+                .field("fee", Decimal.builder(2).optional().build())
+                .build();
+        final Struct value = new Struct(schema).put("id", 1L)
+                .put("amount", new BigDecimal("12345678.9012")).put("fee", new BigDecimal("1.25"));
+
+        final Map<String, Object> props = new HashMap<>();
+        props.put("fields", "amount,fee");
+        assertWithinBudget("encode.decimal", new EncodeDecimal<>(), props,
+                new SourceRecord(null, null, "budget", 0, schema, value));
+    }
+
+    @Test
+    public void passThrough() {
+        final Map<String, Object> props = new HashMap<>();
+        props.put("fields", "missing:4");
+        assertWithinBudget("pass.through", new CastDecimal<>(), props, wideRecord());
+    }
+
+
+    private static void assertWithinBudget(String shape, Transformation<SourceRecord> transform, Map<String, Object> props,
+                                           SourceRecord record) {
+        transform.configure(props);
+        try {
+            for (int i = 0; i < WARMUP_APPLIES; i++) {
+                consume(transform.apply(record));
+            }
+
+            final long thread = Thread.currentThread().getId();
+            final long before = threadBean.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < MEASURED_APPLIES; i++) {
+                consume(transform.apply(record));
+            }
+            final long perApply = (threadBean.getThreadAllocatedBytes(thread) - before) / MEASURED_APPLIES;
+
+            if (Boolean.getBoolean("allocation.budgets.report")) {
+                System.out.printf(Locale.ROOT, "%s=%d%n", shape, perApply);
+            }
+            final String budget = budgets.getProperty(shape);
+            assertNotNull("No budget for " + shape, budget);
+            assertTrue(shape + " allocates " + perApply + " bytes per apply, over its budget of " + budget,
+                    perApply <= Long.parseLong(budget.trim()));
+        } finally {
+            transform.close();
+        }
+    }
+
+
+    private static int sink;
+
+    /*
+    * Keeps the output alive, so the JIT cannot drop the work behind it
+     */
+    private static void consume(SourceRecord record) {
+        sink += System.identityHashCode(record.value()) & 1;
+    }
+
+}
@@ -0,0 +1,211 @@
+package com.github.petersilverwood.kafka.connect;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.data.*;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class CastFieldsTests {
+
+    private final CastFields<SourceRecord> castFieldsTransform = new CastFields<>();
+
+    @Test(expected = ConfigException.class)
+    public void testNoFieldsConfigured() {
+        castFieldsTransform.configure(Collections.emptyMap());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testSameFieldConfiguredTwice() {
+        Map<String, String> props = new HashMap<>();
+        props.put(CastFields.ConfigNames.DECIMAL_FIELDS, "fld1:2");
+        props.put(CastFields.ConfigNames.TIMESTAMP_FIELDS, "fld1");
+        castFieldsTransform.configure(props);
+    }
+
+    @Test
+    public void castDecimalsAndTimestampsInOnePass() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastFields.ConfigNames.DECIMAL_FIELDS, "amount:2, after.fee");
+        props.put(CastFields.ConfigNames.DECIMAL_SCALE, "4");
+        props.put(CastFields.ConfigNames.TIMESTAMP_FIELDS, "created, after.updated");
+        castFieldsTransform.configure(props);
+
+        Schema afterSchema = SchemaBuilder.struct()
+                .field("fee", Schema.BYTES_SCHEMA)
+                .field("updated", Schema.OPTIONAL_INT64_SCHEMA)
+                .build();
+        Schema sampleSchema = SchemaBuilder.struct()
+                .field("amount", Schema.BYTES_SCHEMA)
+                .field("created", Schema.OPTIONAL_INT64_SCHEMA)
+                .field("after", afterSchema)
+                .field("name", Schema.STRING_SCHEMA)
+                .build();
+
+        Struct after = new Struct(afterSchema)
+                .put("fee", ByteBuffer.wrap(new BigDecimal("0.0125").unscaledValue().toByteArray()))
+                .put("updated", null);
+        Struct recordValue = new Struct(sampleSchema)
+                .put("amount", ByteBuffer.wrap(new BigDecimal("12.34").unscaledValue().toByteArray()))
+                .put("created", 1000L)
+                .put("after", after)
+                .put("name", "sample");
+
+        SourceRecord transformed = castFieldsTransform.apply(new SourceRecord(null, null, "topic", 0,
+                sampleSchema, recordValue));
+
+        Struct transformedValue = (Struct) transformed.value();
+        assertEquals(new BigDecimal("12.34"), transformedValue.get("amount"));
+        assertEquals(new java.util.Date(1000L), transformedValue.get("created"));
+        assertEquals(new BigDecimal("0.0125"), transformedValue.getStruct("after").get("fee"));
+        assertEquals(null, transformedValue.getStruct("after").get("updated"));
+        assertEquals("sample", transformedValue.get("name"));
+
+        Schema transformedSchema = transformedValue.schema();
+        assertEquals(Decimal.schema(2), transformedSchema.field("amount").schema());
+        assertEquals(Timestamp.builder().optional().schema(), transformedSchema.field("created").schema());
+        assertEquals(Decimal.schema(4), transformedSchema.field("after").schema().field("fee").schema());
+        assertEquals(Timestamp.builder().optional().schema(), transformedSchema.field("after").schema().field("updated").schema());
+
+        SourceRecord transformedAgain = castFieldsTransform.apply(new SourceRecord(null, null, "topic", 0,
+                sampleSchema, recordValue));
+        assertSame(transformedSchema, transformedAgain.valueSchema());
+    }
+
+    @Test
+    public void sharedCopyModeGivesTheSameRecord() {
+
+        Schema afterSchema = SchemaBuilder.struct()
+                .field("fee", Schema.BYTES_SCHEMA)
+                .field("note", Schema.OPTIONAL_STRING_SCHEMA)
+                .build();
+        Schema sampleSchema = SchemaBuilder.struct()
+                .field("amount", Schema.BYTES_SCHEMA)
+                .field("after", afterSchema)
+                .field("name", Schema.STRING_SCHEMA)
+                .build();
+        Struct recordValue = new Struct(sampleSchema)
+                .put("amount", ByteBuffer.wrap(new BigDecimal("12.34").unscaledValue().toByteArray()))
+                .put("after", new Struct(afterSchema).put("fee", ByteBuffer.wrap(new byte[]{5})).put("note", "n"))
+                .put("name", "sample");
+
+        Struct[] transformed = new Struct[2];
+        String[] modes = {"validated", "shared"};
+        for (int i = 0; i < modes.length; i++) {
+            Map<String, String> props = new HashMap<>();
+            props.put(CastFields.ConfigNames.DECIMAL_FIELDS, "amount:2, after.fee:1");
+            props.put(StructPlan.COPY_MODE_CONFIG, modes[i]);
+            castFieldsTransform.configure(props);
+
+            transformed[i] = (Struct) castFieldsTransform.apply(new SourceRecord(null, null, "topic", 0,
+                    sampleSchema, recordValue)).value();
+            transformed[i].validate();
+        }
+
+        assertEquals(transformed[0], transformed[1]);
+        assertEquals(new BigDecimal("0.5"), transformed[1].getStruct("after").get("fee"));
+        assertEquals(ByteBuffer.wrap(new byte[]{5}), recordValue.getStruct("after").get("fee"));
+    }
+
+    @Test
+    public void castSchemalessValues() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastFields.ConfigNames.DECIMAL_FIELDS, "amount:2, after.fee:4, lines.price:2");
+        props.put(CastFields.ConfigNames.TIMESTAMP_FIELDS, "created");
+        castFieldsTransform.configure(props);
+
+        Map<String, Object> after = new HashMap<>();
+        after.put("fee", new BigDecimal("0.0125").unscaledValue().toByteArray());
+        Map<String, Object> line = new HashMap<>();
+        line.put("price", Base64.getEncoder().encodeToString(new BigDecimal("9.99").unscaledValue().toByteArray()));
+        Map<String, Object> other = new HashMap<>();
+
+        Map<String, Object> value = new HashMap<>();
+        value.put("amount", ByteBuffer.wrap(new BigDecimal("12.34").unscaledValue().toByteArray()));
+        value.put("created", 1000L);
+        value.put("after", after);
+        value.put("lines", Collections.singletonList(line));
+        value.put("other", other);
+        Map<String, Object> original = new HashMap<>(value);
+
+        SourceRecord transformed = castFieldsTransform.apply(new SourceRecord(null, null, "topic", 0, null, value));
+
+        Map<?, ?> transformedValue = (Map<?, ?>) transformed.value();
+        assertEquals(null, transformed.valueSchema());
+        assertEquals(new BigDecimal("12.34"), transformedValue.get("amount"));
+        assertEquals(new java.util.Date(1000L), transformedValue.get("created"));
+        assertEquals(new BigDecimal("0.0125"), ((Map<?, ?>) transformedValue.get("after")).get("fee"));
+        assertEquals(new BigDecimal("9.99"), ((Map<?, ?>) ((List<?>) transformedValue.get("lines")).get(0)).get("price"));
+        assertSame(other, transformedValue.get("other"));
+
+        // The record's own value is left alone:
+        assertEquals(original, value);
+        assertEquals(1, after.size());
+        assertEquals(true, after.get("fee") instanceof byte[]);
+    }
+
+    @Test
+    public void castNamedNumbersToTimestamps() {
+
+        castFieldsTransform.configure(Collections.singletonMap(CastFields.ConfigNames.TIMESTAMP_FIELDS, "ts"));
+
+        Schema debeziumTimestamp = SchemaBuilder.int64().name("io.debezium.time.Timestamp").build();
+        Schema schema = SchemaBuilder.struct().field("ts", debeziumTimestamp).build();
+
+        SourceRecord transformed = castFieldsTransform.apply(new SourceRecord(null, null, "topic", 0, schema,
+                new Struct(schema).put("ts", 1500000000000L)));
+
+        assertEquals(Timestamp.builder().optional().schema(), transformed.valueSchema().field("ts").schema());
+        assertEquals(new java.util.Date(1500000000000L), ((Struct) transformed.value()).get("ts"));
+    }
+
+    @Test
+    public void schemalessTextThatIsNotBase64IsPassedThrough() {
+
+        castFieldsTransform.configure(Collections.singletonMap(CastFields.ConfigNames.DECIMAL_FIELDS, "price:2"));
+
+        SourceRecord record = new SourceRecord(null, null, "topic", 0, null, Collections.singletonMap("price", "12.34"));
+        assertSame(record, castFieldsTransform.apply(record));
+    }
+
+    @Test
+    public void schemalessValueWithoutFieldsIsPassedThrough() {
+
+        castFieldsTransform.configure(Collections.singletonMap(CastFields.ConfigNames.TIMESTAMP_FIELDS, "created"));
+
+        SourceRecord record = new SourceRecord(null, null, "topic", 0, null, Collections.singletonMap("other", 1L));
+        assertSame(record, castFieldsTransform.apply(record));
+    }
+
+    @Test
+    public void castSchemalessValuesMatchingPattern() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastFields.ConfigNames.DECIMAL_FIELD_PATTERN, ".*_amt");
+        props.put(CastFields.ConfigNames.DECIMAL_SCALE, "2");
+        castFieldsTransform.configure(props);
+
+        Map<String, Object> value = new HashMap<>();
+        value.put("net_amt", new BigDecimal("10.50").unscaledValue().toByteArray());
+        value.put("name_amt", "text");
+
+        Map<?, ?> transformedValue = (Map<?, ?>) castFieldsTransform.apply(new SourceRecord(null, null, "topic", 0, null, value)).value();
+        assertEquals(new BigDecimal("10.50"), transformedValue.get("net_amt"));
+        assertEquals("text", transformedValue.get("name_amt"));
+    }
+
+}
@@ -0,0 +1,192 @@
+package com.github.petersilverwood.kafka.connect;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.github.petersilverwood.avrodecimaltools.CastDecimal;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.data.*;
+import org.apache.kafka.connect.json.JsonConverter;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class CastingJsonConverterTests {
+
+    private static final Schema AFTER = SchemaBuilder.struct().name("sample.After")
+            .field("fee", Schema.OPTIONAL_BYTES_SCHEMA)
+            .field("note", Schema.OPTIONAL_STRING_SCHEMA)
+            .optional()
+            .build();
+
+    private static final Schema SAMPLE = SchemaBuilder.struct().name("sample.Value")
+            .field("amount", Schema.BYTES_SCHEMA)
+            .field("created", Schema.OPTIONAL_INT64_SCHEMA)
+            .field("day", Date.builder().optional().build())
+            .field("tags", SchemaBuilder.array(Schema.STRING_SCHEMA).optional().build())
+            .field("after", AFTER)
+            .build();
+
+    private final CastingJsonConverter converter = new CastingJsonConverter();
+    private final CastFields<SourceRecord> transform = new CastFields<>();
+
+    @After
+    public void close() {
+        converter.close();
+        transform.close();
+    }
+
+
+    /*
+    * Stand-in for the producing side: the record as the JsonConverter writes it
+     */
+    private static byte[] serialize(Schema schema, Object value, boolean schemasEnabled) {
+        final JsonConverter json = new JsonConverter();
+        json.configure(Collections.singletonMap("schemas.enable", String.valueOf(schemasEnabled)), false);
+        return json.fromConnectData("topic", schema, value);
+    }
+
+    private static Struct sample() {
+        return new Struct(SAMPLE)
+                .put("amount", ByteBuffer.wrap(BigInteger.valueOf(1234).toByteArray()))
+                .put("created", 1000L)
+                .put("day", new java.util.Date(86400000L))
+                .put("tags", Arrays.asList("a", "b"))
+                .put("after", new Struct(AFTER).put("fee", ByteBuffer.wrap(BigInteger.valueOf(-5).toByteArray())).put("note", "n"));
+    }
+
+    private static Map<String, String> castProps() {
+        Map<String, String> props = new HashMap<>();
+        props.put(CastFields.ConfigNames.DECIMAL_FIELDS, "amount:2,after.fee:2");
+        props.put(CastFields.ConfigNames.TIMESTAMP_FIELDS, "created");
+        return props;
+    }
+
+
+    @Test
+    public void castsWhileReading() {
+        converter.configure(castProps(), false);
+
+        SchemaAndValue read = converter.toConnectData("topic", serialize(SAMPLE, sample(), true));
+
+        Struct value = (Struct) read.value();
+        assertEquals(Decimal.builder(2).schema(), read.schema().field("amount").schema());
+        assertEquals(new BigDecimal("12.34"), value.get("amount"));
+        assertEquals(new java.util.Date(1000L), value.get("created"));
+        assertEquals(new java.util.Date(86400000L), value.get("day"));
+        assertEquals(Arrays.asList("a", "b"), value.get("tags"));
+        assertEquals(new BigDecimal("-0.05"), value.getStruct("after").get("fee"));
+        assertEquals("n", value.getStruct("after").get("note"));
+    }
+
+    @Test
+    public void readsAsTheJsonConverterAndTransformDo() {
+        Map<String, String> props = castProps();
+        converter.configure(props, false);
+        transform.configure(props);
+
+        JsonConverter json = new JsonConverter();
+        json.configure(Collections.singletonMap("schemas.enable", "true"), false);
+        byte[] serialized = serialize(SAMPLE, sample(), true);
+        SchemaAndValue data = json.toConnectData("topic", serialized);
+        SourceRecord expected = transform.apply(new SourceRecord(null, null, "topic", 0, data.schema(), data.value()));
+
+        SchemaAndValue read = converter.toConnectData("topic", serialized);
+        assertEquals(expected.valueSchema(), read.schema());
+        assertEquals(expected.value(), read.value());
+    }
+
+    @Test
+    public void schemasAreCachedAcrossRecords() {
+        converter.configure(castProps(), false);
+
+        byte[] serialized = serialize(SAMPLE, sample(), true);
+        SchemaAndValue first = converter.toConnectData("topic", serialized);
+        SchemaAndValue second = converter.toConnectData("topic", serialized);
+
+        assertEquals(first.value(), second.value());
+        assertEquals(1, converter.metrics().getSchemaCacheMisses());
+        assertEquals(1, converter.metrics().getSchemaCacheHits());
+        assertEquals(2, converter.metrics().getRecordsConverted());
+    }
+
+    @Test
+    public void wrapsOtherTransforms() {
+        Map<String, String> props = new HashMap<>();
+        props.put(CastingJsonConverter.TRANSFORM_CONFIG, CastDecimal.class.getName());
+        props.put("field", "amount");
+        props.put("scale", "1");
+        converter.configure(props, true);
+
+        SchemaAndValue read = converter.toConnectData("topic", serialize(SAMPLE, sample(), true));
+        assertEquals(new BigDecimal("123.4"), ((Struct) read.value()).get("amount"));
+    }
+
+    @Test
+    public void castsSchemalessJson() {
+        Map<String, String> props = castProps();
+        props.put("schemas.enable", "false");
+        converter.configure(props, false);
+
+        byte[] serialized = "{\"amount\": \"BNI=\", \"other\": \"12.34\"}".getBytes(StandardCharsets.UTF_8);
+        Map<?, ?> read = (Map<?, ?>) converter.toConnectData("topic", serialized).value();
+        assertEquals(new BigDecimal("12.34"), read.get("amount"));
+        assertEquals("12.34", read.get("other"));
+    }
+
+    @Test
+    public void dataWithoutCastsIsReadAsItIs() {
+        converter.configure(castProps(), false);
+
+        Schema other = SchemaBuilder.struct().field("name", Schema.STRING_SCHEMA).build();
+        SchemaAndValue read = converter.toConnectData("topic", serialize(other, new Struct(other).put("name", "x"), true));
+        assertEquals("x", ((Struct) read.value()).get("name"));
+        assertEquals(Schema.STRING_SCHEMA, read.schema().field("name").schema());
+
+        assertEquals(SchemaAndValue.NULL, converter.toConnectData("topic", null));
+    }
+
+    @Test
+    public void failuresArePassedThroughUncast() {
+        Map<String, String> props = castProps();
+        props.put(CastFields.ConfigNames.DECIMAL_TARGET_PRECISION, "3");
+        props.put(ErrorPolicy.CONFIG, "passthrough");
+        converter.configure(props, false);
+
+        SchemaAndValue read = converter.toConnectData("topic", serialize(SAMPLE, sample(), true));
+        assertEquals(Schema.BYTES_SCHEMA, read.schema().field("amount").schema());
+        assertEquals(ByteBuffer.wrap(BigInteger.valueOf(1234).toByteArray()), ByteBuffer.wrap(((Struct) read.value()).getBytes("amount")));
+        assertEquals(1, converter.metrics().getConversionErrors());
+    }
+
+    @Test
+    public void failingFieldsAreNulled() {
+        Map<String, String> props = castProps();
+        props.put(CastFields.ConfigNames.DECIMAL_TARGET_PRECISION, "3");
+        props.put(ErrorPolicy.CONFIG, "null");
+        converter.configure(props, false);
+
+        Struct read = (Struct) converter.toConnectData("topic", serialize(SAMPLE, sample(), true)).value();
+        assertNull(read.get("amount"));
+        assertEquals(new BigDecimal("-0.05"), read.getStruct("after").get("fee"));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void taggingIsRejected() {
+        Map<String, String> props = castProps();
+        props.put(ErrorPolicy.CONFIG, "tag");
+        converter.configure(props, false);
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.github.petersilverwood.kafka.connect;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.github.petersilverwood.avrodecimaltools.CastDecimal;
+import org.apache.kafka.connect.data.*;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class ErrorPolicyTests {
+
+    private static final Schema SAMPLE = SchemaBuilder.struct()
+            .field("amount", Schema.BYTES_SCHEMA)
+            .field("fee", Schema.BYTES_SCHEMA)
+            .build();
+
+    private final CastDecimal<SourceRecord> castDecimalTransform = new CastDecimal<>();
+
+
+    private void configure(String onError, String precision) {
+        Map<String, String> props = new HashMap<>();
+        props.put("fields", "amount:2,fee:2");
+        props.put("target.precision", precision);
+        props.put(ErrorPolicy.CONFIG, onError);
+        castDecimalTransform.configure(props);
+    }
+
+    /*
+    * A fee of 20 bytes, far more digits than a precision of 10
+     */
+    private static SourceRecord sample() {
+        byte[] wide = new byte[20];
+        wide[0] = 0x40;
+        Struct value = new Struct(SAMPLE)
+                .put("amount", ByteBuffer.wrap(new byte[]{0x30, 0x39}))
+                .put("fee", ByteBuffer.wrap(wide));
+        return new SourceRecord(null, null, "test", 0, SAMPLE, value);
+    }
+
+
+    @Test(expected = DataException.class)
+    public void failByDefault() {
+        configure("fail", "10");
+        castDecimalTransform.apply(sample());
+    }
+
+    @Test
+    public void nullTheField() {
+        configure("null", "10");
+        SourceRecord transformed = castDecimalTransform.apply(sample());
+
+        assertEquals(new BigDecimal("123.45"), ((Struct) transformed.value()).get("amount"));
+        assertNull(((Struct) transformed.value()).get("fee"));
+        assertTrue(transformed.valueSchema().field("fee").schema().isOptional());
+        assertEquals(Decimal.LOGICAL_NAME, transformed.valueSchema().field("fee").schema().name());
+    }
+
+    @Test
+    public void nullFieldsOfTheWrongType() {
+        configure("null", "10");
+        Schema schema = SchemaBuilder.struct().field("amount", Schema.BYTES_SCHEMA).field("fee", Schema.INT32_SCHEMA).build();
+        SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "test", 0, schema,
+                new Struct(schema).put("amount", ByteBuffer.wrap(new byte[]{0x30, 0x39})).put("fee", 7)));
+
+        assertEquals(new BigDecimal("123.45"), ((Struct) transformed.value()).get("amount"));
+        assertNull(((Struct) transformed.value()).get("fee"));
+        assertEquals(Schema.OPTIONAL_INT32_SCHEMA, transformed.valueSchema().field("fee").schema());
+    }
+
+    @Test
+    public void nullSchemalessValues() {
+        configure("null", "10");
+        Map<String, Object> value = new HashMap<>();
+        value.put("amount", new byte[]{0x30, 0x39});
+        byte[] wide = new byte[20];
+        wide[0] = 0x40;
+        value.put("fee", wide);
+
+        SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "test", 0, null, value));
+        assertEquals(new BigDecimal("123.45"), ((Map<?, ?>) transformed.value()).get("amount"));
+        assertNull(((Map<?, ?>) transformed.value()).get("fee"));
+    }
+
+    @Test
+    public void passTheRecordThrough() {
+        configure("passthrough", "10");
+        SourceRecord record = sample();
+        assertSame(record, castDecimalTransform.apply(record));
+    }
+
+    @Test
+    public void schemasThatCannotBePlannedAreCached() {
+        configure("passthrough", "10");
+        Schema schema = SchemaBuilder.struct().field("amount", Schema.STRING_SCHEMA).field("fee", Schema.BYTES_SCHEMA).build();
+        for (int i = 0; i < 5; i++) {
+            SourceRecord record = new SourceRecord(null, null, "test", 0, schema,
+                    new Struct(schema).put("amount", "12.34").put("fee", ByteBuffer.wrap(new byte[]{0x01})));
+            assertSame(record, castDecimalTransform.apply(record));
+        }
+
+        TransformMetrics metrics = castDecimalTransform.metrics();
+        assertEquals(1, metrics.getSchemaCacheMisses());
+        assertEquals(4, metrics.getSchemaCacheHits());
+        assertEquals(1, metrics.getSchemaCacheSize());
+        assertEquals(5, metrics.getRecordsProcessed());
+        assertEquals(5, metrics.getConversionErrors());
+    }
+
+    @Test
+    public void tagTheRecord() {
+        configure("tag", "10");
+        SourceRecord record = sample();
+        SourceRecord transformed = castDecimalTransform.apply(record);
+
+        assertSame(record.value(), transformed.value());
+        assertSame(record.valueSchema(), transformed.valueSchema());
+        Header header = transformed.headers().lastWithName(ErrorPolicy.DEFAULT_HEADER);
+        assertTrue(String.valueOf(header.value()), ((String) header.value()).contains("fee"));
+        assertNull(record.headers().lastWithName(ErrorPolicy.DEFAULT_HEADER));
+    }
+
+    @Test
+    public void correctRecordsAreUntouchedByThePolicy() {
+        configure("tag", "60");
+        SourceRecord transformed = castDecimalTransform.apply(sample());
+        assertNull(transformed.headers().lastWithName(ErrorPolicy.DEFAULT_HEADER));
+        assertEquals(new BigDecimal("123.45"), ((Struct) transformed.value()).get("amount"));
+    }
+
+}
@@ -2,9 +2,11 @@ package com.github.petersilverwood.kafka.connect;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.data.*;
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.junit.Test;
 
@@ -51,6 +53,114 @@ public class NullableTimestampTransformTests {
 
 
 
+    @Test
+    public void recordWithoutFieldIsPassedThrough() {
+
+        castNullableTimetampTransform.configure(Collections.singletonMap(NullableTimestampTransform.ConfigNames.FIELD, "fld1"));
+
+        Schema sampleSchema = SchemaBuilder.struct().field("other", Schema.OPTIONAL_INT64_SCHEMA).build();
+        SourceRecord record = new SourceRecord(null, null, "topic", 0, sampleSchema, new Struct(sampleSchema).put("other", 1L));
+
+        assertSame(record, castNullableTimetampTransform.apply(record));
+    }
+
+    @Test
+    public void recordWithTimestampFieldIsPassedThrough() {
+
+        castNullableTimetampTransform.configure(Collections.singletonMap(NullableTimestampTransform.ConfigNames.FIELD, "fld1"));
+
+        Schema sampleSchema = SchemaBuilder.struct().field("fld1", Timestamp.builder().optional().build()).build();
+        SourceRecord record = new SourceRecord(null, null, "topic", 0, sampleSchema,
+                new Struct(sampleSchema).put("fld1", new java.util.Date(0L)));
+
+        assertSame(record, castNullableTimetampTransform.apply(record));
+    }
+
+
+
+    @Test(expected = ConfigException.class)
+    public void testNoFieldConfigured() {
+        castNullableTimetampTransform.configure(Collections.<String, String>emptyMap());
+    }
+
+    @Test
+    public void castSeveralFieldsWithUnitsAndTypes() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(NullableTimestampTransform.ConfigNames.FIELD, "millis");
+        props.put(NullableTimestampTransform.ConfigNames.FIELDS,
+                "seconds:seconds,micros:micros,nanos:nanos,text:string,day:string:date,clock:millis:time");
+        castNullableTimetampTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct()
+                .field("millis", Schema.OPTIONAL_INT64_SCHEMA)
+                .field("seconds", Schema.OPTIONAL_INT64_SCHEMA)
+                .field("micros", Schema.OPTIONAL_INT64_SCHEMA)
+                .field("nanos", Schema.OPTIONAL_INT64_SCHEMA)
+                .field("text", Schema.OPTIONAL_STRING_SCHEMA)
+                .field("day", Schema.OPTIONAL_STRING_SCHEMA)
+                .field("clock", Schema.OPTIONAL_INT64_SCHEMA)
+                .build();
+        Struct recordValue = new Struct(sampleSchema)
+                .put("millis", DATE_PLUS_TIME_UNIX)
+                .put("seconds", 86_401L)
+                .put("micros", DATE_PLUS_TIME_UNIX * 1000 + 999)
+                .put("nanos", -1L)
+                .put("text", "1970-01-02T00:00:01.234Z")
+                .put("day", "1970-01-02T23:00:00+02:00")
+                .put("clock", DATE_PLUS_TIME_UNIX);
+
+        Struct transformed = (Struct) castNullableTimetampTransform.apply(new SourceRecord(null, null, "topic", 0,
+                sampleSchema, recordValue)).value();
+
+        assertEquals(DATE_PLUS_TIME.getTime(), transformed.get("millis"));
+        assertEquals(new java.util.Date(86_401_000L), transformed.get("seconds"));
+        assertEquals(DATE_PLUS_TIME.getTime(), transformed.get("micros"));
+        assertEquals(new java.util.Date(-1L), transformed.get("nanos"));
+        assertEquals(DATE_PLUS_TIME.getTime(), transformed.get("text"));
+        assertEquals(new java.util.Date(86_400_000L), transformed.get("day"));
+        assertEquals(new java.util.Date(1234L), transformed.get("clock"));
+
+        assertEquals(Timestamp.builder().optional().schema(), transformed.schema().field("text").schema());
+        assertEquals(org.apache.kafka.connect.data.Date.builder().optional().schema(), transformed.schema().field("day").schema());
+        assertEquals(Time.builder().optional().schema(), transformed.schema().field("clock").schema());
+    }
+
+    @Test
+    public void castStringsOfAFormat() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(NullableTimestampTransform.ConfigNames.FIELD, "fld1");
+        props.put(NullableTimestampTransform.ConfigNames.UNIT, "string");
+        props.put(NullableTimestampTransform.ConfigNames.FORMAT, "dd/MM/yyyy HH:mm");
+        castNullableTimetampTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct().field("fld1", Schema.OPTIONAL_STRING_SCHEMA).build();
+        Struct transformed = (Struct) castNullableTimetampTransform.apply(new SourceRecord(null, null, "topic", 0,
+                sampleSchema, new Struct(sampleSchema).put("fld1", "02/01/1970 00:01"))).value();
+
+        assertEquals(new java.util.Date(86_460_000L), transformed.get("fld1"));
+    }
+
+    @Test(expected = DataException.class)
+    public void unparseableStringFails() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(NullableTimestampTransform.ConfigNames.FIELDS, "fld1:string");
+        castNullableTimetampTransform.configure(props);
+
+        Schema sampleSchema = SchemaBuilder.struct().field("fld1", Schema.OPTIONAL_STRING_SCHEMA).build();
+        castNullableTimetampTransform.apply(new SourceRecord(null, null, "topic", 0,
+                sampleSchema, new Struct(sampleSchema).put("fld1", "yesterday")));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void unknownUnitInFieldsFails() {
+        castNullableTimetampTransform.configure(Collections.singletonMap(NullableTimestampTransform.ConfigNames.FIELDS, "fld1:fortnights"));
+    }
+
+
+
     private void testFieldConversionValue(Object inputValue, java.util.Date expectedValue){
 
         // Configure a transform:
@@ -0,0 +1,143 @@
+package com.github.petersilverwood.kafka.connect;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.github.petersilverwood.avrodecimaltools.CastDecimal;
+import org.apache.kafka.connect.data.*;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class RecordPartTests {
+
+    private static final Schema ACCOUNT = SchemaBuilder.struct()
+            .field("account", Schema.STRING_SCHEMA)
+            .field("balance", Schema.BYTES_SCHEMA)
+            .build();
+
+    private final CastDecimal<SourceRecord> castDecimalTransform = new CastDecimal<>();
+
+
+    private void configure(String target) {
+        Map<String, String> props = new HashMap<>();
+        props.put("fields", "balance:2");
+        if (target != null) {
+            props.put(RecordPart.CONFIG, target);
+        }
+        castDecimalTransform.configure(props);
+    }
+
+    private static Struct account(String name, int... balance) {
+        return new Struct(ACCOUNT).put("account", name).put("balance", ByteBuffer.wrap(bytes(balance)));
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+
+    @Test
+    public void valueByDefault() {
+        configure(null);
+        Struct key = account("a", 0x30, 0x39);
+        SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "test", 0, ACCOUNT, key, ACCOUNT, account("a", 0x01)));
+
+        assertSame(key, transformed.key());
+        assertSame(ACCOUNT, transformed.keySchema());
+        assertEquals(new BigDecimal("0.01"), ((Struct) transformed.value()).get("balance"));
+    }
+
+    @Test
+    public void keyOnly() {
+        configure("key");
+        Struct value = account("a", 0x01);
+        SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "test", 0, ACCOUNT, account("a", 0x30, 0x39), ACCOUNT, value));
+
+        assertEquals(new BigDecimal("123.45"), ((Struct) transformed.key()).get("balance"));
+        assertEquals(Decimal.schema(2), transformed.keySchema().field("balance").schema());
+        assertSame(value, transformed.value());
+        assertSame(ACCOUNT, transformed.valueSchema());
+    }
+
+    @Test
+    public void bothShareTheirPlan() {
+        configure("both");
+        SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "test", 0, ACCOUNT, account("a", 0x30, 0x39), ACCOUNT, account("a", 0x01)));
+
+        assertEquals(new BigDecimal("123.45"), ((Struct) transformed.key()).get("balance"));
+        assertEquals(new BigDecimal("0.01"), ((Struct) transformed.value()).get("balance"));
+        assertEquals("a", ((Struct) transformed.value()).get("account"));
+        // The key and the value are of one schema, planned once:
+        assertSame(transformed.keySchema(), transformed.valueSchema());
+    }
+
+    @Test
+    public void bothLeavesKeysWithoutFieldsAlone() {
+        configure("both");
+        SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "test", 0, Schema.STRING_SCHEMA, "a", ACCOUNT, account("a", 0x01)));
+
+        assertEquals("a", transformed.key());
+        assertSame(Schema.STRING_SCHEMA, transformed.keySchema());
+        assertEquals(new BigDecimal("0.01"), ((Struct) transformed.value()).get("balance"));
+    }
+
+    @Test
+    public void bothConvertsSchemalessKeys() {
+        configure("both");
+        Map<String, Object> key = new HashMap<>();
+        key.put("balance", new byte[]{0x30, 0x39});
+        SourceRecord transformed = castDecimalTransform.apply(new SourceRecord(null, null, "test", 0, null, key, ACCOUNT, account("a", 0x01)));
+
+        assertEquals(new BigDecimal("123.45"), ((Map<?, ?>) transformed.key()).get("balance"));
+        assertEquals(new BigDecimal("0.01"), ((Struct) transformed.value()).get("balance"));
+    }
+
+    @Test
+    public void recordsWithNothingToConvertAreReturnedAsTheyAre() {
+        configure("both");
+        SourceRecord record = new SourceRecord(null, null, "test", 0, Schema.STRING_SCHEMA, "a", Schema.INT64_SCHEMA, 1L);
+        assertSame(record, castDecimalTransform.apply(record));
+    }
+
+    @Test
+    public void passThroughLeavesBothPartsUnconverted() {
+        Map<String, String> props = new HashMap<>();
+        props.put("fields", "balance:2");
+        props.put("target.precision", "3");
+        props.put(RecordPart.CONFIG, "both");
+        props.put(ErrorPolicy.CONFIG, "passthrough");
+        castDecimalTransform.configure(props);
+
+        // The key fits the precision, the value does not:
+        SourceRecord record = new SourceRecord(null, null, "test", 0, ACCOUNT, account("a", 0x01), ACCOUNT, account("a", 0x30, 0x39));
+        assertSame(record, castDecimalTransform.apply(record));
+    }
+
+    @Test
+    public void timestampsOfBoth() {
+        Schema schema = SchemaBuilder.struct().field("ts", Schema.OPTIONAL_INT64_SCHEMA).build();
+        NullableTimestampTransform<SourceRecord> transform = new NullableTimestampTransform<>();
+        Map<String, String> props = new HashMap<>();
+        props.put("field", "ts");
+        props.put(RecordPart.CONFIG, "both");
+        transform.configure(props);
+
+        SourceRecord transformed = transform.apply(new SourceRecord(null, null, "test", 0,
+                schema, new Struct(schema).put("ts", 1000L), schema, new Struct(schema).put("ts", 2000L)));
+        assertEquals(new Date(1000L), ((Struct) transformed.key()).get("ts"));
+        assertEquals(new Date(2000L), ((Struct) transformed.value()).get("ts"));
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.github.petersilverwood.kafka.connect;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class SchemaCacheTests {
+
+    private static Schema schema(int version) {
+        return SchemaBuilder.struct().name("sample").version(version)
+                .field("fld1", Schema.BYTES_SCHEMA)
+                .build();
+    }
+
+    @Test
+    public void hitsByIdentityAndByValue() {
+
+        SchemaCache<String> cache = new SchemaCache<>(4, SchemaCache.EvictionPolicy.LRU);
+        Schema schema = schema(1);
+
+        assertNull(cache.get(schema));
+        cache.put(schema, "one");
+
+        assertEquals("one", cache.get(schema));
+        // An equal schema built separately, as a converter may hand out:
+        assertEquals("one", cache.get(schema(1)));
+
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void fifoEvictsOldestInsert() {
+
+        SchemaCache<String> cache = new SchemaCache<>(2, SchemaCache.EvictionPolicy.FIFO);
+        cache.put(schema(1), "one");
+        cache.put(schema(2), "two");
+        cache.get(schema(1));
+        cache.put(schema(3), "three");
+
+        assertNull(cache.get(schema(1)));
+        assertEquals("two", cache.get(schema(2)));
+        assertEquals("three", cache.get(schema(3)));
+        assertEquals(1, cache.evictionCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void lruKeepsRecentlyUsed() {
+
+        SchemaCache<String> cache = new SchemaCache<>(2, SchemaCache.EvictionPolicy.LRU);
+        cache.put(schema(1), "one");
+        cache.put(schema(2), "two");
+        cache.get(schema(1));
+        cache.put(schema(3), "three");
+
+        assertEquals("one", cache.get(schema(1)));
+        assertNull(cache.get(schema(2)));
+        assertEquals("three", cache.get(schema(3)));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void evictedIdentityIsNotReturned() {
+
+        SchemaCache<String> cache = new SchemaCache<>(1, SchemaCache.EvictionPolicy.FIFO);
+        Schema first = schema(1);
+        cache.put(first, "one");
+        cache.put(schema(2), "two");
+
+        assertNull(cache.get(first));
+        assertTrue(cache.remove(schema(2)));
+        assertFalse(cache.remove(schema(2)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void configuredFromTransformConfig() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(SchemaCache.CAPACITY_CONFIG, "500");
+        props.put(SchemaCache.EVICTION_CONFIG, "fifo");
+
+        SchemaCache<String> cache = SchemaCache.fromConfig(new SimpleConfig(SchemaCache.define(new ConfigDef()), props));
+        assertEquals(500, cache.capacity());
+        assertEquals(SchemaCache.EvictionPolicy.FIFO, cache.evictionPolicy());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void invalidEvictionPolicy() {
+        new SimpleConfig(SchemaCache.define(new ConfigDef()), Collections.singletonMap(SchemaCache.EVICTION_CONFIG, "random"));
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.github.petersilverwood.kafka.connect;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.apache.kafka.connect.data.*;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class SchemaWarmupTests {
+
+    private static final Schema ORDER = SchemaBuilder.struct().name("com.example.Order")
+            .field("id", Schema.INT64_SCHEMA)
+            .field("amount", Schema.OPTIONAL_BYTES_SCHEMA)
+            .field("status", Schema.STRING_SCHEMA)
+            .field("tags", SchemaBuilder.array(Schema.STRING_SCHEMA).build())
+            .build();
+
+    /**
+     * Stand-in for a schema registry, handing out fixed schemas
+     */
+    public static class FixedSchemaProvider implements SchemaProvider {
+
+        @Override
+        public void configure(Map<String, ?> configs) {
+        }
+
+        @Override
+        public Collection<Schema> schemas() {
+            return Arrays.asList(ORDER, Schema.STRING_SCHEMA);
+        }
+    }
+
+    /**
+     * Hands out a schema whose amount is not bytes, along with one that is fine
+     */
+    public static class MismatchedSchemaProvider implements SchemaProvider {
+
+        @Override
+        public void configure(Map<String, ?> configs) {
+        }
+
+        @Override
+        public Collection<Schema> schemas() {
+            return Arrays.asList(SchemaBuilder.struct().name("com.example.Refund").field("amount", Schema.STRING_SCHEMA).build(), ORDER);
+        }
+    }
+
+    private final CastFields<SourceRecord> castFieldsTransform = new CastFields<>();
+
+    @After
+    public void close() {
+        castFieldsTransform.close();
+    }
+
+
+    @Test
+    public void providedSchemasArePreparedAtConfigure() {
+
+        configure(SchemaWarmup.PROVIDER_CONFIG, FixedSchemaProvider.class.getName());
+        assertEquals(1, castFieldsTransform.metrics().getSchemaCacheSize());
+
+        applyOrder();
+        assertEquals(1, castFieldsTransform.metrics().getSchemaCacheHits());
+        assertEquals(0, castFieldsTransform.metrics().getSchemaCacheMisses());
+    }
+
+    @Test
+    public void schemasThatCannotBePlannedAreSkipped() {
+
+        configure(SchemaWarmup.PROVIDER_CONFIG, MismatchedSchemaProvider.class.getName());
+        assertEquals(1, castFieldsTransform.metrics().getSchemaCacheSize());
+
+        applyOrder();
+        assertEquals(1, castFieldsTransform.metrics().getSchemaCacheHits());
+    }
+
+    @Test
+    public void headerScalesWithoutDefaultDoNotFailConfigure() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastFields.ConfigNames.DECIMAL_FIELDS, "amount");
+        props.put(CastFields.ConfigNames.DECIMAL_SCALE_HEADER, "scale");
+        props.put(SchemaWarmup.PROVIDER_CONFIG, FixedSchemaProvider.class.getName());
+        castFieldsTransform.configure(props);
+
+        assertEquals(0, castFieldsTransform.metrics().getSchemaCacheSize());
+    }
+
+    @Test
+    public void headerScalesOfTheDefaultUseThePreparedPlan() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastFields.ConfigNames.DECIMAL_FIELDS, "amount");
+        props.put(CastFields.ConfigNames.DECIMAL_SCALE, "2");
+        props.put(CastFields.ConfigNames.DECIMAL_SCALE_HEADER, "scale");
+        props.put(SchemaWarmup.PROVIDER_CONFIG, FixedSchemaProvider.class.getName());
+        castFieldsTransform.configure(props);
+
+        SourceRecord withoutHeader = applyOrder();
+        SourceRecord withHeader = applyOrder("2");
+        // One plan serves both, so the output schema is the very same instance:
+        assertSame(withoutHeader.valueSchema(), withHeader.valueSchema());
+        assertEquals(0, castFieldsTransform.metrics().getSchemaCacheMisses());
+    }
+
+
+
+    private void configure(String name, String value) {
+        Map<String, String> props = new HashMap<>();
+        props.put(CastFields.ConfigNames.DECIMAL_FIELDS, "amount:2");
+        props.put(name, value);
+        castFieldsTransform.configure(props);
+    }
+
+    private SourceRecord applyOrder() {
+        return applyOrder(null);
+    }
+
+    private SourceRecord applyOrder(String scaleHeader) {
+        // Built separately from the provided schema, as a converter would:
+        Schema schema = SchemaBuilder.struct().name("com.example.Order")
+                .field("id", Schema.INT64_SCHEMA)
+                .field("amount", Schema.OPTIONAL_BYTES_SCHEMA)
+                .field("status", Schema.STRING_SCHEMA)
+                .field("tags", SchemaBuilder.array(Schema.STRING_SCHEMA).build())
+                .build();
+        Struct value = new Struct(schema)
+                .put("id", 1L)
+                .put("amount", ByteBuffer.wrap(new BigDecimal("12.34").unscaledValue().toByteArray()))
+                .put("status", "NEW")
+                .put("tags", Arrays.asList("a"));
+
+        SourceRecord record = new SourceRecord(null, null, "topic", 0, schema, value);
+        if (scaleHeader != null) {
+            record.headers().addString("scale", scaleHeader);
+        }
+        SourceRecord transformed = castFieldsTransform.apply(record);
+        assertEquals(new BigDecimal("12.34"), ((Struct) transformed.value()).get("amount"));
+        return transformed;
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.github.petersilverwood.kafka.connect;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.kafka.connect.data.*;
+import org.apache.kafka.connect.errors.DataException;
+import org.junit.Test;
+
+
+public class StructPlanTests {
+
+    private static final FieldConversion TO_STRING = new FieldConversion() {
+        @Override
+        public Schema schema() {
+            return Schema.OPTIONAL_STRING_SCHEMA;
+        }
+
+        @Override
+        public Object convert(Object value) {
+            return value == null ? null : value.toString();
+        }
+    };
+
+    private static Schema sampleSchema() {
+        return SchemaBuilder.struct().name("sample").version(3)
+                .field("id", Schema.INT32_SCHEMA)
+                .field("count", Schema.OPTIONAL_INT64_SCHEMA)
+                .field("name", Schema.STRING_SCHEMA)
+                .build();
+    }
+
+    @Test
+    public void compileCopiesSchemaBasicsAndConvertsFields() {
+
+        StructPlan plan = StructPlan.compile(sampleSchema(), field -> field.name().equals("count") ? TO_STRING : null);
+
+        Schema schema = plan.schema();
+        assertEquals("sample", schema.name());
+        assertEquals(Integer.valueOf(3), schema.version());
+        assertEquals(Schema.INT32_SCHEMA, schema.field("id").schema());
+        assertEquals(Schema.OPTIONAL_STRING_SCHEMA, schema.field("count").schema());
+        assertEquals(Schema.STRING_SCHEMA, schema.field("name").schema());
+    }
+
+    @Test
+    public void applyToEqualSchemaInstance() {
+
+        StructPlan plan = StructPlan.compile(sampleSchema(), field -> field.name().equals("count") ? TO_STRING : null);
+
+        // Records arrive with schemas equal to, but not the same instance as, the one the plan was compiled for:
+        Struct value = new Struct(sampleSchema()).put("id", 7).put("count", 42L).put("name", "seven");
+        Struct updated = plan.apply(value);
+
+        assertSame(plan.schema(), updated.schema());
+        assertEquals(7, updated.get("id"));
+        assertEquals("42", updated.get("count"));
+        assertEquals("seven", updated.get("name"));
+    }
+
+    @Test
+    public void convertNull() {
+        StructPlan plan = StructPlan.compile(sampleSchema(), field -> null);
+        assertNull(plan.convert(null));
+    }
+
+    @Test
+    public void sharedCopyMatchesValidatedCopy() {
+
+        Schema schema = SchemaBuilder.struct()
+                .field("id", Schema.INT32_SCHEMA)
+                .field("count", SchemaBuilder.int64().optional().defaultValue(5L).build())
+                .field("name", Schema.STRING_SCHEMA)
+                .build();
+        StructPlan.FieldRule rule = field -> field.name().equals("count") ? TO_STRING : null;
+        StructPlan validated = StructPlan.compile(schema, rule, StructPlan.CopyMode.VALIDATED);
+        StructPlan shared = StructPlan.compile(schema, rule, StructPlan.CopyMode.SHARED);
+        assertEquals(StructPlan.CopyMode.SHARED, shared.copyMode());
+
+        for (Struct value : new Struct[]{
+                new Struct(schema).put("id", 7).put("count", 42L).put("name", "seven"),
+                // The converted field falls back to its default in both modes:
+                new Struct(schema).put("id", 8).put("name", "eight")}) {
+
+            Struct updated = shared.apply(value);
+            updated.validate();
+
+            assertEquals(validated.apply(value), updated);
+            assertEquals(validated.apply(value).hashCode(), updated.hashCode());
+            assertSame(value.get("name"), updated.get("name"));
+        }
+    }
+
+    @Test
+    public void failedPlanThrowsANewErrorEachTime() {
+        DataException failure = new DataException("no plan");
+        StructPlan plan = StructPlan.failed(sampleSchema(), failure);
+        Struct value = new Struct(sampleSchema()).put("id", 1).put("name", "x");
+
+        DataException first = applyFailing(plan, value);
+        DataException second = applyFailing(plan, value);
+        assertNotSame(first, second);
+        assertSame(failure, first.getCause());
+        assertEquals("no plan", second.getMessage());
+    }
+
+    private static DataException applyFailing(StructPlan plan, Struct value) {
+        try {
+            plan.apply(value);
+        } catch (DataException e) {
+            return e;
+        }
+        throw new AssertionError("Expected a DataException");
+    }
+
+    @Test
+    public void sharedCopyFillsInDefaultsOfCopiedFields() {
+
+        Schema schema = SchemaBuilder.struct()
+                .field("id", Schema.INT32_SCHEMA)
+                .field("count", SchemaBuilder.int64().optional().defaultValue(5L).build())
+                .field("name", Schema.OPTIONAL_INT64_SCHEMA)
+                .build();
+        StructPlan.FieldRule rule = field -> field.name().equals("name") ? TO_STRING : null;
+        StructPlan validated = StructPlan.compile(schema, rule, StructPlan.CopyMode.VALIDATED);
+        StructPlan shared = StructPlan.compile(schema, rule, StructPlan.CopyMode.SHARED);
+
+        // The copied field is not set, and takes its default in both modes:
+        Struct value = new Struct(schema).put("id", 7).put("name", 1L);
+        Struct updated = shared.apply(value);
+
+        assertEquals(validated.apply(value), updated);
+        assertEquals(5L, updated.get("count"));
+        assertNull(value.getWithoutDefault("count"));
+    }
+
+    @Test
+    public void sharedFallsBackToValidatedWithoutStructValues() {
+        assertNull(StructValues.valuesGetter("noSuchField"));
+        assertEquals(StructPlan.CopyMode.VALIDATED, StructPlan.effective(StructPlan.CopyMode.SHARED, false));
+        assertEquals(StructPlan.CopyMode.SHARED, StructPlan.effective(StructPlan.CopyMode.SHARED, true));
+        assertEquals(StructPlan.CopyMode.VALIDATED, StructPlan.effective(StructPlan.CopyMode.VALIDATED, true));
+    }
+
+    @Test
+    public void sharedCopyLeavesInputUntouched() {
+
+        StructPlan plan = StructPlan.compile(sampleSchema(), field -> field.name().equals("count") ? TO_STRING : null,
+                StructPlan.CopyMode.SHARED);
+
+        Struct value = new Struct(sampleSchema()).put("id", 7).put("count", 42L).put("name", "seven");
+        Struct updated = plan.apply(value);
+        updated.put("name", "changed");
+
+        assertEquals(42L, value.get("count"));
+        assertEquals("seven", value.get("name"));
+        assertEquals("42", updated.get("count"));
+    }
+
+}
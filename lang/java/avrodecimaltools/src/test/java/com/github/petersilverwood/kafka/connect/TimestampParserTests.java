@@ -0,0 +1,97 @@
+package com.github.petersilverwood.kafka.connect;
+
+import org.junit.Test;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimestampParserTests {
+
+    private final TimestampParser parser = new TimestampParser();
+
+
+    @Test
+    public void isoTextMatchesJavaTime() {
+        final String[] offsetTexts = {
+                "2020-03-01T12:34:56Z",
+                "2020-03-01T12:34:56.7Z",
+                "2020-03-01T12:34:56.789Z",
+                "2020-03-01T12:34:56.789123456Z",
+                "2020-03-01T12:34Z",
+                "2020-03-01T12:34:56+01:00",
+                "2020-03-01T12:34:56.5-05:30",
+                "1969-12-31T23:59:59.999Z",
+                "2000-02-29T00:00:00+18:00",
+        };
+        for (String text : offsetTexts) {
+            assertEquals(text, OffsetDateTime.parse(text).toInstant().toEpochMilli(), parser.parseEpochMillis(text));
+        }
+
+        final String[] localTexts = {
+                "2020-03-01T12:34:56",
+                "2020-03-01T00:00",
+                "1900-01-01T01:02:03.004",
+        };
+        for (String text : localTexts) {
+            assertEquals(text, LocalDateTime.parse(text).toInstant(ZoneOffset.UTC).toEpochMilli(), parser.parseEpochMillis(text));
+        }
+
+        assertEquals(LocalDate.parse("2020-03-01").toEpochDay() * 86_400_000L, parser.parseEpochMillis("2020-03-01"));
+    }
+
+    @Test
+    public void compactOffsetsAndSpaceSeparator() {
+        final long expected = OffsetDateTime.parse("2020-03-01T12:34:56+01:00").toInstant().toEpochMilli();
+        assertEquals(expected, parser.parseEpochMillis("2020-03-01 12:34:56+01:00"));
+        assertEquals(expected, parser.parseEpochMillis("2020-03-01T12:34:56+0100"));
+        assertEquals(expected, parser.parseEpochMillis("2020-03-01T12:34:56+01"));
+    }
+
+    @Test
+    public void zoneIdsFallBackToTheFormatter() {
+        final String text = "2020-03-01T12:34:56+01:00[Europe/Paris]";
+        assertEquals(ZonedDateTime.parse(text).toInstant().toEpochMilli(), parser.parseEpochMillis(text));
+    }
+
+    @Test
+    public void cachedDayIsOnlyUsedForTheSameDay() {
+        for (int day = 1; day <= 28; day++) {
+            for (int hour = 0; hour < 24; hour += 7) {
+                final String text = String.format("2021-02-%02dT%02d:15:00Z", day, hour);
+                assertEquals(text, OffsetDateTime.parse(text).toInstant().toEpochMilli(), parser.parseEpochMillis(text));
+            }
+        }
+        assertEquals(OffsetDateTime.parse("2021-02-28T00:00:00Z").toInstant().toEpochMilli(), parser.parseEpochMillis("2021-02-28"));
+        assertEquals(OffsetDateTime.parse("2022-02-28T00:00:00Z").toInstant().toEpochMilli(), parser.parseEpochMillis("2022-02-28"));
+    }
+
+    @Test
+    public void customFormat() {
+        final TimestampParser custom = new TimestampParser(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
+        assertEquals(LocalDateTime.of(2020, 3, 1, 12, 34, 56).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                custom.parseEpochMillis("01/03/2020 12:34:56"));
+    }
+
+    @Test(expected = DateTimeException.class)
+    public void invalidDateFails() {
+        parser.parseEpochMillis("2021-02-29T00:00:00Z");
+    }
+
+    @Test(expected = DateTimeException.class)
+    public void invalidTimeFails() {
+        parser.parseEpochMillis("2021-02-01T24:00:00Z");
+    }
+
+    @Test(expected = DateTimeException.class)
+    public void trailingTextFails() {
+        parser.parseEpochMillis("2021-02-01T12:00:00Zulu");
+    }
+
+}
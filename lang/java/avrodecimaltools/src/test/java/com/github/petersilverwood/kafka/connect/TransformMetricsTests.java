@@ -0,0 +1,122 @@
+package com.github.petersilverwood.kafka.connect;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.kafka.connect.data.*;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class TransformMetricsTests {
+
+    private static final MBeanServer SERVER = ManagementFactory.getPlatformMBeanServer();
+
+    private final CastFields<SourceRecord> castFieldsTransform = new CastFields<>();
+
+    @After
+    public void close() {
+        castFieldsTransform.close();
+    }
+
+    private void configure(String enabled) {
+        Map<String, String> props = new HashMap<>();
+        props.put(CastFields.ConfigNames.DECIMAL_FIELDS, "amount:2");
+        props.put(TransformMetrics.ENABLED_CONFIG, enabled);
+        props.put(TransformMetrics.NAME_CONFIG, "orders");
+        props.put(TransformMetrics.LATENCY_SAMPLE_RATE_CONFIG, "1");
+        castFieldsTransform.configure(props);
+    }
+
+    @Test
+    public void countsRecordsAndRegistersMBean() throws Exception {
+
+        configure("true");
+
+        Schema withAmount = SchemaBuilder.struct().field("amount", Schema.OPTIONAL_BYTES_SCHEMA).build();
+        Schema withoutAmount = SchemaBuilder.struct().field("other", Schema.STRING_SCHEMA).build();
+
+        castFieldsTransform.apply(new SourceRecord(null, null, "topic", 0, withAmount,
+                new Struct(withAmount).put("amount", ByteBuffer.wrap(new BigDecimal("12.34").unscaledValue().toByteArray()))));
+        castFieldsTransform.apply(new SourceRecord(null, null, "topic", 0, withAmount,
+                new Struct(withAmount).put("amount", ByteBuffer.wrap(new byte[20]))));
+        castFieldsTransform.apply(new SourceRecord(null, null, "topic", 0, withoutAmount,
+                new Struct(withoutAmount).put("other", "x")));
+        try {
+            castFieldsTransform.apply(new SourceRecord(null, null, "topic", 0, withAmount, "not a struct"));
+        } catch (DataException expected) {
+        }
+
+        ObjectName name = castFieldsTransform.metrics().objectName();
+        assertEquals(TransformMetrics.DOMAIN, name.getDomain());
+        assertEquals("CastFields", name.getKeyProperty("type"));
+        assertEquals("\"orders\"", name.getKeyProperty("name"));
+        assertTrue(SERVER.isRegistered(name));
+
+        assertEquals(4L, SERVER.getAttribute(name, "RecordsProcessed"));
+        assertEquals(2L, SERVER.getAttribute(name, "RecordsConverted"));
+        assertEquals(1L, SERVER.getAttribute(name, "RecordsPassedThrough"));
+        assertEquals(1L, SERVER.getAttribute(name, "ConversionErrors"));
+        assertEquals(2L, SERVER.getAttribute(name, "SchemaCacheHits"));
+        assertEquals(2L, SERVER.getAttribute(name, "SchemaCacheMisses"));
+        assertEquals(4L, SERVER.getAttribute(name, "ApplyLatencySamples"));
+        assertTrue((Long) SERVER.getAttribute(name, "ApplyLatencyMaxNanos") > 0);
+
+        long[] histogram = (long[]) SERVER.getAttribute(name, "DecodedLengthHistogram");
+        assertArrayEquals(new long[]{0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0}, histogram);
+
+        castFieldsTransform.close();
+        assertFalse(SERVER.isRegistered(name));
+    }
+
+    @Test
+    public void nulledFieldsAreCountedApartFromRecords() {
+
+        Map<String, String> props = new HashMap<>();
+        props.put(CastFields.ConfigNames.DECIMAL_FIELDS, "amount:2,fee:2");
+        props.put(CastFields.ConfigNames.DECIMAL_TARGET_PRECISION, "10");
+        props.put(ErrorPolicy.CONFIG, "null");
+        castFieldsTransform.configure(props);
+
+        // Both values have far more digits than a precision of 10:
+        byte[] wide = new byte[20];
+        wide[0] = 0x40;
+        Schema schema = SchemaBuilder.struct().field("amount", Schema.BYTES_SCHEMA).field("fee", Schema.BYTES_SCHEMA).build();
+        SourceRecord transformed = castFieldsTransform.apply(new SourceRecord(null, null, "topic", 0, schema,
+                new Struct(schema).put("amount", ByteBuffer.wrap(wide)).put("fee", ByteBuffer.wrap(wide))));
+
+        assertNull(((Struct) transformed.value()).get("amount"));
+        assertNull(((Struct) transformed.value()).get("fee"));
+
+        TransformMetrics metrics = castFieldsTransform.metrics();
+        assertEquals(1, metrics.getRecordsProcessed());
+        assertEquals(1, metrics.getRecordsConverted());
+        assertEquals(0, metrics.getRecordsPassedThrough());
+        assertEquals(0, metrics.getConversionErrors());
+        assertEquals(2, metrics.getFieldsNulled());
+    }
+
+    @Test
+    public void disabledMetricsAreNotRegistered() {
+
+        configure("false");
+
+        assertNull(castFieldsTransform.metrics().objectName());
+        assertFalse(castFieldsTransform.metrics().sampleLatency());
+    }
+
+}